@@ -0,0 +1,80 @@
+package org.embulk.input;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Calls per second through NoAutoCommitConnection ("wrapped") and on the Connection it wraps
+// ("direct"), which returns the same statement every time, so that the difference is the cost of
+// the wrapper.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class NoAutoCommitConnectionBenchmark {
+  private static final String SQL = "SELECT * FROM t WHERE id > ?";
+
+  @Param({"direct", "wrapped"})
+  public String connection;
+
+  private Connection con;
+
+  @Setup
+  public void setUp() {
+    PreparedStatement statement =
+        (PreparedStatement)
+            Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] {PreparedStatement.class},
+                (p, method, args) -> null);
+    Connection direct =
+        (Connection)
+            Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                (p, method, args) -> {
+                  switch (method.getName()) {
+                    case "prepareStatement":
+                    case "createStatement":
+                      return statement;
+                    case "getAutoCommit":
+                    case "isClosed":
+                      return false;
+                    default:
+                      throw new UnsupportedOperationException(method.getName());
+                  }
+                });
+    con = connection.equals("wrapped") ? new NoAutoCommitConnection(direct) : direct;
+  }
+
+  @Benchmark
+  public PreparedStatement prepareStatement() throws SQLException {
+    return con.prepareStatement(SQL);
+  }
+
+  @Benchmark
+  public Statement createStatement() throws SQLException {
+    return con.createStatement();
+  }
+
+  @Benchmark
+  public boolean getAutoCommit() throws SQLException {
+    return con.getAutoCommit();
+  }
+}
@@ -0,0 +1,48 @@
+package org.embulk.input.databricks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.embulk.input.databricks.util.JsonFixtures;
+import org.msgpack.value.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Nanoseconds per nested STRUCT value read into a Value by JsonValueReader and by parsing into a
+// tree of JsonNodes and converting it. gc.alloc.rate.norm of the gc profiler is the bytes
+// allocated per value.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class JsonValueReaderBenchmark {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final JsonValueReader reader = new JsonValueReader(0, 0);
+  private String text;
+
+  @Setup
+  public void setUp() {
+    text = JsonFixtures.nestedStruct(4, 6);
+  }
+
+  @Benchmark
+  public Value streaming() {
+    return reader.read(text);
+  }
+
+  @Benchmark
+  public Value tree() throws IOException {
+    return JsonFixtures.toValue(MAPPER.readTree(text));
+  }
+}
@@ -0,0 +1,90 @@
+package org.embulk.input.databricks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Rows per second of tracking the last_record of incremental columns of a BIGINT and a TIMESTAMP,
+// as fetch does it: "last" keeps the record of the last row only, as incremental_mode:
+// last_record does, and "max" offers the record of every row to LastRecords.Max, as
+// last_record_unordered does. The rows come in ascending order, in which every record replaces
+// the greatest one, or shuffled.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LastRecordBenchmark {
+  private static final int ROWS = 100_000;
+
+  @Param({"ascending", "shuffled"})
+  public String order;
+
+  private long[] ids;
+  private String[] timestamps;
+
+  @Setup
+  public void setUp() {
+    ids = new long[ROWS];
+    for (int i = 0; i < ROWS; i++) {
+      ids[i] = i;
+    }
+    if (order.equals("shuffled")) {
+      Random random = new Random(0);
+      for (int i = ROWS - 1; i > 0; i--) {
+        int j = random.nextInt(i + 1);
+        long id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+      }
+    }
+    timestamps = new String[ROWS];
+    for (int i = 0; i < ROWS; i++) {
+      timestamps[i] = String.format("2024-01-01T00:00:%02d.%06dZ", ids[i] % 60, ids[i] % 1000000);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public JsonNode last() {
+    long id = 0;
+    String timestamp = null;
+    for (int i = 0; i < ROWS; i++) {
+      id = ids[i];
+      timestamp = timestamps[i];
+    }
+    return recordOf(id, timestamp);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public JsonNode max() {
+    LastRecords.Max max = new LastRecords.Max();
+    for (int i = 0; i < ROWS; i++) {
+      max.offer(recordOf(ids[i], timestamps[i]));
+    }
+    return max.get().get();
+  }
+
+  private static ArrayNode recordOf(long id, String timestamp) {
+    ArrayNode record = JsonNodeFactory.instance.arrayNode();
+    record.add(id);
+    record.add(timestamp);
+    return record;
+  }
+}
@@ -0,0 +1,86 @@
+package org.embulk.input.databricks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Rows per second read into pages of a narrow schema of a typical fact table, of one column of
+// every primitive type, and of a wide one of 64 columns of mixed types, through the ColumnGetters
+// of either factory or from Arrow record batches. gc.alloc.rate.norm of the gc profiler is the
+// bytes allocated per row.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PageBuildingBenchmark {
+  private static final int ROWS = 200_000;
+  private static final List<String> NARROW = Arrays.asList("BIGINT", "STRING", "TIMESTAMP");
+  private static final List<String> PRIMITIVE =
+      Arrays.asList(
+          "BIGINT",
+          "INT",
+          "SMALLINT",
+          "TINYINT",
+          "DOUBLE",
+          "FLOAT",
+          "BOOLEAN",
+          "DATE",
+          "TIMESTAMP",
+          "DECIMAL(18,2)");
+  private static final List<String> MIXED =
+      Arrays.asList(
+          "BIGINT",
+          "INT",
+          "DOUBLE",
+          "BOOLEAN",
+          "DATE",
+          "TIMESTAMP",
+          "DECIMAL(18,2)",
+          "STRING");
+
+  @Param({"narrow", "primitive", "wide"})
+  public String schema;
+
+  @Param({"default", "databricks", "arrow"})
+  public String factory;
+
+  private SyntheticEmbulk embulk;
+  private List<String> types;
+
+  @Setup
+  public void setUp() throws IOException {
+    embulk = new SyntheticEmbulk();
+    if (schema.equals("narrow")) {
+      types = NARROW;
+    } else if (schema.equals("primitive")) {
+      types = PRIMITIVE;
+    } else {
+      types = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+        types.add(MIXED.get(i % MIXED.size()));
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void read() throws IOException {
+    embulk.run(types, ROWS, factory);
+  }
+}
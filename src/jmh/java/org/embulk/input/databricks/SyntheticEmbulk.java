@@ -0,0 +1,45 @@
+package org.embulk.input.databricks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import org.embulk.EmbulkSystemProperties;
+import org.embulk.config.ConfigSource;
+import org.embulk.formatter.csv.CsvFormatterPlugin;
+import org.embulk.output.file.LocalFileOutputPlugin;
+import org.embulk.spi.FileOutputPlugin;
+import org.embulk.spi.FormatterPlugin;
+import org.embulk.spi.InputPlugin;
+import org.embulk.test.TestingEmbulk;
+
+// Runs SyntheticInputPlugin in an Embulk of the benchmark. Every run pays for the transaction of
+// Embulk, so the benchmarks read enough rows for it to be a small part of the time.
+class SyntheticEmbulk {
+  private final TestingEmbulk embulk =
+      TestingEmbulk.builder()
+          .setEmbulkSystemProperties(EmbulkSystemProperties.of(new Properties()))
+          .registerPlugin(FormatterPlugin.class, "csv", CsvFormatterPlugin.class)
+          .registerPlugin(FileOutputPlugin.class, "file", LocalFileOutputPlugin.class)
+          .registerPlugin(InputPlugin.class, "synthetic", SyntheticInputPlugin.class)
+          .build();
+  private final Path out;
+
+  SyntheticEmbulk() throws IOException {
+    // SyntheticInputPlugin outputs no pages, so the file has no rows.
+    this.out = Files.createTempFile("embulk-input-databricks-jmh", ".csv");
+    out.toFile().deleteOnExit();
+  }
+
+  void run(List<String> types, long rows, String factory) throws IOException {
+    ConfigSource config =
+        embulk
+            .newConfig()
+            .set("type", "synthetic")
+            .set("types", types)
+            .set("rows", rows)
+            .set("factory", factory);
+    embulk.runInput(config, out);
+  }
+}
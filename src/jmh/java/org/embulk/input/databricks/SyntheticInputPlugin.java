@@ -0,0 +1,289 @@
+package org.embulk.input.databricks;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
+import org.embulk.input.databricks.util.FixtureInputPlugin;
+import org.embulk.input.databricks.util.SyntheticResultSet;
+import org.embulk.input.jdbc.JdbcColumn;
+import org.embulk.input.jdbc.JdbcColumnOption;
+import org.embulk.input.jdbc.getter.ColumnGetter;
+import org.embulk.input.jdbc.getter.ColumnGetterFactory;
+import org.embulk.spi.Column;
+import org.embulk.spi.Exec;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.embulk.util.config.Config;
+import org.embulk.util.config.ConfigDefault;
+import org.embulk.util.config.Task;
+
+// Reads a SyntheticResultSet of the types with the getters of the default ColumnGetterFactory or
+// of DatabricksColumnGetterFactory into pages, which are released instead of being output, so
+// that a benchmark measures the getters and the PageBuilder only. With factory: arrow, the same
+// values are written from Arrow record batches by ArrowPageWriter instead.
+public class SyntheticInputPlugin extends FixtureInputPlugin<SyntheticInputPlugin.PluginTask> {
+  private static final int ARROW_BATCH_ROWS = 10_000;
+
+  public interface PluginTask extends Task {
+    // Databricks type names, such as BIGINT or DECIMAL(18,2), one per column.
+    @Config("types")
+    public List<String> getTypes();
+
+    @Config("rows")
+    public long getRows();
+
+    // Characters of STRING and bytes of BINARY values.
+    @Config("width")
+    @ConfigDefault("32")
+    public int getWidth();
+
+    // "default", "databricks" or "arrow".
+    @Config("factory")
+    @ConfigDefault("\"databricks\"")
+    public String getFactory();
+  }
+
+  public SyntheticInputPlugin() {
+    super(PluginTask.class);
+  }
+
+  @Override
+  protected Schema schemaOf(PluginTask task) {
+    List<JdbcColumn> jdbcColumns = SyntheticResultSet.columnsOf(task.getTypes());
+    // Same as AbstractJdbcInputPlugin, the getters without a PageBuilder tell the column types.
+    List<ColumnGetter> getters = newColumnGetters(task, jdbcColumns, null);
+    List<Column> columns = new ArrayList<>();
+    for (int i = 0; i < jdbcColumns.size(); i++) {
+      columns.add(new Column(i, jdbcColumns.get(i).getName(), getters.get(i).getToType()));
+    }
+    return new Schema(columns);
+  }
+
+  @Override
+  protected TaskReport read(PluginTask task, Schema schema, PageOutput output) {
+    List<JdbcColumn> columns = SyntheticResultSet.columnsOf(task.getTypes());
+    try (PageBuilder pageBuilder =
+        Exec.getPageBuilder(Exec.getBufferAllocator(), schema, new DiscardingPageOutput(output))) {
+      if (task.getFactory().equals("arrow")) {
+        writeArrowBatches(task, columns, schema, pageBuilder);
+        pageBuilder.finish();
+        return CONFIG_MAPPER_FACTORY.newTaskReport();
+      }
+      List<ColumnGetter> getters = newColumnGetters(task, columns, pageBuilder);
+      ResultSet result = SyntheticResultSet.of(columns, task.getRows(), task.getWidth());
+      while (result.next()) {
+        for (int i = 0; i < getters.size(); i++) {
+          getters.get(i).getAndSet(result, i + 1, schema.getColumn(i));
+        }
+        pageBuilder.addRecord();
+      }
+      pageBuilder.finish();
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+    return CONFIG_MAPPER_FACTORY.newTaskReport();
+  }
+
+  private static List<ColumnGetter> newColumnGetters(
+      PluginTask task, List<JdbcColumn> columns, PageBuilder pageBuilder) {
+    ColumnGetterFactory factory = newColumnGetterFactory(task.getFactory(), pageBuilder);
+    List<ColumnGetter> getters = new ArrayList<>();
+    for (JdbcColumn column : columns) {
+      getters.add(factory.newColumnGetter(null, null, column, optionOf(column)));
+    }
+    return getters;
+  }
+
+  // Copies the first ARROW_BATCH_ROWS rows into a batch once and writes it until the rows are
+  // written, rounded up to a batch, so that the copy is a small part of the time.
+  private static void writeArrowBatches(
+      PluginTask task, List<JdbcColumn> columns, Schema schema, PageBuilder pageBuilder)
+      throws SQLException {
+    List<Field> fields = new ArrayList<>();
+    for (JdbcColumn column : columns) {
+      fields.add(Field.nullable(column.getName(), arrowTypeOf(column)));
+    }
+    try (BufferAllocator allocator = new RootAllocator();
+        VectorSchemaRoot root =
+            VectorSchemaRoot.create(
+                new org.apache.arrow.vector.types.pojo.Schema(fields), allocator)) {
+      int batchRows = (int) Math.min(ARROW_BATCH_ROWS, task.getRows());
+      ResultSet result = SyntheticResultSet.of(columns, batchRows, task.getWidth());
+      root.allocateNew();
+      int row = 0;
+      while (result.next()) {
+        for (int i = 0; i < columns.size(); i++) {
+          setArrowValue(root.getVector(i), result, i + 1, row);
+        }
+        row++;
+      }
+      root.setRowCount(row);
+      ArrowPageWriter writer = new ArrowPageWriter(pageBuilder, schema.getColumns());
+      for (long written = 0; written < task.getRows(); written += batchRows) {
+        writer.writeBatch(root);
+      }
+    }
+  }
+
+  // The Arrow types the warehouse sends the Databricks types as.
+  private static ArrowType arrowTypeOf(JdbcColumn column) {
+    switch (column.getTypeName()) {
+      case "BIGINT":
+        return new ArrowType.Int(64, true);
+      case "INT":
+        return new ArrowType.Int(32, true);
+      case "SMALLINT":
+        return new ArrowType.Int(16, true);
+      case "TINYINT":
+        return new ArrowType.Int(8, true);
+      case "DOUBLE":
+        return new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+      case "FLOAT":
+        return new ArrowType.FloatingPoint(FloatingPointPrecision.SINGLE);
+      case "BOOLEAN":
+        return ArrowType.Bool.INSTANCE;
+      case "DATE":
+        return new ArrowType.Date(DateUnit.DAY);
+      case "TIMESTAMP":
+        return new ArrowType.Timestamp(TimeUnit.MICROSECOND, "Etc/UTC");
+      case "DECIMAL":
+        return new ArrowType.Decimal(column.getPrecision(), column.getScale(), 128);
+      case "STRING":
+        return ArrowType.Utf8.INSTANCE;
+      default:
+        throw new IllegalArgumentException(
+            "factory: arrow does not support " + column.getTypeName());
+    }
+  }
+
+  // A value left unset is NULL after VectorSchemaRoot#allocateNew.
+  private static void setArrowValue(FieldVector vector, ResultSet result, int index, int row)
+      throws SQLException {
+    if (vector instanceof BigIntVector) {
+      long value = result.getLong(index);
+      if (!result.wasNull()) {
+        ((BigIntVector) vector).setSafe(row, value);
+      }
+    } else if (vector instanceof IntVector) {
+      int value = result.getInt(index);
+      if (!result.wasNull()) {
+        ((IntVector) vector).setSafe(row, value);
+      }
+    } else if (vector instanceof SmallIntVector) {
+      short value = result.getShort(index);
+      if (!result.wasNull()) {
+        ((SmallIntVector) vector).setSafe(row, value);
+      }
+    } else if (vector instanceof TinyIntVector) {
+      byte value = result.getByte(index);
+      if (!result.wasNull()) {
+        ((TinyIntVector) vector).setSafe(row, value);
+      }
+    } else if (vector instanceof Float4Vector) {
+      float value = result.getFloat(index);
+      if (!result.wasNull()) {
+        ((Float4Vector) vector).setSafe(row, value);
+      }
+    } else if (vector instanceof Float8Vector) {
+      double value = result.getDouble(index);
+      if (!result.wasNull()) {
+        ((Float8Vector) vector).setSafe(row, value);
+      }
+    } else if (vector instanceof BitVector) {
+      boolean value = result.getBoolean(index);
+      if (!result.wasNull()) {
+        ((BitVector) vector).setSafe(row, value ? 1 : 0);
+      }
+    } else if (vector instanceof DateDayVector) {
+      Date value = result.getDate(index);
+      if (value != null) {
+        ((DateDayVector) vector).setSafe(row, (int) (value.getTime() / 86_400_000L));
+      }
+    } else if (vector instanceof TimeStampMicroTZVector) {
+      Timestamp value = result.getTimestamp(index);
+      if (value != null) {
+        long micros =
+            Math.floorDiv(value.getTime(), 1000L) * 1_000_000L + value.getNanos() / 1000L;
+        ((TimeStampMicroTZVector) vector).setSafe(row, micros);
+      }
+    } else if (vector instanceof DecimalVector) {
+      BigDecimal value = result.getBigDecimal(index);
+      if (value != null) {
+        ((DecimalVector) vector).setSafe(row, value);
+      }
+    } else if (vector instanceof VarCharVector) {
+      String value = result.getString(index);
+      if (value != null) {
+        ((VarCharVector) vector).setSafe(row, value.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  // ARRAY, MAP and STRUCT are read into json columns.
+  private static JdbcColumnOption optionOf(JdbcColumn column) {
+    ConfigSource option = CONFIG_MAPPER_FACTORY.newConfigSource();
+    if (isComplex(column)) {
+      option.set("type", "json");
+    }
+    return CONFIG_MAPPER_FACTORY.createConfigMapper().map(option, JdbcColumnOption.class);
+  }
+
+  private static boolean isComplex(JdbcColumn column) {
+    String typeName = column.getTypeName();
+    return typeName.startsWith("ARRAY")
+        || typeName.startsWith("MAP")
+        || typeName.startsWith("STRUCT");
+  }
+
+  private static class DiscardingPageOutput implements PageOutput {
+    private final PageOutput output;
+
+    DiscardingPageOutput(PageOutput output) {
+      this.output = output;
+    }
+
+    @Override
+    public void add(Page page) {
+      page.release();
+    }
+
+    @Override
+    public void finish() {
+      output.finish();
+    }
+
+    @Override
+    public void close() {
+      output.close();
+    }
+  }
+}
@@ -1,22 +1,75 @@
 package org.embulk.input;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import java.lang.invoke.MethodHandles;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.embulk.input.databricks.HashSplitter;
+import org.embulk.input.databricks.QueryPlaceholders;
+import org.embulk.input.databricks.QueryTag;
+import org.embulk.input.databricks.RangeSplitter;
+import org.embulk.input.databricks.SchemaCache;
 import org.embulk.input.jdbc.JdbcInputConnection;
+import org.embulk.input.jdbc.JdbcLiteral;
+import org.embulk.input.jdbc.JdbcSchema;
+import org.embulk.input.jdbc.PreparedQuery;
+import org.embulk.input.jdbc.getter.ColumnGetter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class DatabricksInputConnection extends JdbcInputConnection {
   private static final Logger logger =
       LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final String[] QUERY_ID_METHODS = {"getQueryId", "getStatementId"};
   final String catalogName;
+  private final Connection rawConnection;
+  private final Consumer<Connection> release;
+  private final long sessionSetupRoundTrips;
+  private boolean sessionModified;
+  private SchemaCache schemaCache;
+  private String schemaCacheKeyPrefix;
+  private long schemaCacheVersion;
+  private long queryNanos;
+  private String relationTable;
+  private String tableRelation;
+  private QueryPlaceholders placeholders = new QueryPlaceholders();
+  private boolean incrementalOrderBy = true;
+  private QueryTag queryTag;
+  private String queryId;
 
   public DatabricksInputConnection(Connection connection, String catalogName, String schemaName)
       throws SQLException {
+    this(connection, catalogName, schemaName, false, null);
+  }
+
+  // sessionReady is true if the session is already on the catalog and schema, because the driver
+  // set them from ConnCatalog and ConnSchema or the connection comes from ConnectionCache. If
+  // release is not null, close() hands the connection to it instead of closing it, unless user
+  // SQL such as before_select may have changed the session.
+  public DatabricksInputConnection(
+      Connection connection,
+      String catalogName,
+      String schemaName,
+      boolean sessionReady,
+      Consumer<Connection> release)
+      throws SQLException {
     super(new NoAutoCommitConnection(connection), schemaName);
     this.catalogName = catalogName;
-    useCatalog(catalogName);
-    useSchema(schemaName);
+    this.rawConnection = connection;
+    this.release = release;
+    if (!sessionReady) {
+      useCatalogAndSchema(catalogName, schemaName);
+    }
+    if (logger.isDebugEnabled() && (catalogName == null || schemaName == null)) {
+      String res = fetchOneColumn("SELECT CONCAT_WS('.', CURRENT_CATALOG(), CURRENT_SCHEMA())");
+      logger.debug("catalog_name or schema_name is not set. current schema is {}.", res);
+    }
+    this.sessionSetupRoundTrips = getRoundTrips();
   }
 
   @Override
@@ -26,24 +79,273 @@ public class DatabricksInputConnection extends JdbcInputConnection {
     // Also, the command to set the schema is unique to Databricks.
   }
 
-  protected void useCatalog(String catalog) throws SQLException {
-    // https://docs.databricks.com/en/sql/language-manual/sql-ref-syntax-ddl-use-catalog.html
-    if (catalog != null) {
-      executeUpdate("USE CATALOG " + quoteIdentifierString(catalog));
-    } else {
-      String res = fetchOneColumn("SELECT CURRENT_CATALOG()");
-      logger.debug("catalog_name is not set. current catalog is {}.", res);
+  // Sets up the session in one statement. USE SCHEMA with a qualified name sets the catalog too.
+  // https://docs.databricks.com/en/sql/language-manual/sql-ref-syntax-ddl-use-catalog.html
+  // https://docs.databricks.com/en/sql/language-manual/sql-ref-syntax-ddl-use-schema.html
+  protected void useCatalogAndSchema(String catalog, String schema) throws SQLException {
+    if (catalog != null && schema != null) {
+      super.executeUpdate(
+          "USE SCHEMA " + quoteIdentifierString(catalog) + "." + quoteIdentifierString(schema));
+    } else if (catalog != null) {
+      super.executeUpdate("USE CATALOG " + quoteIdentifierString(catalog));
+    } else if (schema != null) {
+      super.executeUpdate("USE SCHEMA " + quoteIdentifierString(schema));
     }
   }
 
-  protected void useSchema(String schema) throws SQLException {
-    // https://docs.databricks.com/en/sql/language-manual/sql-ref-syntax-ddl-use-schema.html
-    if (schema != null) {
-      executeUpdate("USE SCHEMA " + quoteIdentifierString(schema));
+  // before_setup, before_select, after_select and the other statements of the plugin come here.
+  // Any of them may change the session with USE, SET and so on, so the connection is no longer
+  // reusable after it.
+  @Override
+  public void executeUpdate(String sql) throws SQLException {
+    sessionModified = true;
+    super.executeUpdate(sql);
+  }
+
+  // Each statement is at least one round trip to the warehouse.
+  public long getRoundTrips() {
+    return ((NoAutoCommitConnection) connection).getStatementCount();
+  }
+
+  @Override
+  public void close() throws SQLException {
+    logger.info(
+        "Made {} round trips on the connection, {} of them to set up the session.",
+        getRoundTrips(),
+        sessionSetupRoundTrips);
+    if (release != null && !sessionModified) {
+      release.accept(rawConnection);
     } else {
-      String res = fetchOneColumn("SELECT CURRENT_SCHEMA()");
-      logger.debug("schema_name is not set. current schema is {}.", res);
+      super.close();
+    }
+  }
+
+  // The names of the :name placeholders of use_raw_query_with_incremental.
+  public void setPlaceholderNames(List<String> names) {
+    this.placeholders = new QueryPlaceholders(names);
+  }
+
+  // If false, the incremental query has no ORDER BY, which makes the warehouse sort the whole
+  // result into one partition before the first row. The plugin tracks last_record by itself then.
+  public void setIncrementalOrderBy(boolean incrementalOrderBy) {
+    this.incrementalOrderBy = incrementalOrderBy;
+  }
+
+  @Override
+  public PreparedQuery rebuildIncrementalQuery(
+      String rawQuery,
+      JdbcSchema querySchema,
+      List<Integer> incrementalColumnIndexes,
+      List<JsonNode> incrementalValues)
+      throws SQLException {
+    PreparedQuery query =
+        super.rebuildIncrementalQuery(
+            rawQuery, querySchema, incrementalColumnIndexes, incrementalValues);
+    if (incrementalOrderBy) {
+      return query;
+    }
+    // embulk-input-jdbc ends the query with ORDER BY of the incremental columns.
+    List<String> columns = new ArrayList<>();
+    for (int index : incrementalColumnIndexes) {
+      columns.add(quoteIdentifierString(querySchema.getColumnName(index)));
+    }
+    String orderBy = " ORDER BY " + String.join(", ", columns);
+    String sql = query.getQuery();
+    if (!sql.endsWith(orderBy)) {
+      logger.warn("The incremental query does not end with{}. Keeping the query as is.", orderBy);
+      return query;
+    }
+    return new PreparedQuery(
+        sql.substring(0, sql.length() - orderBy.length()), query.getParameters());
+  }
+
+  // Has the query built from the table option read the relation, such as a table valued function,
+  // instead of the table itself. Queries on other relations, such as the subquery of the
+  // incremental query, are built as usual.
+  public void setTableRelation(String table, String relation) {
+    this.relationTable = table;
+    this.tableRelation = relation;
+  }
+
+  @Override
+  public String buildSelectQuery(
+      String tableName,
+      Optional<String> selectExpression,
+      Optional<String> whereCondition,
+      Optional<String> orderByExpression)
+      throws SQLException {
+    if (tableRelation == null || !tableName.equalsIgnoreCase(relationTable)) {
+      return super.buildSelectQuery(
+          tableName, selectExpression, whereCondition, orderByExpression);
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append("SELECT ").append(selectExpression.orElse("*"));
+    sb.append(" FROM ").append(tableRelation);
+    if (whereCondition.isPresent()) {
+      sb.append(" WHERE ").append(whereCondition.get());
+    }
+    if (orderByExpression.isPresent()) {
+      sb.append(" ORDER BY ").append(orderByExpression.get());
+    }
+    return sb.toString();
+  }
+
+  // https://docs.databricks.com/en/sql/language-manual/sql-ref-syntax-qry-select-table-reference.html
+  public String buildVersionRelation(String table, long version) {
+    return String.format("%s VERSION AS OF %d", quoteIdentifierString(table), version);
+  }
+
+  // The changes of the table after lastVersion up to version, with the _change_type,
+  // _commit_version and _commit_timestamp columns of table_changes. Without lastVersion, or if
+  // nothing has been committed since, the rows of the table at version are read as inserts, or
+  // no rows, with the same columns.
+  // https://docs.databricks.com/en/sql/language-manual/functions/table_changes.html
+  public String buildChangeDataFeedRelation(
+      String table, Optional<Long> lastVersion, long version) {
+    if (lastVersion.isPresent() && lastVersion.get() < version) {
+      return String.format(
+          "table_changes(%s, %d, %d)", quoteStringLiteral(table), lastVersion.get() + 1, version);
+    }
+    return String.format(
+        "(SELECT *, 'insert' AS _change_type, CAST(%d AS BIGINT) AS _commit_version,"
+            + " CAST(NULL AS TIMESTAMP) AS _commit_timestamp FROM %s VERSION AS OF %d%s)"
+            + " embulk_changes_",
+        version,
+        quoteIdentifierString(table),
+        version,
+        lastVersion.isPresent() ? " WHERE 1 = 0" : "");
+  }
+
+  // Has getSchemaOfQuery look up the cache first. keyPrefix identifies the table, whose Delta
+  // version is tableVersion, and the query is appended to it.
+  public void useSchemaCache(SchemaCache cache, String keyPrefix, long tableVersion) {
+    this.schemaCache = cache;
+    this.schemaCacheKeyPrefix = keyPrefix;
+    this.schemaCacheVersion = tableVersion;
+  }
+
+  // The driver returns the metadata of a query with parameters, such as the query of
+  // use_raw_query_with_incremental, without columns. The schema is read from the query with NULL
+  // in place of the parameters instead, which has the same columns.
+  @Override
+  public JdbcSchema getSchemaOfQuery(String query) throws SQLException {
+    if (placeholders.countParameters(query) > 0) {
+      query = placeholders.replaceParameters(query, "NULL");
+    }
+    if (schemaCache == null) {
+      return super.getSchemaOfQuery(query);
+    }
+    String key = schemaCacheKeyPrefix + "\n" + query;
+    Optional<JdbcSchema> cached = schemaCache.get(key, schemaCacheVersion);
+    if (cached.isPresent()) {
+      logger.info("Using the cached schema of the query at table version {}.", schemaCacheVersion);
+      return cached.get();
     }
+    JdbcSchema schema = super.getSchemaOfQuery(query);
+    schemaCache.put(key, schemaCacheVersion, schema);
+    return schema;
+  }
+
+  // Returns the latest version of a Delta table, or empty if the table has no history, such as a
+  // view.
+  // https://docs.databricks.com/en/sql/language-manual/delta-describe-history.html
+  public Optional<Long> fetchTableVersion(String table) throws SQLException {
+    String sql = "DESCRIBE HISTORY " + quoteIdentifierString(table) + " LIMIT 1";
+    logger.info("SQL: " + sql);
+    try (Statement stmt = connection.createStatement()) {
+      ResultSet rs = stmt.executeQuery(sql);
+      if (!rs.next()) {
+        return Optional.empty();
+      }
+      return Optional.of(rs.getLong("version"));
+    } catch (SQLException e) {
+      logger.info("Table {} has no Delta history: {}", table, e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  // The comment prepareSelect appends to the query.
+  public void setQueryTag(QueryTag queryTag) {
+    this.queryTag = queryTag;
+  }
+
+  // Same as JdbcInputConnection#newSelectCursor, but hands out the statement itself so that the
+  // caller can reach the driver's result set.
+  public PreparedStatement prepareSelect(
+      PreparedQuery preparedQuery, List<ColumnGetter> getters, int fetchRows, int queryTimeout)
+      throws SQLException {
+    String query =
+        queryTag != null ? queryTag.append(preparedQuery.getQuery()) : preparedQuery.getQuery();
+    PreparedStatement stmt = connection.prepareStatement(query);
+    stmt.setFetchSize(fetchRows);
+    stmt.setQueryTimeout(queryTimeout);
+    logger.info("SQL: " + query);
+    List<JdbcLiteral> params = preparedQuery.getParameters();
+    if (!params.isEmpty()) {
+      logger.info("Parameters: {}", params);
+      for (int i = 0; i < params.size(); i++) {
+        JdbcLiteral param = params.get(i);
+        getters.get(param.getColumnIndex()).decodeFromJsonTo(stmt, i + 1, param.getValue());
+      }
+    }
+    return stmt;
+  }
+
+  // Runs the statement of prepareSelect, counting the time until the first result is ready.
+  public ResultSet executeSelect(PreparedStatement stmt) throws SQLException {
+    long start = System.nanoTime();
+    ResultSet rs;
+    try {
+      rs = stmt.executeQuery();
+    } finally {
+      queryNanos += System.nanoTime() - start;
+    }
+    queryId = queryIdOf(stmt);
+    if (queryId != null) {
+      logger.info("Query ID: {}", queryId);
+    }
+    return rs;
+  }
+
+  public long getQueryMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(queryNanos);
+  }
+
+  // The ID of the last query of executeSelect in the query history of the warehouse, or empty if
+  // the driver does not tell it.
+  public Optional<String> getQueryId() {
+    return Optional.ofNullable(queryId);
+  }
+
+  // JDBC has no method for the ID of a statement, so it is looked up by the names the drivers use
+  // on the driver's statement.
+  private static String queryIdOf(Statement stmt) {
+    for (String name : QUERY_ID_METHODS) {
+      try {
+        Object id = stmt.getClass().getMethod(name).invoke(stmt);
+        if (id != null && !id.toString().isEmpty()) {
+          return id.toString();
+        }
+      } catch (NoSuchMethodException e) {
+        // Try the next name.
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        logger.debug("Failed to get the query ID from {}.", name, e);
+      }
+    }
+    return null;
+  }
+
+  // A driver that receives the result as Arrow can hand out the record batches through
+  // ResultSet#unwrap. The bundled driver keeps Arrow internal, so this is empty for it.
+  public Optional<ArrowReader> unwrapArrowReader(ResultSet rs) {
+    try {
+      if (rs.isWrapperFor(ArrowReader.class)) {
+        return Optional.of(rs.unwrap(ArrowReader.class));
+      }
+    } catch (SQLException e) {
+      logger.debug("The driver does not hand out Arrow record batches.", e);
+    }
+    return Optional.empty();
   }
 
   protected String fetchOneColumn(String sql) throws SQLException {
@@ -54,4 +356,59 @@ public class DatabricksInputConnection extends JdbcInputConnection {
       return rs.getString(1);
     }
   }
+
+  public RangeSplitter newRangeSplitter(String column, RangeSplitter.Kind kind) {
+    return new RangeSplitter(quoteIdentifierString(column), kind);
+  }
+
+  public HashSplitter newHashSplitter(List<String> columns) {
+    List<String> quotedColumns = new ArrayList<>();
+    for (String column : columns) {
+      quotedColumns.add(quoteIdentifierString(column));
+    }
+    return new HashSplitter(quotedColumns);
+  }
+
+  // Returns MIN and MAX of the split column, or empty if the query returns no non-null value.
+  public Optional<long[]> fetchSplitRange(RangeSplitter splitter, String rawQuery)
+      throws SQLException {
+    String sql = splitter.buildRangeQuery(rawQuery);
+    logger.info("SQL: " + sql);
+    try (Statement stmt = connection.createStatement()) {
+      ResultSet rs = stmt.executeQuery(sql);
+      rs.next();
+      long min = rs.getLong(1);
+      if (rs.wasNull()) {
+        return Optional.empty();
+      }
+      long max = rs.getLong(2);
+      return Optional.of(new long[] {min, max});
+    }
+  }
+
+  public String buildSplitQuery(String rawQuery, String predicate) {
+    return String.format(
+        "SELECT * FROM (%s) embulk_split_ WHERE %s",
+        RangeSplitter.stripTrailingSemicolon(rawQuery), predicate);
+  }
+
+  // Has the warehouse write the result of the query into the directory as CSV files.
+  //
+  // NULL is written as an unquoted empty field and an empty string as "", so CsvChunkReader can
+  // tell them apart. Quotes are doubled as in RFC 4180 rather than escaped with a backslash.
+  // https://docs.databricks.com/en/sql/language-manual/sql-ref-syntax-dml-insert-overwrite-directory.html
+  // https://spark.apache.org/docs/latest/sql-data-sources-csv.html#data-source-option
+  public String buildExportStatement(String directory, String rawQuery) {
+    return String.format(
+        "INSERT OVERWRITE DIRECTORY %s USING CSV OPTIONS ("
+            + "header 'false', escape '\"', nullValue '', "
+            + "dateFormat 'yyyy-MM-dd', "
+            + "timestampFormat 'yyyy-MM-dd HH:mm:ss.SSSSSSXXX', "
+            + "timestampNTZFormat 'yyyy-MM-dd HH:mm:ss.SSSSSS') %s",
+        quoteStringLiteral(directory), RangeSplitter.stripTrailingSemicolon(rawQuery));
+  }
+
+  private static String quoteStringLiteral(String value) {
+    return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+  }
 }
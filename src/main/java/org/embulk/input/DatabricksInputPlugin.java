@@ -1,17 +1,91 @@
 package org.embulk.input;
 
+import static java.util.Locale.ENGLISH;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.embulk.config.ConfigDiff;
 import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
+import org.embulk.config.TaskSource;
+import org.embulk.input.databricks.ArrowPageWriter;
+import org.embulk.input.databricks.BinaryEncoder;
+import org.embulk.input.databricks.ConnectionCache;
+import org.embulk.input.databricks.CsvChunkReader;
+import org.embulk.input.databricks.CsvPageWriter;
+import org.embulk.input.databricks.DatabricksApiClient;
+import org.embulk.input.databricks.DatabricksColumnGetterFactory;
+import org.embulk.input.databricks.ExportLocation;
+import org.embulk.input.databricks.FetchMetrics;
+import org.embulk.input.databricks.FetchSizer;
+import org.embulk.input.databricks.HashSplitter;
+import org.embulk.input.databricks.JsonValueReader;
+import org.embulk.input.databricks.LargeValuePolicy;
+import org.embulk.input.databricks.LastRecords;
+import org.embulk.input.databricks.LocalExportLocation;
+import org.embulk.input.databricks.PagePrefetcher;
+import org.embulk.input.databricks.QueryHistoryClient;
+import org.embulk.input.databricks.QueryTag;
+import org.embulk.input.databricks.RangeSplitter;
+import org.embulk.input.databricks.SchemaCache;
+import org.embulk.input.databricks.StatementExecutionClient;
+import org.embulk.input.databricks.StatementExecutionFetcher;
+import org.embulk.input.databricks.VolumeExportLocation;
 import org.embulk.input.jdbc.AbstractJdbcInputPlugin;
+import org.embulk.input.jdbc.JdbcColumn;
+import org.embulk.input.jdbc.JdbcColumnOption;
 import org.embulk.input.jdbc.JdbcInputConnection;
+import org.embulk.input.jdbc.JdbcLiteral;
+import org.embulk.input.jdbc.JdbcSchema;
+import org.embulk.input.jdbc.PreparedQuery;
+import org.embulk.input.jdbc.getter.ColumnGetter;
+import org.embulk.input.jdbc.getter.ColumnGetterFactory;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.Column;
+import org.embulk.spi.DataException;
+import org.embulk.spi.Exec;
+import org.embulk.spi.InputPlugin;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
 import org.embulk.spi.Schema;
 import org.embulk.util.config.Config;
 import org.embulk.util.config.ConfigDefault;
+import org.embulk.util.config.ConfigMapper;
+import org.embulk.util.config.ConfigMapperFactory;
 import org.embulk.util.config.Task;
+import org.embulk.util.config.TaskMapper;
+import org.embulk.util.config.modules.ZoneIdModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,11 +93,47 @@ public class DatabricksInputPlugin extends AbstractJdbcInputPlugin {
 
   private static final Logger logger = LoggerFactory.getLogger(DatabricksInputPlugin.class);
 
+  private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY =
+      ConfigMapperFactory.builder()
+          .addDefaultModules()
+          .addModule(ZoneIdModule.withLegacyNames())
+          .build();
+  private static final ConfigMapper CONFIG_MAPPER = CONFIG_MAPPER_FACTORY.createConfigMapper();
+  private static final TaskMapper TASK_MAPPER = CONFIG_MAPPER_FACTORY.createTaskMapper();
+
+  private static final String FETCH_MODE_JDBC = "jdbc";
+  private static final String FETCH_MODE_STATEMENT_EXECUTION = "statement_execution";
+  private static final String FETCH_MODE_EXPORT = "export";
+  private static final String INCREMENTAL_MODE_LAST_RECORD = "last_record";
+  private static final String INCREMENTAL_MODE_LAST_RECORD_UNORDERED = "last_record_unordered";
+  private static final String INCREMENTAL_MODE_CHANGE_DATA_FEED = "change_data_feed";
+  private static final String VOLUMES_PREFIX = "/Volumes/";
+  private static final long STATEMENT_POLL_INTERVAL_MILLIS = 500L;
+  // The rows fetch adds up before it publishes them to FetchMetrics.
+  private static final long METRICS_ROWS = 1024;
+  // With STATEMENT_POLL_INTERVAL_MILLIS, up to 10 seconds for a query to show up in the history.
+  private static final int QUERY_HISTORY_ATTEMPTS = 20;
+  // The fetch sizes of fetch_memory_budget. The first fetch is small for the first row to come
+  // soon.
+  private static final int ADAPTIVE_FIRST_FETCH_ROWS = 100;
+  private static final int ADAPTIVE_MAX_FETCH_ROWS = 1_000_000;
+
+  // Milliseconds the first connection of the running transaction took to open, which is the time
+  // a stopped warehouse took to start. Empty if the connection came from the connection cache.
+  private boolean timingFirstConnection;
+  private Optional<Long> firstConnectionMillis = Optional.empty();
+
   public interface DatabricksPluginTask extends PluginTask {
     @Config("driver_path")
     @ConfigDefault("null")
     public Optional<String> getDriverPath();
 
+    // Overrides the URL built from server_hostname, such as for another port or a fake driver of
+    // the tests.
+    @Config("url")
+    @ConfigDefault("null")
+    public Optional<String> getUrl();
+
     @Config("server_hostname")
     public String getServerHostname();
 
@@ -54,6 +164,182 @@ public class DatabricksInputPlugin extends AbstractJdbcInputPlugin {
       @ConfigDefault("\"0.0.0\"")
       public String getProductVersion();
     }
+
+    @Config("split_mode")
+    @ConfigDefault("\"range\"")
+    public String getSplitMode();
+
+    @Config("split_column")
+    @ConfigDefault("null")
+    public Optional<String> getSplitColumn();
+
+    @Config("split_hash_columns")
+    @ConfigDefault("[]")
+    public List<String> getSplitHashColumns();
+
+    @Config("split_count")
+    @ConfigDefault("1")
+    public int getSplitCount();
+
+    @Config("use_arrow")
+    @ConfigDefault("false")
+    public boolean getUseArrow();
+
+    @Config("prefetch")
+    @ConfigDefault("false")
+    public boolean getPrefetch();
+
+    @Config("prefetch_queue_bytes")
+    @ConfigDefault("33554432")
+    public long getPrefetchQueueBytes();
+
+    @Config("fetch_mode")
+    @ConfigDefault("\"jdbc\"")
+    public String getFetchMode();
+
+    @Config("statement_format")
+    @ConfigDefault("\"arrow_stream\"")
+    public String getStatementFormat();
+
+    @Config("download_threads")
+    @ConfigDefault("4")
+    public int getDownloadThreads();
+
+    @Config("download_memory_limit")
+    @ConfigDefault("268435456")
+    public long getDownloadMemoryLimit();
+
+    @Config("warehouse_id")
+    @ConfigDefault("null")
+    public Optional<String> getWarehouseId();
+
+    @Config("api_endpoint")
+    @ConfigDefault("null")
+    public Optional<String> getApiEndpoint();
+
+    @Config("export_location")
+    @ConfigDefault("null")
+    public Optional<String> getExportLocation();
+
+    @Config("export_cleanup")
+    @ConfigDefault("true")
+    public boolean getExportCleanup();
+
+    @Config("connection_cache")
+    @ConfigDefault("false")
+    public boolean getConnectionCache();
+
+    @Config("connection_idle_timeout")
+    @ConfigDefault("60")
+    public int getConnectionIdleTimeout();
+
+    @Config("incremental_mode")
+    @ConfigDefault("\"last_record\"")
+    public String getIncrementalMode();
+
+    @Config("last_commit_version")
+    @ConfigDefault("null")
+    public Optional<Long> getLastCommitVersion();
+
+    @Config("pin_version")
+    @ConfigDefault("false")
+    public boolean getPinVersion();
+
+    @Config("snapshot_version")
+    @ConfigDefault("null")
+    public Optional<Long> getSnapshotVersion();
+
+    @Config("json_max_depth")
+    @ConfigDefault("128")
+    public int getJsonMaxDepth();
+
+    @Config("json_max_length")
+    @ConfigDefault("67108864")
+    public long getJsonMaxLength();
+
+    @Config("binary_encoding")
+    @ConfigDefault("\"base64\"")
+    public String getBinaryEncoding();
+
+    @Config("binary_max_bytes")
+    @ConfigDefault("16777216")
+    public long getBinaryMaxBytes();
+
+    @Config("large_value_max_chars")
+    @ConfigDefault("null")
+    public Optional<Long> getLargeValueMaxChars();
+
+    @Config("large_value_policy")
+    @ConfigDefault("\"fail\"")
+    public String getLargeValuePolicy();
+
+    @Config("schema_cache")
+    @ConfigDefault("false")
+    public boolean getSchemaCache();
+
+    @Config("schema_cache_directory")
+    @ConfigDefault("null")
+    public Optional<String> getSchemaCacheDirectory();
+
+    @Config("metrics_jmx")
+    @ConfigDefault("false")
+    public boolean getMetricsJmx();
+
+    @Config("metrics_file")
+    @ConfigDefault("null")
+    public Optional<String> getMetricsFile();
+
+    @Config("fetch_memory_budget")
+    @ConfigDefault("null")
+    public Optional<Long> getFetchMemoryBudget();
+
+    @Config("query_comment")
+    @ConfigDefault("false")
+    public boolean getQueryComment();
+
+    @Config("query_tag")
+    @ConfigDefault("null")
+    public Optional<String> getQueryTag();
+
+    @Config("query_history_metrics")
+    @ConfigDefault("false")
+    public boolean getQueryHistoryMetrics();
+
+    // One query per task. Empty if the input is not split.
+    public List<PreparedQuery> getSplitQueries();
+
+    public void setSplitQueries(List<PreparedQuery> splitQueries);
+
+    // The directory the result is exported into. Empty unless fetch_mode is export.
+    public Optional<String> getExportDirectory();
+
+    public void setExportDirectory(Optional<String> exportDirectory);
+
+    // One file per task.
+    public List<String> getExportFiles();
+
+    public void setExportFiles(List<String> exportFiles);
+
+    // The table version read up to if incremental_mode is change_data_feed.
+    public Optional<Long> getCommitVersion();
+
+    public void setCommitVersion(Optional<Long> commitVersion);
+
+    // The table version all the tasks read.
+    public Optional<Long> getPinnedVersion();
+
+    public void setPinnedVersion(Optional<Long> pinnedVersion);
+
+    // Milliseconds the first connection of the transaction took to open, if it was opened.
+    public Optional<Long> getWarehouseStartMillis();
+
+    public void setWarehouseStartMillis(Optional<Long> warehouseStartMillis);
+
+    // The transaction time of the run in epoch milliseconds, the job of the query comment. It is
+    // kept by a resumed run, so that the resumed queries are the same text as the first ones.
+    public long getQueryJobMillis();
+
+    public void setQueryJobMillis(long queryJobMillis);
   }
 
   @Override
@@ -61,14 +347,67 @@ public class DatabricksInputPlugin extends AbstractJdbcInputPlugin {
     return DatabricksPluginTask.class;
   }
 
+  @Override
+  protected ColumnGetterFactory newColumnGetterFactory(
+      PageBuilder pageBuilder, ZoneId dateTimeZone) {
+    return new DatabricksColumnGetterFactory(pageBuilder, dateTimeZone);
+  }
+
   @Override
   protected JdbcInputConnection newConnection(PluginTask task) throws SQLException {
-    // https://docs.databricks.com/en/integrations/jdbc/index.html
-    // https://docs.databricks.com/en/integrations/jdbc/authentication.html
-    // https://docs.databricks.com/en/integrations/jdbc/compute.html
     DatabricksPluginTask t = (DatabricksPluginTask) task;
-    if (t.getDriverPath().isPresent()) {
-      addDriverJarToClasspath(t.getDriverPath().get());
+    String url = urlOf(t);
+    Properties props = connectionPropertiesOf(t);
+    String catalog = t.getCatalogName().orElse(null);
+    String schema = t.getSchemaName().orElse(null);
+    // The driver opens the session on ConnCatalog and ConnSchema, so USE is needed only if options
+    // overwrite them.
+    boolean sessionReady =
+        Objects.equals(catalog, props.getProperty("ConnCatalog"))
+            && Objects.equals(schema, props.getProperty("ConnSchema"));
+    if (!t.getConnectionCache()) {
+      return new DatabricksInputConnection(
+          openConnection(t, url, props), catalog, schema, sessionReady, null);
+    }
+
+    // The connection of setupTask is handed to a task, and the connections of tasks to the next
+    // tasks of the same transaction.
+    ConnectionCache cache = ConnectionCache.getInstance();
+    ConnectionCache.Key key =
+        new ConnectionCache.Key(t.getServerHostname(), t.getHTTPPath(), catalog, schema, props);
+    long idleTimeoutMillis = t.getConnectionIdleTimeout() * 1000L;
+    Optional<Connection> cached = cache.acquire(key);
+    Connection c;
+    if (cached.isPresent()) {
+      c = cached.get();
+    } else {
+      c = openConnection(t, url, props);
+    }
+    return new DatabricksInputConnection(
+        c,
+        catalog,
+        schema,
+        sessionReady || cached.isPresent(),
+        released -> cache.release(key, released, idleTimeoutMillis));
+  }
+
+  private Connection openConnection(DatabricksPluginTask task, String url, Properties props)
+      throws SQLException {
+    loadDriver(task);
+    logConnectionProperties(url, props);
+    long start = System.nanoTime();
+    Connection connection = DriverManager.getConnection(url, props);
+    if (timingFirstConnection) {
+      timingFirstConnection = false;
+      firstConnectionMillis = Optional.of(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      logger.info("The warehouse is ready in {} ms.", firstConnectionMillis.get());
+    }
+    return connection;
+  }
+
+  private void loadDriver(DatabricksPluginTask task) {
+    if (task.getDriverPath().isPresent()) {
+      addDriverJarToClasspath(task.getDriverPath().get());
     } else {
       try {
         Class.forName("com.databricks.client.jdbc.Driver");
@@ -76,7 +415,19 @@ public class DatabricksInputPlugin extends AbstractJdbcInputPlugin {
         throw new RuntimeException(e);
       }
     }
-    String url = String.format("jdbc:databricks://%s:443", t.getServerHostname());
+  }
+
+  private static String urlOf(DatabricksPluginTask task) {
+    if (task.getUrl().isPresent()) {
+      return task.getUrl().get();
+    }
+    // https://docs.databricks.com/en/integrations/jdbc/index.html
+    return String.format("jdbc:databricks://%s:443", task.getServerHostname());
+  }
+
+  private static Properties connectionPropertiesOf(DatabricksPluginTask t) {
+    // https://docs.databricks.com/en/integrations/jdbc/authentication.html
+    // https://docs.databricks.com/en/integrations/jdbc/compute.html
     Properties props = new java.util.Properties();
     props.put("httpPath", t.getHTTPPath());
     props.put("AuthMech", "3");
@@ -95,11 +446,34 @@ public class DatabricksInputPlugin extends AbstractJdbcInputPlugin {
     String productName = t.getUserAgentEntry().getProductName();
     String productVersion = t.getUserAgentEntry().getProductVersion();
     props.put("UserAgentEntry", productName + "/" + productVersion);
+    return props;
+  }
 
-    logConnectionProperties(url, props);
-    Connection c = DriverManager.getConnection(url, props);
-    return new DatabricksInputConnection(
-        c, t.getCatalogName().orElse(null), t.getSchemaName().orElse(null));
+  // The fetch engine of fetch_mode: statement_execution. The schema is still read through JDBC.
+  protected StatementExecutionClient newStatementExecutionClient(DatabricksPluginTask task) {
+    // https://docs.databricks.com/api/workspace/statementexecution
+    return new StatementExecutionClient(
+        newApiClient(task),
+        warehouseIdOf(task),
+        task.getCatalogName().orElse(null),
+        task.getSchemaName().orElse(null),
+        STATEMENT_POLL_INTERVAL_MILLIS);
+  }
+
+  private static DatabricksApiClient newApiClient(DatabricksPluginTask task) {
+    String endpoint = task.getApiEndpoint().orElse("https://" + task.getServerHostname());
+    return new DatabricksApiClient(
+        endpoint,
+        task.getPersonalAccessToken(),
+        task.getConnectTimeout() * 1000,
+        task.getSocketTimeout() * 1000);
+  }
+
+  private static String warehouseIdOf(DatabricksPluginTask task) {
+    if (task.getWarehouseId().isPresent()) {
+      return task.getWarehouseId().get();
+    }
+    return StatementExecutionClient.warehouseIdOf(task.getHTTPPath());
   }
 
   @Override
@@ -115,19 +489,1079 @@ public class DatabricksInputPlugin extends AbstractJdbcInputPlugin {
 
   @Override
   protected Schema setupTask(JdbcInputConnection con, PluginTask task) throws SQLException {
-    if (task.getUseRawQueryWithIncremental()) {
-      // spotless:off
-      // A query metadata with placeholder result is empty in databricks jdbc.
-      //
-      // Example:
-      //   CREATE TABLE t (_c0 LONG PRIMARY KEY, _c1 STRING)
-      //   connection().prepareStatement("select * from t where c0 > ?").getMetaData().getColumnCount(); // 0
-      //
-      // So, the input schema cannot be determined by the query, use_raw_query_with_incremental is not supported.
-      // If that behaviour changes, enable use_raw_query_with_incremental support.
-      // spotless:on
-      throw new ConfigException("use_raw_query_with_incremental option is not supported.");
-    }
-    return super.setupTask(con, task);
+    DatabricksPluginTask t = (DatabricksPluginTask) task;
+    DatabricksInputConnection dcon = (DatabricksInputConnection) con;
+    validateFetchMode(t);
+    validateIncrementalMode(t);
+    binaryEncoderOf(t);
+    largeValuePolicyOf(t);
+    if (t.getUseRawQueryWithIncremental()) {
+      dcon.setPlaceholderNames(t.getIncrementalColumns());
+    }
+    // A raw query is not given an ORDER BY to remove, and is run as written.
+    if (isUnordered(t) && !t.getUseRawQueryWithIncremental()) {
+      dcon.setIncrementalOrderBy(false);
+    }
+    t.setWarehouseStartMillis(firstConnectionMillis);
+    t.setQueryJobMillis(Exec.getTransactionTimeInstant().toEpochMilli());
+    // The current Delta version of the table, read once for the features that need it.
+    Optional<Long> tableVersion = Optional.empty();
+    if (t.getTable().isPresent() && needsTableVersion(t)) {
+      tableVersion = dcon.fetchTableVersion(t.getTable().get());
+    }
+    t.setCommitVersion(Optional.empty());
+    t.setPinnedVersion(Optional.empty());
+    if (isChangeDataFeed(t)) {
+      readChangeDataFeed(dcon, t, tableVersion);
+      // table_changes and VERSION AS OF in the relation already pin the version.
+      t.setPinnedVersion(t.getCommitVersion());
+    } else if (isPinVersion(t)) {
+      pinVersion(dcon, t, tableVersion);
+    }
+    if (t.getSchemaCache()) {
+      // The schema is of the version the tasks read.
+      useSchemaCache(
+          dcon, t, t.getPinnedVersion().isPresent() ? t.getPinnedVersion() : tableVersion);
+    }
+    Schema schema = super.setupTask(con, task);
+    t.setSplitQueries(buildSplitQueries((DatabricksInputConnection) con, t));
+    if (t.getFetchMode().equals(FETCH_MODE_EXPORT)) {
+      exportResult((DatabricksInputConnection) con, t);
+    } else {
+      t.setExportDirectory(Optional.empty());
+      t.setExportFiles(Collections.emptyList());
+    }
+    return schema;
+  }
+
+  private static boolean isPinVersion(DatabricksPluginTask task) {
+    return task.getPinVersion() || task.getSnapshotVersion().isPresent();
+  }
+
+  // An explicit snapshot_version is the version read, so DESCRIBE HISTORY is run only if the
+  // changes, pin_version or schema_cache need the current version.
+  private static boolean needsTableVersion(DatabricksPluginTask task) {
+    if (isChangeDataFeed(task)) {
+      return true;
+    }
+    return !task.getSnapshotVersion().isPresent()
+        && (task.getPinVersion() || task.getSchemaCache());
+  }
+
+  // Has every task, including the retried and resumed ones, read the same version of the table,
+  // by reading it with VERSION AS OF. The query with the version is built here once and kept in
+  // the task, and the split queries are built on it.
+  // https://docs.databricks.com/en/delta/history.html#delta-time-travel-syntax
+  private static void pinVersion(
+      DatabricksInputConnection con, DatabricksPluginTask task, Optional<Long> currentVersion) {
+    if (!task.getTable().isPresent()) {
+      throw new ConfigException("pin_version and snapshot_version require table.");
+    }
+    String table = task.getTable().get();
+    Optional<Long> version =
+        task.getSnapshotVersion().isPresent() ? task.getSnapshotVersion() : currentVersion;
+    if (!version.isPresent()) {
+      throw new ConfigException(
+          String.format("pin_version requires a Delta table, but %s has no history.", table));
+    }
+    logger.info("Reading version {} of {}.", version.get(), table);
+    con.setTableRelation(table, con.buildVersionRelation(table, version.get()));
+    task.setPinnedVersion(version);
+  }
+
+  private static boolean isUnordered(DatabricksPluginTask task) {
+    return task.getIncrementalMode().equals(INCREMENTAL_MODE_LAST_RECORD_UNORDERED);
+  }
+
+  private static boolean isChangeDataFeed(DatabricksPluginTask task) {
+    return task.getIncrementalMode().equals(INCREMENTAL_MODE_CHANGE_DATA_FEED);
+  }
+
+  private static void validateIncrementalMode(DatabricksPluginTask task) {
+    // The :name placeholders would be left in the MIN and MAX query of split_mode: range and in
+    // the query of every split, which only wrap the raw query.
+    if (task.getUseRawQueryWithIncremental() && task.getSplitCount() > 1) {
+      throw new ConfigException(
+          "use_raw_query_with_incremental cannot be used with split_count greater than 1.");
+    }
+    switch (task.getIncrementalMode()) {
+      case INCREMENTAL_MODE_LAST_RECORD:
+        return;
+      case INCREMENTAL_MODE_LAST_RECORD_UNORDERED:
+        if (!task.getIncremental()) {
+          throw new ConfigException(
+              "incremental_mode: last_record_unordered requires incremental: true.");
+        }
+        return;
+      case INCREMENTAL_MODE_CHANGE_DATA_FEED:
+        if (!task.getTable().isPresent()) {
+          throw new ConfigException("incremental_mode: change_data_feed requires table.");
+        }
+        // The changes are tracked by the commit version, not by last_record.
+        if (task.getIncremental()) {
+          throw new ConfigException(
+              "incremental_mode: change_data_feed cannot be used with incremental: true.");
+        }
+        return;
+      default:
+        throw new ConfigException(
+            String.format(
+                "Unknown incremental_mode '%s'. Supported incremental_mode are last_record, "
+                    + "last_record_unordered and change_data_feed.",
+                task.getIncrementalMode()));
+    }
+  }
+
+  // Reads the changes committed after last_commit_version up to the current version of the table
+  // through its Change Data Feed, which reads only the files written by those commits. The first
+  // run, without last_commit_version, reads the current version of the table as inserts.
+  // https://docs.databricks.com/en/delta/delta-change-data-feed.html
+  private static void readChangeDataFeed(
+      DatabricksInputConnection con, DatabricksPluginTask task, Optional<Long> version) {
+    String table = task.getTable().get();
+    if (!version.isPresent()) {
+      throw new ConfigException(
+          String.format(
+              "incremental_mode: change_data_feed requires a Delta table, but %s has no history.",
+              table));
+    }
+    Optional<Long> lastVersion = task.getLastCommitVersion();
+    if (lastVersion.isPresent() && lastVersion.get() > version.get()) {
+      throw new ConfigException(
+          String.format(
+              "last_commit_version %d is newer than the current version %d of %s.",
+              lastVersion.get(), version.get(), table));
+    }
+    logger.info(
+        "Reading the changes of {} after version {} up to version {}.",
+        table,
+        lastVersion.map(String::valueOf).orElse("(none)"),
+        version.get());
+    con.setTableRelation(
+        table, con.buildChangeDataFeedRelation(table, lastVersion, version.get()));
+    task.setCommitVersion(version);
+  }
+
+  // The schema of a query on a table is cached with the Delta version of the table, so that it is
+  // read from the warehouse again only after the table changes. A query given by the query option
+  // may read any table, so its schema is not cached.
+  private static void useSchemaCache(
+      DatabricksInputConnection con, DatabricksPluginTask task, Optional<Long> version) {
+    if (!task.getTable().isPresent()) {
+      logger.info("schema_cache is ignored because table is not set.");
+      return;
+    }
+    String table = task.getTable().get();
+    if (!version.isPresent()) {
+      return;
+    }
+    Path directory =
+        task.getSchemaCacheDirectory()
+            .map(Paths::get)
+            .orElse(
+                Paths.get(System.getProperty("java.io.tmpdir"), "embulk-input-databricks-schema"));
+    String keyPrefix =
+        String.join(
+            "\n",
+            task.getServerHostname(),
+            task.getCatalogName().orElse(""),
+            task.getSchemaName().orElse(""),
+            table);
+    con.useSchemaCache(new SchemaCache(directory), keyPrefix, version.get());
+  }
+
+  private static void validateFetchMode(DatabricksPluginTask task) {
+    switch (task.getFetchMode()) {
+      case FETCH_MODE_JDBC:
+        if (task.getFetchMemoryBudget().isPresent() && task.getFetchMemoryBudget().get() <= 0) {
+          throw new ConfigException("fetch_memory_budget must be greater than 0.");
+        }
+        return;
+      case FETCH_MODE_STATEMENT_EXECUTION:
+        statementFormatOf(task);
+        warehouseIdOf(task);
+        if (task.getDownloadThreads() < 1) {
+          throw new ConfigException("download_threads must be greater than 0.");
+        }
+        break;
+      case FETCH_MODE_EXPORT:
+        if (!task.getExportLocation().isPresent()) {
+          throw new ConfigException("export_location must be set if fetch_mode is export.");
+        }
+        checkExportLocation(task.getExportLocation().get());
+        if (task.getSplitCount() > 1) {
+          throw new ConfigException(
+              "fetch_mode: export does not support split_count. "
+                  + "The exported files are read in parallel instead.");
+        }
+        break;
+      default:
+        throw new ConfigException(
+            String.format(
+                "Unknown fetch_mode '%s'. Supported fetch_mode are jdbc, statement_execution and "
+                    + "export.",
+                task.getFetchMode()));
+    }
+    // The rows are not read by ColumnGetters in these modes, so neither last_record nor the
+    // conversions of column_options are available.
+    if (task.getIncremental()) {
+      throw new ConfigException(
+          String.format("fetch_mode: %s does not support incremental.", task.getFetchMode()));
+    }
+    if (!task.getColumnOptions().isEmpty() || !task.getDefaultColumnOptions().isEmpty()) {
+      throw new ConfigException(
+          String.format(
+              "fetch_mode: %s does not support column_options and default_column_options.",
+              task.getFetchMode()));
+    }
+  }
+
+  private static void checkExportLocation(String location) {
+    if (!location.startsWith(VOLUMES_PREFIX) && !location.startsWith("file:")) {
+      throw new ConfigException(
+          String.format(
+              "export_location '%s' must be a path of a volume (/Volumes/...) or a file: URI.",
+              location));
+    }
+  }
+
+  private ExportLocation newExportLocation(DatabricksPluginTask task, String directory) {
+    if (directory.startsWith(VOLUMES_PREFIX)) {
+      return new VolumeExportLocation(newApiClient(task), directory);
+    }
+    return new LocalExportLocation(Paths.get(URI.create(directory)));
+  }
+
+  // The built query of fetch_mode: export and statement_execution, which run it as text. Only the
+  // incremental query has parameters, and validateFetchMode rejects incremental in these modes.
+  private static String queryWithoutParametersOf(DatabricksPluginTask task) {
+    return task.getBuiltQuery().getQuery();
+  }
+
+  // Has the warehouse write the result into a new directory under export_location, and lists
+  // the files. Each file is read by its own task.
+  private void exportResult(DatabricksInputConnection con, DatabricksPluginTask task)
+      throws SQLException {
+    checkExportColumns(task.getQuerySchema());
+    String base = task.getExportLocation().get().replaceAll("/+$", "");
+    String directory = base + "/embulk_export_" + UUID.randomUUID().toString().replace("-", "");
+    ExportLocation location = newExportLocation(task, directory);
+    if (task.getBeforeSelect().isPresent()) {
+      con.executeUpdate(task.getBeforeSelect().get());
+    }
+    con.executeUpdate(con.buildExportStatement(location.getUri(), queryWithoutParametersOf(task)));
+    if (task.getAfterSelect().isPresent()) {
+      con.executeUpdate(task.getAfterSelect().get());
+    }
+    List<String> files;
+    try {
+      files = location.listFiles();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    logger.info("Exported the result into {} files in {}.", files.size(), directory);
+    task.setExportDirectory(Optional.of(directory));
+    task.setExportFiles(files);
+  }
+
+  // The CSV data source of the warehouse cannot write ARRAY, MAP, STRUCT and BINARY, so the export
+  // would fail on the warehouse after the query has run.
+  private static void checkExportColumns(JdbcSchema schema) {
+    for (JdbcColumn column : schema.getColumns()) {
+      switch (baseTypeNameOf(column)) {
+        case "ARRAY":
+        case "MAP":
+        case "STRUCT":
+        case "BINARY":
+          throw new ConfigException(
+              String.format(
+                  "fetch_mode: export does not support column '%s' of type %s. Cast it to STRING"
+                      + " in query, or use another fetch_mode.",
+                  column.getName(), column.getTypeName()));
+        default:
+          break;
+      }
+    }
+  }
+
+  // The type name of the column without its parameters, such as ARRAY for ARRAY<INT>.
+  private static String baseTypeNameOf(JdbcColumn column) {
+    String typeName = column.getTypeName().toUpperCase(Locale.ROOT);
+    for (int i = 0; i < typeName.length(); i++) {
+      char c = typeName.charAt(i);
+      if (c == '<' || c == '(') {
+        return typeName.substring(0, i).trim();
+      }
+    }
+    return typeName;
+  }
+
+  private static BinaryEncoder binaryEncoderOf(DatabricksPluginTask task) {
+    switch (task.getBinaryEncoding()) {
+      case BinaryEncoder.BASE64:
+      case BinaryEncoder.HEX:
+        return new BinaryEncoder(task.getBinaryEncoding(), task.getBinaryMaxBytes());
+      default:
+        throw new ConfigException(
+            String.format(
+                "Unknown binary_encoding '%s'. Supported binary_encoding are base64 and hex.",
+                task.getBinaryEncoding()));
+    }
+  }
+
+  // Null unless large_value_max_chars is set.
+  private static LargeValuePolicy largeValuePolicyOf(DatabricksPluginTask task) {
+    if (!task.getLargeValueMaxChars().isPresent()) {
+      return null;
+    }
+    if (task.getLargeValueMaxChars().get() <= 0) {
+      throw new ConfigException("large_value_max_chars must be greater than 0.");
+    }
+    switch (task.getLargeValuePolicy()) {
+      case LargeValuePolicy.FAIL:
+      case LargeValuePolicy.TRUNCATE:
+      case LargeValuePolicy.SKIP:
+        return new LargeValuePolicy(
+            task.getLargeValueMaxChars().get(), task.getLargeValuePolicy());
+      default:
+        throw new ConfigException(
+            String.format(
+                "Unknown large_value_policy '%s'. Supported large_value_policy are fail, truncate"
+                    + " and skip.",
+                task.getLargeValuePolicy()));
+    }
+  }
+
+  private static String statementFormatOf(DatabricksPluginTask task) {
+    switch (task.getStatementFormat()) {
+      case "arrow_stream":
+        return StatementExecutionFetcher.FORMAT_ARROW_STREAM;
+      case "csv":
+        return StatementExecutionFetcher.FORMAT_CSV;
+      default:
+        throw new ConfigException(
+            String.format(
+                "Unknown statement_format '%s'. Supported statement_format are arrow_stream and csv.",
+                task.getStatementFormat()));
+    }
+  }
+
+  @Override
+  public ConfigDiff transaction(ConfigSource config, InputPlugin.Control control) {
+    DatabricksPluginTask task = CONFIG_MAPPER.map(config, DatabricksPluginTask.class);
+    // The connection of setupTask is the first one.
+    timingFirstConnection = true;
+    firstConnectionMillis = Optional.empty();
+    try {
+      return super.transaction(config, newSplitControl(control));
+    } finally {
+      timingFirstConnection = false;
+      closeIdleConnections(task);
+    }
+  }
+
+  @Override
+  protected ConfigDiff buildNextConfigDiff(PluginTask task, List<TaskReport> reports) {
+    ConfigDiff next = super.buildNextConfigDiff(task, reports);
+    DatabricksPluginTask t = (DatabricksPluginTask) task;
+    if (t.getCommitVersion().isPresent()) {
+      next.set("last_commit_version", t.getCommitVersion().get());
+    }
+    // Only for the record. It is not read as snapshot_version by the next run.
+    if (t.getPinnedVersion().isPresent()) {
+      next.set("last_snapshot_version", t.getPinnedVersion().get());
+    }
+    // This is where the reports of all the tasks come together, also on resume.
+    if (t.getMetricsFile().isPresent()) {
+      writeMetricsFile(t.getMetricsFile().get(), reports);
+    }
+    return next;
+  }
+
+  private static void writeMetricsFile(String file, List<TaskReport> reports) {
+    try {
+      Files.write(
+          Paths.get(file), FetchMetrics.toOpenMetrics(reports).getBytes(StandardCharsets.UTF_8));
+      logger.info("Wrote the metrics of {} tasks into {}.", reports.size(), file);
+    } catch (IOException e) {
+      // The metrics are only for the record, so they do not fail the load.
+      logger.warn("Failed to write the metrics into {}.", file, e);
+    }
+  }
+
+  @Override
+  public ConfigDiff resume(
+      TaskSource taskSource, Schema schema, int taskCount, InputPlugin.Control control) {
+    try {
+      return super.resume(taskSource, schema, taskCount, newSplitControl(control));
+    } finally {
+      closeIdleConnections(TASK_MAPPER.map(taskSource, DatabricksPluginTask.class));
+    }
+  }
+
+  // The connections kept for the tasks would hold their sessions on the warehouse until
+  // connection_idle_timeout, or until the JVM exits if it exits before.
+  private static void closeIdleConnections(DatabricksPluginTask task) {
+    if (task.getConnectionCache()) {
+      ConnectionCache.getInstance().closeAll();
+    }
+  }
+
+  @Override
+  public TaskReport run(TaskSource taskSource, Schema schema, int taskIndex, PageOutput output) {
+    DatabricksPluginTask task = TASK_MAPPER.map(taskSource, DatabricksPluginTask.class);
+    if (!task.getSplitQueries().isEmpty()) {
+      task.setBuiltQuery(task.getSplitQueries().get(taskIndex));
+      logger.info("Running split {} of {}.", taskIndex + 1, task.getSplitQueries().size());
+    }
+    if (!task.getFetchMode().equals(FETCH_MODE_JDBC)) {
+      TaskReport report = CONFIG_MAPPER_FACTORY.newTaskReport();
+      long totalRows =
+          task.getFetchMode().equals(FETCH_MODE_EXPORT)
+              ? runExport(task, schema, taskIndex, output)
+              : runStatementExecution(task, schema, taskIndex, output, report);
+      report.set("split_index", taskIndex);
+      report.set("rows", totalRows);
+      if (task.getPinnedVersion().isPresent()) {
+        report.set("snapshot_version", task.getPinnedVersion().get());
+      }
+      return report;
+    }
+    JdbcSchema querySchema = task.getQuerySchema();
+    BufferAllocator allocator = Exec.getBufferAllocator();
+    long totalRows;
+    long queryMillis;
+    Optional<String> queryId;
+    List<JsonNode> lastRecord = null;
+    LargeValuePolicy largeValuePolicy = largeValuePolicyOf(task);
+    // The times of the rows cost a few System#nanoTime calls a row, so they are measured only if
+    // something publishes them.
+    FetchMetrics metrics =
+        new FetchMetrics(task.getMetricsJmx() || task.getMetricsFile().isPresent());
+    ObjectName metricsName = task.getMetricsJmx() ? registerMetrics(metrics, taskIndex) : null;
+    // The PageBuilder and the ColumnGetters are made on the task thread even with prefetch,
+    // because they may need Exec, which is available only on the task thread.
+    PagePrefetcher prefetcher =
+        task.getPrefetch() ? new PagePrefetcher(output, task.getPrefetchQueueBytes()) : null;
+    // The prefetcher closes the real output, so it is closed after the PageBuilder.
+    try (PagePrefetcher closedAfterPageBuilder = prefetcher;
+        PageBuilder pageBuilder =
+            Exec.getPageBuilder(
+                allocator,
+                schema,
+                metrics.countPageBytes(
+                    prefetcher != null ? prefetcher.getProducerOutput() : output));
+        DatabricksInputConnection con = connect(task, metrics)) {
+      con.setQueryTag(queryTagOf(task, taskIndex));
+      if (task.getBeforeSelect().isPresent()) {
+        con.executeUpdate(task.getBeforeSelect().get());
+      }
+      List<ColumnGetter> getters =
+          newColumnGetters(con, task, querySchema, pageBuilder, largeValuePolicy);
+      // Without ORDER BY, the last row is not the greatest one.
+      LastRecords.Max lastRecordMax =
+          task.getIncremental() && isUnordered(task) ? new LastRecords.Max() : null;
+      if (prefetcher != null) {
+        totalRows =
+            prefetcher.run(
+                () -> select(con, task, schema, getters, pageBuilder, lastRecordMax, metrics));
+        logger.info(
+            "Prefetch stalls: fetch {} ms, output {} ms. Peak queued bytes: {}",
+            prefetcher.getFetchStallMillis(),
+            prefetcher.getOutputStallMillis(),
+            prefetcher.getPeakQueuedBytes());
+      } else {
+        totalRows = select(con, task, schema, getters, pageBuilder, lastRecordMax, metrics);
+      }
+      if (task.getIncremental() && totalRows > 0) {
+        lastRecord =
+            lastRecordMax != null
+                ? buildLastRecord(task, lastRecordMax.get().get())
+                : buildLastRecord(task, getters);
+      }
+      queryMillis = con.getQueryMillis();
+      queryId = con.getQueryId();
+      // after_select runs after pageBuilder.finish because pageBuilder.finish may fail.
+      if (task.getAfterSelect().isPresent()) {
+        con.executeUpdate(task.getAfterSelect().get());
+      }
+    } catch (SQLException | IOException ex) {
+      throw new RuntimeException(ex);
+    } finally {
+      unregisterMetrics(metricsName);
+    }
+
+    TaskReport report = CONFIG_MAPPER_FACTORY.newTaskReport();
+    if (lastRecord != null) {
+      report.set("last_record", lastRecord);
+    }
+    report.set("split_index", taskIndex);
+    report.set("rows", totalRows);
+    report.set("query_ms", queryMillis);
+    if (task.getPinnedVersion().isPresent()) {
+      report.set("snapshot_version", task.getPinnedVersion().get());
+    }
+    if (task.getWarehouseStartMillis().isPresent()) {
+      report.set("warehouse_start_ms", task.getWarehouseStartMillis().get());
+    }
+    if (prefetcher != null) {
+      report.set("prefetch_fetch_stall_ms", prefetcher.getFetchStallMillis());
+      report.set("prefetch_output_stall_ms", prefetcher.getOutputStallMillis());
+    }
+    metrics.report(report);
+    if (largeValuePolicy != null) {
+      report.set("truncated_values", largeValuePolicy.getTruncatedValues());
+      report.set("skipped_values", largeValuePolicy.getSkippedValues());
+      logger.info(
+          "Truncated {} and skipped {} values longer than large_value_max_chars.",
+          largeValuePolicy.getTruncatedValues(),
+          largeValuePolicy.getSkippedValues());
+    }
+    if (queryId.isPresent()) {
+      reportQuery(task, queryId.get(), report);
+    }
+    logger.info(
+        "Fetched {} rows: connect {} ms, first row {} ms, next {} ms, getters {} ms,"
+            + " page builder {} ms, {} bytes of pages, {} bytes allocated.",
+        totalRows,
+        metrics.getConnectMillis(),
+        metrics.getFirstRowMillis(),
+        metrics.getNextMillis(),
+        metrics.getGetterMillis(),
+        metrics.getPageBuilderMillis(),
+        metrics.getPageBytes(),
+        metrics.getAllocatedBytes());
+    return report;
+  }
+
+  // The comment of the queries of the task, or null if query_comment is false.
+  private static QueryTag queryTagOf(DatabricksPluginTask task, int taskIndex) {
+    if (!task.getQueryComment()) {
+      return null;
+    }
+    return new QueryTag(
+        Instant.ofEpochMilli(task.getQueryJobMillis()), taskIndex, task.getQueryTag().orElse(null));
+  }
+
+  // Reports the ID of the query, with which a slow run can be matched to the query profile on the
+  // warehouse, and its metrics there if query_history_metrics is true. They are only for
+  // monitoring, so a failure to read them does not fail the task.
+  private void reportQuery(DatabricksPluginTask task, String queryId, TaskReport report) {
+    report.set("query_id", queryId);
+    if (!task.getQueryHistoryMetrics()) {
+      return;
+    }
+    QueryHistoryClient client =
+        new QueryHistoryClient(
+            newApiClient(task), STATEMENT_POLL_INTERVAL_MILLIS, QUERY_HISTORY_ATTEMPTS);
+    try {
+      Optional<Map<String, Long>> metrics = client.fetchMetrics(queryId);
+      if (!metrics.isPresent()) {
+        logger.warn("Query {} did not show up in the query history in time.", queryId);
+        return;
+      }
+      for (Map.Entry<String, Long> metric : metrics.get().entrySet()) {
+        report.set(metric.getKey(), metric.getValue());
+      }
+      logger.info("Query {} on the warehouse: {}", queryId, metrics.get());
+    } catch (IOException e) {
+      logger.warn("Failed to read query {} from the query history.", queryId, e);
+    }
+  }
+
+  private DatabricksInputConnection connect(DatabricksPluginTask task, FetchMetrics metrics)
+      throws SQLException {
+    long start = System.nanoTime();
+    DatabricksInputConnection con = (DatabricksInputConnection) newConnection(task);
+    metrics.setConnectNanos(System.nanoTime() - start);
+    return con;
+  }
+
+  // The metrics are only for monitoring, so a failure to publish them does not fail the task.
+  private static ObjectName registerMetrics(FetchMetrics metrics, int taskIndex) {
+    try {
+      return metrics.register(taskIndex);
+    } catch (JMException e) {
+      logger.warn("Failed to register the metrics of task {} to JMX.", taskIndex, e);
+      return null;
+    }
+  }
+
+  private static void unregisterMetrics(ObjectName name) {
+    if (name == null) {
+      return;
+    }
+    try {
+      FetchMetrics.unregister(name);
+    } catch (JMException e) {
+      logger.warn("Failed to unregister {} from JMX.", name, e);
+    }
+  }
+
+  // Runs the query and writes all the rows into the PageBuilder. This runs on the fetch thread
+  // if prefetch is enabled.
+  private long select(
+      DatabricksInputConnection con,
+      DatabricksPluginTask task,
+      Schema schema,
+      List<ColumnGetter> getters,
+      PageBuilder pageBuilder,
+      LastRecords.Max lastRecordMax,
+      FetchMetrics metrics)
+      throws SQLException, IOException {
+    long totalRows;
+    metrics.startAllocation();
+    FetchSizer sizer = newFetchSizer(task);
+    int fetchRows = sizer != null ? sizer.getFetchSize() : task.getFetchRows();
+    metrics.setFetchSize(fetchRows);
+    try (PreparedStatement stmt =
+            con.prepareSelect(task.getBuiltQuery(), getters, fetchRows, task.getSocketTimeout());
+        ResultSet result = executeSelect(con, stmt, metrics)) {
+      Optional<ArrowReader> arrowReader =
+          canUseArrow(task) ? con.unwrapArrowReader(result) : Optional.empty();
+      ArrowPageWriter arrowWriter = new ArrowPageWriter(pageBuilder, schema.getColumns());
+      if (arrowReader.isPresent()
+          && arrowWriter.canWrite(arrowReader.get().getVectorSchemaRoot())) {
+        logger.info("Fetching the result as Arrow record batches.");
+        // The batches are read and written together, so all the time is of the PageBuilder.
+        long start = System.nanoTime();
+        totalRows = arrowWriter.write(arrowReader.get());
+        metrics.addRows(totalRows, 0, 0, System.nanoTime() - start);
+      } else {
+        totalRows = fetch(result, getters, pageBuilder, task, lastRecordMax, sizer, metrics);
+      }
+    }
+    long start = System.nanoTime();
+    pageBuilder.finish();
+    metrics.addRows(0, 0, 0, System.nanoTime() - start);
+    return totalRows;
+  }
+
+  // On the fetch thread, whose allocation the sizer measures. Null unless fetch_memory_budget is
+  // set.
+  private static FetchSizer newFetchSizer(DatabricksPluginTask task) {
+    if (!task.getFetchMemoryBudget().isPresent()) {
+      return null;
+    }
+    Optional<FetchSizer> sizer =
+        FetchSizer.start(
+            task.getFetchMemoryBudget().get(),
+            Math.min(task.getFetchRows(), ADAPTIVE_FIRST_FETCH_ROWS),
+            1,
+            ADAPTIVE_MAX_FETCH_ROWS);
+    if (!sizer.isPresent()) {
+      logger.warn(
+          "fetch_memory_budget is ignored because the JVM does not measure the memory a thread"
+              + " allocates. Fetching {} rows at a time.",
+          task.getFetchRows());
+    }
+    return sizer.orElse(null);
+  }
+
+  private static ResultSet executeSelect(
+      DatabricksInputConnection con, PreparedStatement stmt, FetchMetrics metrics)
+      throws SQLException {
+    metrics.querySubmitted();
+    return con.executeSelect(stmt);
+  }
+
+  private long runStatementExecution(
+      DatabricksPluginTask task,
+      Schema schema,
+      int taskIndex,
+      PageOutput output,
+      TaskReport report) {
+    StatementExecutionClient client = newStatementExecutionClient(task);
+    StatementExecutionFetcher fetcher =
+        new StatementExecutionFetcher(
+            client,
+            statementFormatOf(task),
+            task.getDownloadThreads(),
+            task.getDownloadMemoryLimit());
+    long totalRows;
+    try (PageBuilder pageBuilder = Exec.getPageBuilder(Exec.getBufferAllocator(), schema, output)) {
+      if (task.getBeforeSelect().isPresent()) {
+        client.executeUpdate(task.getBeforeSelect().get());
+      }
+      String query = queryWithoutParametersOf(task);
+      QueryTag queryTag = queryTagOf(task, taskIndex);
+      totalRows = fetcher.fetch(queryTag != null ? queryTag.append(query) : query, pageBuilder);
+      pageBuilder.finish();
+      if (task.getAfterSelect().isPresent()) {
+        client.executeUpdate(task.getAfterSelect().get());
+      }
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+    // The ID of the statement is its ID in the query history too.
+    reportQuery(task, fetcher.getStatementId(), report);
+    return totalRows;
+  }
+
+  private long runExport(
+      DatabricksPluginTask task, Schema schema, int taskIndex, PageOutput output) {
+    List<String> files = task.getExportFiles();
+    long totalRows = 0;
+    try (PageBuilder pageBuilder = Exec.getPageBuilder(Exec.getBufferAllocator(), schema, output)) {
+      // There is a task even if no file is exported.
+      if (taskIndex < files.size()) {
+        ExportLocation location = newExportLocation(task, task.getExportDirectory().get());
+        logger.info("Reading exported file {} of {}.", taskIndex + 1, files.size());
+        try (InputStream in = location.open(files.get(taskIndex))) {
+          CsvChunkReader reader =
+              new CsvChunkReader(
+                  new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+          totalRows =
+              new CsvPageWriter(pageBuilder, schema.getColumns(), Collections.emptyList())
+                  .write(reader, false);
+        }
+      }
+      pageBuilder.finish();
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+    return totalRows;
+  }
+
+  @Override
+  public void cleanup(
+      TaskSource taskSource, Schema schema, int taskCount, List<TaskReport> successTaskReports) {
+    DatabricksPluginTask task = TASK_MAPPER.map(taskSource, DatabricksPluginTask.class);
+    if (!task.getExportDirectory().isPresent() || !task.getExportCleanup()) {
+      return;
+    }
+    String directory = task.getExportDirectory().get();
+    try {
+      newExportLocation(task, directory).delete();
+      logger.info("Deleted the export directory {}.", directory);
+    } catch (IOException e) {
+      // The load itself succeeded.
+      logger.warn("Failed to delete the export directory {}.", directory, e);
+    }
+  }
+
+  // The Arrow path writes the values as the default ColumnGetters would, so it is not used if
+  // column_options may change the conversion. The default getters read DATE and TIMESTAMP into
+  // timestamp columns in the JVM time zone as ArrowPageWriter does, and default_timezone is only
+  // for formatting them into string columns, which takes column_options. It is not used for
+  // incremental loading either, because last_record is encoded by the ColumnGetters.
+  private static boolean canUseArrow(DatabricksPluginTask task) {
+    return task.getUseArrow()
+        && !task.getIncremental()
+        && task.getColumnOptions().isEmpty()
+        && task.getDefaultColumnOptions().isEmpty();
+  }
+
+  // lastRecordMax is null unless it needs the values of the incremental columns of every row, and
+  // sizer is null unless fetch_memory_budget is set.
+  //
+  // If the metrics have row times, the time of each row is split into ResultSet#next, the getters
+  // and the PageBuilder by the System#nanoTime between them. The counts are added to the metrics
+  // every METRICS_ROWS rows.
+  private long fetch(
+      ResultSet result,
+      List<ColumnGetter> getters,
+      PageBuilder pageBuilder,
+      PluginTask task,
+      LastRecords.Max lastRecordMax,
+      FetchSizer sizer,
+      FetchMetrics metrics)
+      throws SQLException {
+    List<Column> columns = pageBuilder.getSchema().getColumns();
+    long rows = 0;
+    long reportRows = 500;
+    long nextNanos = 0;
+    long getterNanos = 0;
+    long pageBuilderNanos = 0;
+    boolean timed = metrics.hasRowTimes();
+    long start = timed ? System.nanoTime() : 0;
+    while (result.next()) {
+      long fetched = timed ? System.nanoTime() : 0;
+      if (rows == 0) {
+        metrics.firstRow();
+      }
+      for (int i = 0; i < getters.size(); i++) {
+        int index = i + 1; // JDBC column index begins from 1
+        getters.get(i).getAndSet(result, index, columns.get(i));
+      }
+      if (lastRecordMax != null) {
+        ArrayNode record = JsonNodeFactory.instance.arrayNode();
+        for (int columnIndex : task.getIncrementalColumnIndexes()) {
+          record.add(getters.get(columnIndex).encodeToJson());
+        }
+        lastRecordMax.offer(record);
+      }
+      if (timed) {
+        long got = System.nanoTime();
+        pageBuilder.addRecord();
+        long added = System.nanoTime();
+        nextNanos += fetched - start;
+        getterNanos += got - fetched;
+        pageBuilderNanos += added - got;
+        start = added;
+      } else {
+        pageBuilder.addRecord();
+      }
+      rows++;
+      if (sizer != null && sizer.next()) {
+        // The hint of the fetches that follow. A driver may keep its own size.
+        result.setFetchSize(sizer.getFetchSize());
+        metrics.setFetchSize(sizer.getFetchSize());
+        logger.info(
+            "Fetching {} rows at a time for {} bytes a row.",
+            sizer.getFetchSize(),
+            sizer.getRowBytes());
+      }
+      if (rows % METRICS_ROWS == 0) {
+        metrics.addRows(METRICS_ROWS, nextNanos, getterNanos, pageBuilderNanos);
+        nextNanos = 0;
+        getterNanos = 0;
+        pageBuilderNanos = 0;
+      }
+      if (rows % reportRows == 0) {
+        logger.info(String.format("Fetched %,d rows.", rows));
+        reportRows *= 2;
+      }
+    }
+    // The last call of next, which returned false.
+    if (timed) {
+      nextNanos += System.nanoTime() - start;
+    }
+    metrics.addRows(rows % METRICS_ROWS, nextNanos, getterNanos, pageBuilderNanos);
+    return rows;
+  }
+
+  private List<ColumnGetter> newColumnGetters(
+      JdbcInputConnection con,
+      DatabricksPluginTask task,
+      JdbcSchema querySchema,
+      PageBuilder pageBuilder,
+      LargeValuePolicy largeValuePolicy) {
+    ColumnGetterFactory factory =
+        new DatabricksColumnGetterFactory(
+            pageBuilder,
+            task.getDefaultTimeZone(),
+            new JsonValueReader(task.getJsonMaxDepth(), task.getJsonMaxLength()),
+            binaryEncoderOf(task),
+            largeValuePolicy);
+    List<ColumnGetter> getters = new ArrayList<>();
+    for (JdbcColumn column : querySchema.getColumns()) {
+      JdbcColumnOption columnOption =
+          columnOptionOf(
+              task.getColumnOptions(),
+              task.getDefaultColumnOptions(),
+              column,
+              factory.getJdbcType(column.getSqlType()));
+      getters.add(factory.newColumnGetter(con, task, column, columnOption));
+    }
+    return Collections.unmodifiableList(getters);
+  }
+
+  // Same lookup as AbstractJdbcInputPlugin: column_options by the case-insensitive column name,
+  // then default_column_options by the JDBC type.
+  private static JdbcColumnOption columnOptionOf(
+      Map<String, JdbcColumnOption> columnOptions,
+      Map<String, JdbcColumnOption> defaultColumnOptions,
+      JdbcColumn targetColumn,
+      String targetColumnSQLType) {
+    JdbcColumnOption columnOption = columnOptions.get(targetColumn.getName());
+    if (columnOption == null) {
+      String foundName = null;
+      for (Map.Entry<String, JdbcColumnOption> entry : columnOptions.entrySet()) {
+        if (entry.getKey().equalsIgnoreCase(targetColumn.getName())) {
+          if (columnOption != null) {
+            throw new ConfigException(
+                String.format(
+                    "Cannot specify column '%s' because both '%s' and '%s' exist in column_options.",
+                    targetColumn.getName(), foundName, entry.getKey()));
+          }
+          foundName = entry.getKey();
+          columnOption = entry.getValue();
+        }
+      }
+    }
+    if (columnOption == null) {
+      columnOption = defaultColumnOptions.get(targetColumnSQLType);
+    }
+    if (columnOption == null) {
+      columnOption =
+          CONFIG_MAPPER.map(CONFIG_MAPPER_FACTORY.newConfigSource(), JdbcColumnOption.class);
+    }
+    return columnOption;
+  }
+
+  private static List<JsonNode> buildLastRecord(PluginTask task, List<ColumnGetter> getters) {
+    ArrayNode record = JsonNodeFactory.instance.arrayNode();
+    for (int columnIndex : task.getIncrementalColumnIndexes()) {
+      record.add(getters.get(columnIndex).encodeToJson());
+    }
+    return buildLastRecord(task, record);
+  }
+
+  private static List<JsonNode> buildLastRecord(PluginTask task, JsonNode record) {
+    List<JsonNode> lastRecord = new ArrayList<>();
+    for (int i = 0; i < record.size(); i++) {
+      JsonNode value = record.get(i);
+      if (value == null || value.isNull()) {
+        throw new DataException(
+            String.format(
+                ENGLISH,
+                "incremental_columns can't include null values but the last row is null at column '%s'",
+                task.getIncrementalColumns().get(i)));
+      }
+      lastRecord.add(value);
+    }
+    return lastRecord;
+  }
+
+  // AbstractJdbcInputPlugin always runs a single task and takes last_record from the first task
+  // report only. This control runs one task per split query and puts the greatest last_record of
+  // all the tasks into the first task report.
+  private InputPlugin.Control newSplitControl(InputPlugin.Control control) {
+    return (taskSource, schema, taskCount) -> {
+      DatabricksPluginTask task = TASK_MAPPER.map(taskSource, DatabricksPluginTask.class);
+      int splitCount =
+          Math.max(
+              taskCount, Math.max(task.getSplitQueries().size(), task.getExportFiles().size()));
+      List<TaskReport> reports = control.run(taskSource, schema, splitCount);
+      if (reports.size() > 1) {
+        logSplitRows(reports);
+        Optional<JsonNode> lastRecord = LastRecords.max(reports);
+        if (lastRecord.isPresent()) {
+          reports.get(0).set("last_record", lastRecord.get());
+        }
+      }
+      return reports;
+    };
+  }
+
+  private static void logSplitRows(List<TaskReport> reports) {
+    List<Long> rows = new ArrayList<>();
+    for (TaskReport report : reports) {
+      rows.add(report.get(Long.class, "rows", 0L));
+    }
+    long max = Collections.max(rows);
+    long total = rows.stream().mapToLong(Long::longValue).sum();
+    double mean = (double) total / rows.size();
+    logger.info(
+        "Rows per split: {} (max/mean: {})",
+        rows,
+        mean == 0 ? "-" : String.format("%.2f", max / mean));
+  }
+
+  private List<PreparedQuery> buildSplitQueries(
+      DatabricksInputConnection con, DatabricksPluginTask task) throws SQLException {
+    if (task.getSplitCount() < 1) {
+      throw new ConfigException("split_count must be greater than 0.");
+    }
+    if (task.getSplitCount() == 1) {
+      return Collections.emptyList();
+    }
+    String rawQuery = buildRawQuery(con, task);
+    List<String> predicates;
+    switch (task.getSplitMode()) {
+      case "range":
+        predicates = buildRangePredicates(con, task, rawQuery);
+        break;
+      case "hash":
+        predicates = buildHashPredicates(con, task);
+        break;
+      default:
+        throw new ConfigException(
+            String.format(
+                "Unknown split_mode '%s'. Supported split_mode are range and hash.",
+                task.getSplitMode()));
+    }
+    if (predicates.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    List<PreparedQuery> queries = new ArrayList<>();
+    for (String predicate : predicates) {
+      String splitQuery = con.buildSplitQuery(rawQuery, predicate);
+      if (task.getIncremental()) {
+        queries.add(
+            con.rebuildIncrementalQuery(
+                splitQuery,
+                task.getQuerySchema(),
+                task.getIncrementalColumnIndexes(),
+                task.getLastRecord().orElse(null)));
+      } else {
+        queries.add(new PreparedQuery(splitQuery, Collections.<JdbcLiteral>emptyList()));
+      }
+    }
+    return queries;
+  }
+
+  private List<String> buildRangePredicates(
+      DatabricksInputConnection con, DatabricksPluginTask task, String rawQuery)
+      throws SQLException {
+    if (!task.getSplitColumn().isPresent()) {
+      throw new ConfigException(
+          "split_column must be set if split_mode is range and split_count is greater than 1.");
+    }
+    JdbcColumn column = findColumn(task.getQuerySchema(), task.getSplitColumn().get());
+    RangeSplitter.Kind kind =
+        RangeSplitter.kindOf(column)
+            .orElseThrow(
+                () ->
+                    new ConfigException(
+                        String.format(
+                            "split_column '%s' must be an integer, DATE or TIMESTAMP column.",
+                            column.getName())));
+    RangeSplitter splitter = con.newRangeSplitter(column.getName(), kind);
+    Optional<long[]> range = con.fetchSplitRange(splitter, rawQuery);
+    if (!range.isPresent()) {
+      logger.info("split_column '{}' has no value. The input is not split.", column.getName());
+      return Collections.emptyList();
+    }
+    List<String> predicates =
+        splitter.buildPredicates(range.get()[0], range.get()[1], task.getSplitCount());
+    logger.info("Split the input into {} tasks by '{}'.", predicates.size(), column.getName());
+    return predicates;
+  }
+
+  private List<String> buildHashPredicates(
+      DatabricksInputConnection con, DatabricksPluginTask task) {
+    // Hashing every column costs the warehouse a pass over all of them, and fails on MAP, so the
+    // columns are chosen by the user, like split_column is.
+    if (task.getSplitHashColumns().isEmpty()) {
+      throw new ConfigException(
+          "split_hash_columns must be set if split_mode is hash and split_count is greater "
+              + "than 1.");
+    }
+    List<String> columnNames = new ArrayList<>();
+    for (String name : task.getSplitHashColumns()) {
+      JdbcColumn column = findColumn(task.getQuerySchema(), name);
+      if (baseTypeNameOf(column).equals("MAP")) {
+        throw new ConfigException(
+            String.format(
+                "split_hash_columns cannot have column '%s' of type %s, which is not hashable.",
+                column.getName(), column.getTypeName()));
+      }
+      columnNames.add(column.getName());
+    }
+    HashSplitter splitter = con.newHashSplitter(columnNames);
+    logger.info(
+        "Split the input into {} tasks by the hash of {}.", task.getSplitCount(), columnNames);
+    return splitter.buildPredicates(task.getSplitCount());
+  }
+
+  // The same query as AbstractJdbcInputPlugin builds before adding the incremental conditions.
+  private String buildRawQuery(JdbcInputConnection con, PluginTask task) throws SQLException {
+    if (task.getQuery().isPresent()) {
+      return task.getQuery().get();
+    }
+    return con.buildSelectQuery(
+        task.getTable().get(), task.getSelect(), task.getWhere(), task.getOrderBy());
+  }
+
+  private static JdbcColumn findColumn(JdbcSchema schema, String name) {
+    for (JdbcColumn column : schema.getColumns()) {
+      if (column.getName().equalsIgnoreCase(name)) {
+        return column;
+      }
+    }
+    throw new ConfigException(String.format("Column '%s' is not found in the query result.", name));
   }
 }
@@ -16,11 +16,17 @@ class NoAutoCommitConnection implements Connection {
       LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   Connection conn;
+  private long statementCount;
 
   public NoAutoCommitConnection(Connection conn) {
     this.conn = conn;
   }
 
+  // The number of statements created on the connection.
+  long getStatementCount() {
+    return statementCount;
+  }
+
   @Override
   public void setAutoCommit(boolean autoCommit) {
     logger.info(
@@ -41,16 +47,19 @@ class NoAutoCommitConnection implements Connection {
 
   @Override
   public Statement createStatement() throws SQLException {
+    statementCount++;
     return conn.createStatement();
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql) throws SQLException {
+    statementCount++;
     return conn.prepareStatement(sql);
   }
 
   @Override
   public CallableStatement prepareCall(String sql) throws SQLException {
+    statementCount++;
     return conn.prepareCall(sql);
   }
 
@@ -122,18 +131,21 @@ class NoAutoCommitConnection implements Connection {
   @Override
   public Statement createStatement(int resultSetType, int resultSetConcurrency)
       throws SQLException {
+    statementCount++;
     return conn.createStatement(resultSetType, resultSetConcurrency);
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
       throws SQLException {
+    statementCount++;
     return conn.prepareStatement(sql, resultSetType, resultSetConcurrency);
   }
 
   @Override
   public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
       throws SQLException {
+    statementCount++;
     return conn.prepareCall(sql, resultSetType, resultSetConcurrency);
   }
 
@@ -180,6 +192,7 @@ class NoAutoCommitConnection implements Connection {
   @Override
   public Statement createStatement(
       int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+    statementCount++;
     return conn.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
   }
 
@@ -187,6 +200,7 @@ class NoAutoCommitConnection implements Connection {
   public PreparedStatement prepareStatement(
       String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability)
       throws SQLException {
+    statementCount++;
     return conn.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
   }
 
@@ -194,21 +208,25 @@ class NoAutoCommitConnection implements Connection {
   public CallableStatement prepareCall(
       String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability)
       throws SQLException {
+    statementCount++;
     return conn.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+    statementCount++;
     return conn.prepareStatement(sql, autoGeneratedKeys);
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+    statementCount++;
     return conn.prepareStatement(sql, columnIndexes);
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+    statementCount++;
     return conn.prepareStatement(sql, columnNames);
   }
 
@@ -0,0 +1,358 @@
+package org.embulk.input.databricks;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.embulk.spi.Column;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.type.Type;
+import org.embulk.spi.type.Types;
+
+// Writes Arrow record batches into a PageBuilder.
+//
+// The conversion of each column is resolved once per batch from the vector type and the Embulk
+// column type, and values are moved with the primitive getters of the vectors. So no value is
+// boxed and no per-cell type dispatch happens, unlike the ColumnGetters which go through
+// ResultSet#getXxx. A PageBuilder is filled row by row, so the rows of a batch are still written
+// one at a time.
+//
+// The values are the ones the default ColumnGetters would output: DATE and TIMESTAMP without a
+// time zone are read as the wall clock time of the JVM time zone as java.sql.Date and Timestamp
+// are, and FLOAT is formatted as a float.
+public class ArrowPageWriter {
+  private final PageBuilder pageBuilder;
+  private final List<Column> columns;
+  private final ZoneId zone;
+  private final ZoneRules zoneRules;
+
+  private interface ValueWriter {
+    void write(int row);
+  }
+
+  public ArrowPageWriter(PageBuilder pageBuilder, List<Column> columns) {
+    this.pageBuilder = pageBuilder;
+    this.columns = columns;
+    this.zone = ZoneId.systemDefault();
+    this.zoneRules = zone.getRules();
+  }
+
+  // Returns true if every vector of the root can be written into the corresponding column.
+  public boolean canWrite(VectorSchemaRoot root) {
+    if (root.getFieldVectors().size() != columns.size()) {
+      return false;
+    }
+    return newValueWriters(root) != null;
+  }
+
+  // Writes all the remaining batches of the reader and returns the number of rows.
+  public long write(ArrowReader reader) throws IOException {
+    VectorSchemaRoot root = reader.getVectorSchemaRoot();
+    long rows = 0;
+    while (reader.loadNextBatch()) {
+      rows += writeBatch(root);
+    }
+    return rows;
+  }
+
+  public int writeBatch(VectorSchemaRoot root) {
+    ValueWriter[] writers = newValueWriters(root);
+    if (writers == null) {
+      throw new IllegalStateException(
+          "Arrow schema is not compatible with the input schema: " + root.getSchema());
+    }
+    int rowCount = root.getRowCount();
+    for (int row = 0; row < rowCount; row++) {
+      for (ValueWriter writer : writers) {
+        writer.write(row);
+      }
+      pageBuilder.addRecord();
+    }
+    return rowCount;
+  }
+
+  private ValueWriter[] newValueWriters(VectorSchemaRoot root) {
+    ValueWriter[] writers = new ValueWriter[columns.size()];
+    for (int i = 0; i < writers.length; i++) {
+      writers[i] = newValueWriter(root.getVector(i), columns.get(i));
+      if (writers[i] == null) {
+        return null;
+      }
+    }
+    return writers;
+  }
+
+  // Returns null if the vector cannot be written into the column.
+  private ValueWriter newValueWriter(FieldVector vector, Column column) {
+    if (vector instanceof BigIntVector) {
+      BigIntVector v = (BigIntVector) vector;
+      return newLongWriter(vector, column, v::get);
+    } else if (vector instanceof IntVector) {
+      IntVector v = (IntVector) vector;
+      return newLongWriter(vector, column, v::get);
+    } else if (vector instanceof SmallIntVector) {
+      SmallIntVector v = (SmallIntVector) vector;
+      return newLongWriter(vector, column, v::get);
+    } else if (vector instanceof TinyIntVector) {
+      TinyIntVector v = (TinyIntVector) vector;
+      return newLongWriter(vector, column, v::get);
+    } else if (vector instanceof Float8Vector) {
+      Float8Vector v = (Float8Vector) vector;
+      return newDoubleWriter(vector, column, v::get);
+    } else if (vector instanceof Float4Vector) {
+      Float4Vector v = (Float4Vector) vector;
+      if (column.getType().equals(Types.STRING)) {
+        return newFloatStringWriter(v, column);
+      }
+      return newDoubleWriter(vector, column, v::get);
+    } else if (vector instanceof BitVector) {
+      return newBooleanWriter((BitVector) vector, column);
+    } else if (vector instanceof VarCharVector) {
+      return newStringWriter((VarCharVector) vector, column);
+    } else if (vector instanceof DecimalVector) {
+      return newDecimalWriter((DecimalVector) vector, column);
+    } else if (vector instanceof DateDayVector) {
+      DateDayVector v = (DateDayVector) vector;
+      return newTimestampWriter(vector, column, row -> toEpochMicros(v.get(row) * 86_400_000_000L));
+    } else if (vector instanceof TimeStampVector) {
+      TimeStampVector v = (TimeStampVector) vector;
+      ArrowType.Timestamp type = (ArrowType.Timestamp) vector.getField().getType();
+      long microsPerUnit = microsPerUnit(type);
+      IntToLongFunction getMicros;
+      if (microsPerUnit == 0) {
+        // nanoseconds
+        getMicros = row -> Math.floorDiv(v.get(row), 1000L);
+      } else {
+        getMicros = row -> v.get(row) * microsPerUnit;
+      }
+      if (type.getTimezone() != null) {
+        return newTimestampWriter(vector, column, getMicros);
+      }
+      return newTimestampWriter(
+          vector, column, row -> toEpochMicros(getMicros.applyAsLong(row)));
+    }
+    return null;
+  }
+
+  private ValueWriter newLongWriter(FieldVector vector, Column column, IntToLongFunction get) {
+    Type type = column.getType();
+    if (type.equals(Types.LONG)) {
+      return row -> {
+        if (vector.isNull(row)) {
+          pageBuilder.setNull(column);
+        } else {
+          pageBuilder.setLong(column, get.applyAsLong(row));
+        }
+      };
+    } else if (type.equals(Types.DOUBLE)) {
+      return row -> {
+        if (vector.isNull(row)) {
+          pageBuilder.setNull(column);
+        } else {
+          pageBuilder.setDouble(column, get.applyAsLong(row));
+        }
+      };
+    } else if (type.equals(Types.BOOLEAN)) {
+      return row -> {
+        if (vector.isNull(row)) {
+          pageBuilder.setNull(column);
+        } else {
+          pageBuilder.setBoolean(column, get.applyAsLong(row) > 0L);
+        }
+      };
+    } else if (type.equals(Types.STRING)) {
+      return row -> {
+        if (vector.isNull(row)) {
+          pageBuilder.setNull(column);
+        } else {
+          pageBuilder.setString(column, Long.toString(get.applyAsLong(row)));
+        }
+      };
+    }
+    return null;
+  }
+
+  private ValueWriter newDoubleWriter(FieldVector vector, Column column, IntToDoubleFunction get) {
+    Type type = column.getType();
+    if (type.equals(Types.DOUBLE)) {
+      return row -> {
+        if (vector.isNull(row)) {
+          pageBuilder.setNull(column);
+        } else {
+          pageBuilder.setDouble(column, get.applyAsDouble(row));
+        }
+      };
+    } else if (type.equals(Types.LONG)) {
+      return row -> {
+        if (vector.isNull(row)) {
+          pageBuilder.setNull(column);
+        } else {
+          pageBuilder.setLong(column, (long) get.applyAsDouble(row));
+        }
+      };
+    } else if (type.equals(Types.STRING)) {
+      return row -> {
+        if (vector.isNull(row)) {
+          pageBuilder.setNull(column);
+        } else {
+          pageBuilder.setString(column, Double.toString(get.applyAsDouble(row)));
+        }
+      };
+    }
+    return null;
+  }
+
+  // Float.toString as FloatColumnGetter does, which writes 0.1 rather than 0.10000000149011612.
+  private ValueWriter newFloatStringWriter(Float4Vector vector, Column column) {
+    return row -> {
+      if (vector.isNull(row)) {
+        pageBuilder.setNull(column);
+      } else {
+        pageBuilder.setString(column, Float.toString(vector.get(row)));
+      }
+    };
+  }
+
+  private ValueWriter newBooleanWriter(BitVector vector, Column column) {
+    Type type = column.getType();
+    if (type.equals(Types.BOOLEAN)) {
+      return row -> {
+        if (vector.isNull(row)) {
+          pageBuilder.setNull(column);
+        } else {
+          pageBuilder.setBoolean(column, vector.get(row) != 0);
+        }
+      };
+    } else if (type.equals(Types.LONG)) {
+      return row -> {
+        if (vector.isNull(row)) {
+          pageBuilder.setNull(column);
+        } else {
+          pageBuilder.setLong(column, vector.get(row));
+        }
+      };
+    } else if (type.equals(Types.STRING)) {
+      return row -> {
+        if (vector.isNull(row)) {
+          pageBuilder.setNull(column);
+        } else {
+          pageBuilder.setString(column, Boolean.toString(vector.get(row) != 0));
+        }
+      };
+    }
+    return null;
+  }
+
+  private ValueWriter newStringWriter(VarCharVector vector, Column column) {
+    if (!column.getType().equals(Types.STRING)) {
+      return null;
+    }
+    return row -> {
+      if (vector.isNull(row)) {
+        pageBuilder.setNull(column);
+      } else {
+        pageBuilder.setString(column, new String(vector.get(row), StandardCharsets.UTF_8));
+      }
+    };
+  }
+
+  // DECIMAL has no primitive representation in Arrow, so this is the one writer that makes an
+  // object per cell.
+  private ValueWriter newDecimalWriter(DecimalVector vector, Column column) {
+    Type type = column.getType();
+    if (type.equals(Types.DOUBLE)) {
+      return row -> {
+        if (vector.isNull(row)) {
+          pageBuilder.setNull(column);
+        } else {
+          pageBuilder.setDouble(column, vector.getObject(row).doubleValue());
+        }
+      };
+    } else if (type.equals(Types.LONG)) {
+      return row -> {
+        if (vector.isNull(row)) {
+          pageBuilder.setNull(column);
+        } else {
+          pageBuilder.setLong(column, vector.getObject(row).longValue());
+        }
+      };
+    } else if (type.equals(Types.STRING)) {
+      return row -> {
+        if (vector.isNull(row)) {
+          pageBuilder.setNull(column);
+        } else {
+          BigDecimal value = vector.getObject(row);
+          pageBuilder.setString(column, value.toPlainString());
+        }
+      };
+    }
+    return null;
+  }
+
+  private ValueWriter newTimestampWriter(
+      FieldVector vector, Column column, IntToLongFunction getEpochMicros) {
+    if (!column.getType().equals(Types.TIMESTAMP)) {
+      return null;
+    }
+    return row -> {
+      if (vector.isNull(row)) {
+        pageBuilder.setNull(column);
+      } else {
+        long micros = getEpochMicros.applyAsLong(row);
+        pageBuilder.setTimestamp(
+            column,
+            Instant.ofEpochSecond(
+                Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1000L));
+      }
+    };
+  }
+
+  // Returns the epoch microseconds of the wall clock time in the JVM time zone.
+  private long toEpochMicros(long localMicros) {
+    if (zoneRules.isFixedOffset()) {
+      return localMicros - zoneRules.getOffset(Instant.EPOCH).getTotalSeconds() * 1_000_000L;
+    }
+    LocalDateTime local =
+        LocalDateTime.ofEpochSecond(
+            Math.floorDiv(localMicros, 1_000_000L),
+            (int) Math.floorMod(localMicros, 1_000_000L) * 1000,
+            ZoneOffset.UTC);
+    return localMicros - local.atZone(zone).getOffset().getTotalSeconds() * 1_000_000L;
+  }
+
+  // Returns 0 for nanoseconds, which cannot be expressed as a multiplier.
+  private static long microsPerUnit(ArrowType.Timestamp type) {
+    switch (type.getUnit()) {
+      case SECOND:
+        return 1_000_000L;
+      case MILLISECOND:
+        return 1_000L;
+      case MICROSECOND:
+        return 1L;
+      default:
+        return 0L;
+    }
+  }
+}
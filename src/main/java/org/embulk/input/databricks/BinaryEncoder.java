@@ -0,0 +1,107 @@
+package org.embulk.input.databricks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import org.embulk.spi.DataException;
+
+// Encodes the values of BINARY columns into base64 or hex text.
+//
+// A value is read from its stream into a byte buffer and encoded into a char buffer, both of which
+// are reused for the following values, so that a value allocates only its String. The buffers grow
+// up to maxBytes, and a longer value is rejected with a DataException. An encoder is used by the
+// getters of one task, on one thread.
+public class BinaryEncoder {
+  public static final String BASE64 = "base64";
+  public static final String HEX = "hex";
+
+  private static final char[] BASE64_DIGITS =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  // The largest array most VMs allocate.
+  private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+  private static final int INITIAL_BUFFER_BYTES = 8192;
+
+  private final boolean hex;
+  private final int maxBytes;
+  private byte[] bytes = new byte[0];
+  private char[] chars = new char[0];
+
+  // encoding is BASE64 or HEX. maxBytes of 0 or less is unlimited.
+  public BinaryEncoder(String encoding, long maxBytes) {
+    if (!encoding.equals(BASE64) && !encoding.equals(HEX)) {
+      throw new IllegalArgumentException(encoding);
+    }
+    this.hex = encoding.equals(HEX);
+    this.maxBytes = maxBytes > 0 ? (int) Math.min(maxBytes, MAX_ARRAY_LENGTH) : MAX_ARRAY_LENGTH;
+  }
+
+  public String encode(InputStream in) throws IOException {
+    int length = 0;
+    while (true) {
+      int limit = Math.min(bytes.length, maxBytes);
+      if (length == limit) {
+        if (limit == maxBytes) {
+          if (in.read() < 0) {
+            break;
+          }
+          throw new DataException(
+              String.format("BINARY value exceeds binary_max_bytes %d.", maxBytes));
+        }
+        long grown = Math.max(bytes.length * 2L, INITIAL_BUFFER_BYTES);
+        bytes = Arrays.copyOf(bytes, (int) Math.min(grown, maxBytes));
+        continue;
+      }
+      int n = in.read(bytes, length, limit - length);
+      if (n < 0) {
+        break;
+      }
+      length += n;
+    }
+    return hex ? encodeHex(length) : encodeBase64(length);
+  }
+
+  private String encodeHex(int length) {
+    char[] out = charsOf((long) length * 2);
+    int o = 0;
+    for (int i = 0; i < length; i++) {
+      int b = bytes[i] & 0xff;
+      out[o++] = HEX_DIGITS[b >>> 4];
+      out[o++] = HEX_DIGITS[b & 0x0f];
+    }
+    return new String(out, 0, o);
+  }
+
+  private String encodeBase64(int length) {
+    char[] out = charsOf((length + 2L) / 3 * 4);
+    int o = 0;
+    int i = 0;
+    for (; i + 3 <= length; i += 3) {
+      int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff);
+      out[o++] = BASE64_DIGITS[bits >>> 18];
+      out[o++] = BASE64_DIGITS[(bits >>> 12) & 0x3f];
+      out[o++] = BASE64_DIGITS[(bits >>> 6) & 0x3f];
+      out[o++] = BASE64_DIGITS[bits & 0x3f];
+    }
+    int remaining = length - i;
+    if (remaining > 0) {
+      int bits = (bytes[i] & 0xff) << 16 | (remaining == 2 ? (bytes[i + 1] & 0xff) << 8 : 0);
+      out[o++] = BASE64_DIGITS[bits >>> 18];
+      out[o++] = BASE64_DIGITS[(bits >>> 12) & 0x3f];
+      out[o++] = remaining == 2 ? BASE64_DIGITS[(bits >>> 6) & 0x3f] : '=';
+      out[o++] = '=';
+    }
+    return new String(out, 0, o);
+  }
+
+  private char[] charsOf(long length) {
+    if (length > MAX_ARRAY_LENGTH) {
+      throw new DataException(
+          String.format("BINARY value is too large to encode into %d characters.", length));
+    }
+    if (chars.length < length) {
+      chars = new char[(int) length];
+    }
+    return chars;
+  }
+}
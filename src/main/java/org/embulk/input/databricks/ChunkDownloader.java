@@ -0,0 +1,117 @@
+package org.embulk.input.databricks;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.embulk.input.databricks.StatementExecutionClient.Chunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Downloads result chunks on a bounded thread pool and hands them to a consumer in chunk order.
+//
+// Chunks are downloaded ahead of the consumer as long as the bytes held by downloaded and
+// in-flight chunks stay under memoryLimitBytes. The memory is reserved by the consumer thread in
+// chunk order, so the chunk the consumer waits for always gets its memory before any later chunk,
+// and a chunk larger than the limit is still downloaded once nothing else is held.
+public class ChunkDownloader implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(ChunkDownloader.class);
+
+  public interface ChunkSource {
+    byte[] download(Chunk chunk) throws IOException;
+  }
+
+  public interface ChunkConsumer {
+    void accept(Chunk chunk, byte[] data) throws IOException;
+  }
+
+  private final ExecutorService executor;
+  private final long memoryLimitBytes;
+
+  private long heldBytes;
+  private long peakHeldBytes;
+  private long waitNanos;
+
+  public ChunkDownloader(int threads, long memoryLimitBytes) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be greater than 0.");
+    }
+    this.executor = Executors.newFixedThreadPool(threads, newThreadFactory());
+    this.memoryLimitBytes = memoryLimitBytes;
+  }
+
+  public void download(List<Chunk> chunks, ChunkSource source, ChunkConsumer consumer)
+      throws IOException {
+    Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+    int next = 0;
+    try {
+      for (Chunk chunk : chunks) {
+        while (next < chunks.size() && (inFlight.isEmpty() || canHold(chunks.get(next)))) {
+          Chunk ahead = chunks.get(next++);
+          heldBytes += ahead.getByteCount();
+          peakHeldBytes = Math.max(peakHeldBytes, heldBytes);
+          inFlight.add(executor.submit(() -> source.download(ahead)));
+        }
+        byte[] data = await(inFlight.poll(), chunk);
+        consumer.accept(chunk, data);
+        heldBytes -= chunk.getByteCount();
+      }
+    } finally {
+      for (Future<byte[]> future : inFlight) {
+        future.cancel(true);
+      }
+    }
+    logger.info(
+        "Downloaded {} chunks. Peak buffered bytes: {}, waited for downloads: {} ms.",
+        chunks.size(),
+        peakHeldBytes,
+        waitNanos / 1_000_000L);
+  }
+
+  // The greatest number of bytes held at once, for tests and logs.
+  public long getPeakHeldBytes() {
+    return peakHeldBytes;
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private boolean canHold(Chunk chunk) {
+    return heldBytes + chunk.getByteCount() <= memoryLimitBytes;
+  }
+
+  private byte[] await(Future<byte[]> future, Chunk chunk) throws IOException {
+    long start = System.nanoTime();
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while downloading chunk " + chunk.getIndex());
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Failed to download chunk " + chunk.getIndex(), e.getCause());
+    } finally {
+      waitNanos += System.nanoTime() - start;
+    }
+  }
+
+  private static ThreadFactory newThreadFactory() {
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, "databricks-chunk-download-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
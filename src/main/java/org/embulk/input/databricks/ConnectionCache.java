@@ -0,0 +1,219 @@
+package org.embulk.input.databricks;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Keeps JDBC connections of the JVM idle between their uses.
+//
+// Embulk opens a connection for setupTask in transaction() and another one in every run(), and
+// opening one costs the TLS handshake and a new Thrift session on the warehouse. A connection
+// released here by one of them is handed to the next one that asks for the same key, after
+// Connection#isValid says it is still alive. Connections idle for longer than the idle timeout
+// are closed, and the rest when the transaction that released them is over or the JVM exits.
+public class ConnectionCache {
+  private static final Logger logger = LoggerFactory.getLogger(ConnectionCache.class);
+
+  private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+  private static final ConnectionCache INSTANCE = new ConnectionCache(System::currentTimeMillis);
+
+  // A connection is reused only by the same compute, the same catalog and schema, and the same
+  // connection properties, which include the credentials.
+  public static class Key {
+    private final String host;
+    private final String httpPath;
+    private final String catalog;
+    private final String schema;
+    private final Properties properties;
+
+    public Key(
+        String host, String httpPath, String catalog, String schema, Properties properties) {
+      this.host = host;
+      this.httpPath = httpPath;
+      this.catalog = catalog;
+      this.schema = schema;
+      this.properties = (Properties) properties.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return host.equals(other.host)
+          && httpPath.equals(other.httpPath)
+          && Objects.equals(catalog, other.catalog)
+          && Objects.equals(schema, other.schema)
+          && properties.equals(other.properties);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(host, httpPath, catalog, schema, properties);
+    }
+
+    // Without the properties, which hold the token.
+    @Override
+    public String toString() {
+      return String.format("%s%s (catalog: %s, schema: %s)", host, httpPath, catalog, schema);
+    }
+  }
+
+  private static class IdleConnection {
+    private final Connection connection;
+    private final long idleSinceMillis;
+    private final long idleTimeoutMillis;
+
+    private IdleConnection(Connection connection, long idleSinceMillis, long idleTimeoutMillis) {
+      this.connection = connection;
+      this.idleSinceMillis = idleSinceMillis;
+      this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    private boolean isExpired(long nowMillis) {
+      return nowMillis - idleSinceMillis >= idleTimeoutMillis;
+    }
+  }
+
+  private final LongSupplier clock;
+  private final Map<Key, Deque<IdleConnection>> idleConnections = new HashMap<>();
+  private ScheduledExecutorService evictor;
+
+  ConnectionCache(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  public static ConnectionCache getInstance() {
+    return INSTANCE;
+  }
+
+  // Returns an idle connection of the key that is still valid, if any.
+  public Optional<Connection> acquire(Key key) {
+    while (true) {
+      IdleConnection idle;
+      synchronized (this) {
+        evictExpired();
+        Deque<IdleConnection> connections = idleConnections.get(key);
+        idle = connections == null ? null : connections.pollLast();
+      }
+      if (idle == null) {
+        return Optional.empty();
+      }
+      if (isValid(idle.connection)) {
+        logger.info("Reusing a connection to {}.", key);
+        return Optional.of(idle.connection);
+      }
+      closeQuietly(idle.connection);
+    }
+  }
+
+  // Keeps the connection for idleTimeoutMillis. The caller must not use it afterwards.
+  public void release(Key key, Connection connection, long idleTimeoutMillis) {
+    if (idleTimeoutMillis <= 0) {
+      closeQuietly(connection);
+      return;
+    }
+    synchronized (this) {
+      idleConnections
+          .computeIfAbsent(key, k -> new ArrayDeque<>())
+          .addLast(new IdleConnection(connection, clock.getAsLong(), idleTimeoutMillis));
+      startEvictor();
+    }
+  }
+
+  // Closes the connections idle for longer than their timeout.
+  public synchronized void evictExpired() {
+    long now = clock.getAsLong();
+    Iterator<Deque<IdleConnection>> entries = idleConnections.values().iterator();
+    while (entries.hasNext()) {
+      Deque<IdleConnection> connections = entries.next();
+      Iterator<IdleConnection> it = connections.iterator();
+      while (it.hasNext()) {
+        IdleConnection idle = it.next();
+        if (idle.isExpired(now)) {
+          it.remove();
+          closeQuietly(idle.connection);
+        }
+      }
+      if (connections.isEmpty()) {
+        entries.remove();
+      }
+    }
+  }
+
+  // Closes every idle connection. Connections in use are kept by their users and released later.
+  public void closeAll() {
+    Deque<IdleConnection> closing = new ArrayDeque<>();
+    synchronized (this) {
+      for (Deque<IdleConnection> connections : idleConnections.values()) {
+        closing.addAll(connections);
+      }
+      idleConnections.clear();
+    }
+    for (IdleConnection idle : closing) {
+      closeQuietly(idle.connection);
+    }
+  }
+
+  synchronized int size() {
+    int size = 0;
+    for (Deque<IdleConnection> connections : idleConnections.values()) {
+      size += connections.size();
+    }
+    return size;
+  }
+
+  // Idle connections are closed by a daemon thread as well, so that they do not hold sessions on
+  // the warehouse after the load is over. The daemon thread does not keep the JVM alive until
+  // their timeout, so the ones left are closed by a shutdown hook.
+  private void startEvictor() {
+    if (evictor != null) {
+      return;
+    }
+    evictor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "databricks-connection-evictor");
+              thread.setDaemon(true);
+              return thread;
+            });
+    evictor.scheduleWithFixedDelay(this::evictExpired, 10, 10, TimeUnit.SECONDS);
+    Runtime.getRuntime()
+        .addShutdownHook(new Thread(this::closeAll, "databricks-connection-cache-shutdown"));
+  }
+
+  private static boolean isValid(Connection connection) {
+    try {
+      return !connection.isClosed() && connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+    } catch (SQLException e) {
+      logger.debug("Failed to validate an idle connection.", e);
+      return false;
+    }
+  }
+
+  private static void closeQuietly(Connection connection) {
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      logger.debug("Failed to close an idle connection.", e);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package org.embulk.input.databricks;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads the records of a CSV result chunk.
+//
+// The chunks are RFC 4180 CSV. An unquoted empty field is NULL while a quoted one is an empty
+// string. Any other field is text, including null, which only CsvPageWriter can tell from a value
+// by the type of its column.
+public class CsvChunkReader {
+  private final Reader reader;
+  private final StringBuilder field = new StringBuilder();
+  private int peeked = -2;
+
+  public CsvChunkReader(Reader reader) {
+    this.reader = reader;
+  }
+
+  // Returns null at the end of the chunk.
+  public String[] nextRecord() throws IOException {
+    int c = read();
+    if (c < 0) {
+      return null;
+    }
+    List<String> values = new ArrayList<>();
+    while (true) {
+      field.setLength(0);
+      boolean quoted = false;
+      if (c == '"') {
+        quoted = true;
+        c = readQuoted();
+      }
+      while (c >= 0 && c != ',' && c != '\n' && c != '\r') {
+        field.append((char) c);
+        c = read();
+      }
+      values.add(quoted || field.length() > 0 ? field.toString() : null);
+      if (c == ',') {
+        c = read();
+        continue;
+      }
+      if (c == '\r' && peek() == '\n') {
+        read();
+      }
+      return values.toArray(new String[0]);
+    }
+  }
+
+  // Reads a quoted value into field and returns the character after the closing quote.
+  private int readQuoted() throws IOException {
+    while (true) {
+      int c = read();
+      if (c < 0) {
+        throw new IOException("Unterminated quoted value in a CSV chunk.");
+      }
+      if (c == '"') {
+        if (peek() != '"') {
+          return read();
+        }
+        read();
+      }
+      field.append((char) c);
+    }
+  }
+
+  private int read() throws IOException {
+    if (peeked != -2) {
+      int c = peeked;
+      peeked = -2;
+      return c;
+    }
+    return reader.read();
+  }
+
+  private int peek() throws IOException {
+    if (peeked == -2) {
+      peeked = reader.read();
+    }
+    return peeked;
+  }
+}
@@ -0,0 +1,87 @@
+package org.embulk.input.databricks;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import org.embulk.spi.Column;
+import org.embulk.spi.DataException;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.type.Type;
+import org.embulk.spi.type.Types;
+
+// Writes the records of CSV result chunks into a PageBuilder.
+//
+// Values are parsed from the text the Statement Execution API writes, into the types the default
+// ColumnGetters output. DATE and TIMESTAMP_NTZ values have no offset and are read as UTC, like
+// the Arrow path does. NULL is an unquoted empty field. An unquoted null is NULL as well in the
+// columns other than string, where it cannot be a value, while it is the text null in a string
+// column.
+public class CsvPageWriter {
+  private final PageBuilder pageBuilder;
+  private final List<Column> columns;
+  private final String[] header;
+
+  // header is the column names of the result, which the first chunk starts with.
+  public CsvPageWriter(PageBuilder pageBuilder, List<Column> columns, List<String> header) {
+    this.pageBuilder = pageBuilder;
+    this.columns = columns;
+    this.header = header.toArray(new String[0]);
+  }
+
+  public long write(CsvChunkReader reader, boolean firstChunk) throws IOException {
+    long rows = 0;
+    String[] record = reader.nextRecord();
+    if (firstChunk && record != null && Arrays.equals(record, header)) {
+      record = reader.nextRecord();
+    }
+    for (; record != null; record = reader.nextRecord()) {
+      if (record.length != columns.size()) {
+        throw new DataException(
+            String.format(
+                "A CSV record has %d values but the result has %d columns.",
+                record.length, columns.size()));
+      }
+      for (int i = 0; i < record.length; i++) {
+        setValue(columns.get(i), record[i]);
+      }
+      pageBuilder.addRecord();
+      rows++;
+    }
+    return rows;
+  }
+
+  private void setValue(Column column, String value) {
+    Type type = column.getType();
+    if (value == null || (!type.equals(Types.STRING) && value.equals("null"))) {
+      pageBuilder.setNull(column);
+      return;
+    }
+    try {
+      if (type.equals(Types.STRING)) {
+        pageBuilder.setString(column, value);
+      } else if (type.equals(Types.LONG)) {
+        pageBuilder.setLong(column, Long.parseLong(value));
+      } else if (type.equals(Types.DOUBLE)) {
+        pageBuilder.setDouble(column, Double.parseDouble(value));
+      } else if (type.equals(Types.BOOLEAN)) {
+        pageBuilder.setBoolean(column, Boolean.parseBoolean(value));
+      } else if (type.equals(Types.TIMESTAMP)) {
+        pageBuilder.setTimestamp(column, parseTimestamp(value));
+      } else {
+        throw new DataException(
+            String.format(
+                "Column '%s' of type %s cannot be read from CSV.", column.getName(), type));
+      }
+    } catch (NumberFormatException | DateTimeParseException e) {
+      throw new DataException(
+          String.format("Invalid value '%s' of column '%s'.", value, column.getName()), e);
+    }
+  }
+
+  // 2020-03-04, 2020-03-04T12:00:00.123Z or 2020-03-04T12:00:00.123
+  static Instant parseTimestamp(String value) {
+    return DateTimeText.parse(value);
+  }
+}
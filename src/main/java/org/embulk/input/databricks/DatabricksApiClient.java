@@ -0,0 +1,141 @@
+package org.embulk.input.databricks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+// A small client of the Databricks REST API.
+//
+// It sticks to HttpURLConnection and the Jackson already on the classpath, so that the plugin
+// does not carry an HTTP client library only for a few JSON calls.
+// https://docs.databricks.com/api/workspace/introduction
+public class DatabricksApiClient {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final String endpoint;
+  private final String token;
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+
+  // endpoint is like "https://dbc-xxxx.cloud.databricks.com"
+  public DatabricksApiClient(
+      String endpoint, String token, int connectTimeoutMillis, int readTimeoutMillis) {
+    this.endpoint =
+        endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+    this.token = token;
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    this.readTimeoutMillis = readTimeoutMillis;
+  }
+
+  public static ObjectMapper getObjectMapper() {
+    return MAPPER;
+  }
+
+  public JsonNode get(String path) throws IOException {
+    return MAPPER.readTree(request("GET", endpoint + path, null, true));
+  }
+
+  public JsonNode post(String path, JsonNode body) throws IOException {
+    return MAPPER.readTree(request("POST", endpoint + path, MAPPER.writeValueAsBytes(body), true));
+  }
+
+  public void delete(String path) throws IOException {
+    request("DELETE", endpoint + path, null, true);
+  }
+
+  // Opens a workspace resource, such as a file of a Unity Catalog volume, to read it as a stream.
+  // The connection is released when the stream is closed.
+  public InputStream openStream(String path) throws IOException {
+    HttpURLConnection conn = connect("GET", endpoint + path, null, true);
+    try {
+      checkStatus(conn, "GET", endpoint + path);
+      return new FilterInputStream(conn.getInputStream()) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            conn.disconnect();
+          }
+        }
+      };
+    } catch (IOException | RuntimeException e) {
+      conn.disconnect();
+      throw e;
+    }
+  }
+
+  // Downloads a presigned URL. The URL carries its own credentials, and cloud storages reject
+  // requests that have an Authorization header as well.
+  public byte[] downloadExternal(String url) throws IOException {
+    return request("GET", url, null, false);
+  }
+
+  private byte[] request(String method, String url, byte[] body, boolean authorize)
+      throws IOException {
+    HttpURLConnection conn = connect(method, url, body, authorize);
+    try {
+      checkStatus(conn, method, url);
+      try (InputStream in = conn.getInputStream()) {
+        return readAll(in);
+      }
+    } finally {
+      conn.disconnect();
+    }
+  }
+
+  private HttpURLConnection connect(String method, String url, byte[] body, boolean authorize)
+      throws IOException {
+    HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+    conn.setRequestMethod(method);
+    conn.setConnectTimeout(connectTimeoutMillis);
+    conn.setReadTimeout(readTimeoutMillis);
+    if (authorize) {
+      conn.setRequestProperty("Authorization", "Bearer " + token);
+    }
+    if (body != null) {
+      conn.setDoOutput(true);
+      conn.setRequestProperty("Content-Type", "application/json");
+      try (OutputStream out = conn.getOutputStream()) {
+        out.write(body);
+      }
+    }
+    return conn;
+  }
+
+  private static void checkStatus(HttpURLConnection conn, String method, String url)
+      throws IOException {
+    int status = conn.getResponseCode();
+    if (status / 100 != 2) {
+      String message;
+      try (InputStream err = conn.getErrorStream()) {
+        message = err == null ? "" : new String(readAll(err), StandardCharsets.UTF_8);
+      }
+      throw new IOException(
+          String.format("%s %s failed with HTTP %d: %s", method, redact(url), status, message));
+    }
+  }
+
+  // Presigned URLs carry credentials in the query string.
+  private static String redact(String url) {
+    int query = url.indexOf('?');
+    return query < 0 ? url : url.substring(0, query) + "?...";
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[64 * 1024];
+    int n;
+    while ((n = in.read(buffer)) >= 0) {
+      out.write(buffer, 0, n);
+    }
+    return out.toByteArray();
+  }
+}
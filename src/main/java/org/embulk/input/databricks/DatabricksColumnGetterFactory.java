@@ -0,0 +1,559 @@
+package org.embulk.input.databricks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Calendar;
+import org.embulk.input.jdbc.AbstractJdbcInputPlugin.PluginTask;
+import org.embulk.input.jdbc.JdbcColumn;
+import org.embulk.input.jdbc.JdbcColumnOption;
+import org.embulk.input.jdbc.JdbcInputConnection;
+import org.embulk.input.jdbc.getter.AbstractColumnGetter;
+import org.embulk.input.jdbc.getter.BooleanColumnGetter;
+import org.embulk.input.jdbc.getter.ColumnGetter;
+import org.embulk.input.jdbc.getter.ColumnGetterFactory;
+import org.embulk.input.jdbc.getter.DateColumnGetter;
+import org.embulk.input.jdbc.getter.DoubleColumnGetter;
+import org.embulk.input.jdbc.getter.FloatColumnGetter;
+import org.embulk.input.jdbc.getter.LongColumnGetter;
+import org.embulk.input.jdbc.getter.TimestampColumnGetter;
+import org.embulk.spi.Column;
+import org.embulk.spi.DataException;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.type.Type;
+import org.embulk.util.timestamp.TimestampFormatter;
+
+// Creates getters that set the value of integer, floating point, boolean, DATE and TIMESTAMP
+// columns straight into the PageBuilder, that read JSON columns with a JsonValueReader and BINARY
+// columns into text with a BinaryEncoder. With a LargeValuePolicy, the values of STRING and JSON
+// columns longer than its limits are failed, truncated or skipped.
+//
+// The inherited getters fetch the value and then dispatch to the setter of the Embulk type through
+// the ColumnVisitor, once for every cell. When the column has no value_type or type option, the
+// Embulk type is known from the SQL type, so these getters call the setter directly. Any other
+// column, and the JSON encoding of last_record, is left to the inherited getters.
+public class DatabricksColumnGetterFactory extends ColumnGetterFactory {
+  private static final String TIMESTAMP_FORMAT = "%Y-%m-%d %H:%M:%S.%6N";
+  private static final String DATE_FORMAT = "%Y-%m-%d";
+
+  private final ZoneId defaultTimeZone;
+  private final JsonValueReader jsonReader;
+  private final BinaryEncoder binaryEncoder;
+  private final LargeValuePolicy largeValuePolicy;
+
+  // largeValuePolicy is null to read STRING and JSON columns without the large_value_* options.
+  public DatabricksColumnGetterFactory(
+      PageBuilder to,
+      ZoneId defaultTimeZone,
+      JsonValueReader jsonReader,
+      BinaryEncoder binaryEncoder,
+      LargeValuePolicy largeValuePolicy) {
+    super(to, defaultTimeZone);
+    this.defaultTimeZone = defaultTimeZone;
+    this.jsonReader = jsonReader;
+    this.binaryEncoder = binaryEncoder;
+    this.largeValuePolicy = largeValuePolicy;
+  }
+
+  public DatabricksColumnGetterFactory(
+      PageBuilder to,
+      ZoneId defaultTimeZone,
+      JsonValueReader jsonReader,
+      BinaryEncoder binaryEncoder) {
+    this(to, defaultTimeZone, jsonReader, binaryEncoder, null);
+  }
+
+  public DatabricksColumnGetterFactory(PageBuilder to, ZoneId defaultTimeZone) {
+    this(
+        to,
+        defaultTimeZone,
+        new JsonValueReader(0, 0),
+        new BinaryEncoder(BinaryEncoder.BASE64, 0));
+  }
+
+  @Override
+  public ColumnGetter newColumnGetter(
+      JdbcInputConnection con, PluginTask task, JdbcColumn column, JdbcColumnOption option) {
+    if (isJson(option)) {
+      return new JsonTextColumnGetter(to, jsonReader, largeValuePolicy, column.getName());
+    }
+    if (isBinary(column, option)) {
+      return new BinaryColumnGetter(to, binaryEncoder);
+    }
+    if (isNarrowDecimal(column, option)) {
+      return new ScaledDecimalColumnGetter(
+          to, option.getType().orElse(org.embulk.spi.type.Types.DOUBLE), column.getScale());
+    }
+    if (largeValuePolicy != null && isText(column, option)) {
+      return new LimitedStringColumnGetter(to, largeValuePolicy, column.getName());
+    }
+    if (!option.getValueType().equals("coalesce") || option.getType().isPresent()) {
+      return super.newColumnGetter(con, task, column, option);
+    }
+    // The driver does not support TIMESTAMP_NTZ and reads it as a string, which is parsed here.
+    if (column.getTypeName().equalsIgnoreCase("TIMESTAMP_NTZ")) {
+      return new TextTimestampColumnGetter(to, newFormatter(option, TIMESTAMP_FORMAT));
+    }
+    // Same SQL types as the "coalesce" value type of the inherited factory.
+    switch (column.getSqlType()) {
+      case Types.TINYINT:
+      case Types.SMALLINT:
+      case Types.INTEGER:
+      case Types.BIGINT:
+        return new PrimitiveLongColumnGetter(to);
+      case Types.FLOAT:
+      case Types.DOUBLE:
+        return new PrimitiveDoubleColumnGetter(to);
+      case Types.REAL:
+        return new PrimitiveFloatColumnGetter(to);
+      case Types.BIT:
+      case Types.BOOLEAN:
+        return new PrimitiveBooleanColumnGetter(to);
+      case Types.DATE:
+        return new TextDateColumnGetter(to, newFormatter(option, DATE_FORMAT));
+      case Types.TIMESTAMP:
+        return new CalendarTimestampColumnGetter(to, newFormatter(option, TIMESTAMP_FORMAT));
+      default:
+        return super.newColumnGetter(con, task, column, option);
+    }
+  }
+
+  // The column is read as text, ARRAY, MAP and STRUCT values of Databricks, into an Embulk json
+  // column, by type: json or value_type: json.
+  private static boolean isJson(JdbcColumnOption option) {
+    String valueType = option.getValueType();
+    if (!valueType.equals("coalesce") && !valueType.equals("string") && !valueType.equals("json")) {
+      return false;
+    }
+    return option
+        .getType()
+        .map(org.embulk.spi.type.Types.JSON::equals)
+        .orElse(valueType.equals("json"));
+  }
+
+  // BINARY read into a string column. The inherited factory does not support it.
+  private static boolean isBinary(JdbcColumn column, JdbcColumnOption option) {
+    switch (column.getSqlType()) {
+      case Types.BINARY:
+      case Types.VARBINARY:
+      case Types.LONGVARBINARY:
+        return option.getValueType().equals("coalesce")
+            && option.getType().map(org.embulk.spi.type.Types.STRING::equals).orElse(true);
+      default:
+        return false;
+    }
+  }
+
+  // STRING read into a string column. TIMESTAMP_NTZ, which the driver also reads as a string, is
+  // not.
+  private static boolean isText(JdbcColumn column, JdbcColumnOption option) {
+    switch (column.getSqlType()) {
+      case Types.CHAR:
+      case Types.VARCHAR:
+      case Types.LONGVARCHAR:
+      case Types.NCHAR:
+      case Types.NVARCHAR:
+      case Types.LONGNVARCHAR:
+      case Types.CLOB:
+      case Types.NCLOB:
+        return (option.getValueType().equals("coalesce") || option.getValueType().equals("string"))
+            && option.getType().map(org.embulk.spi.type.Types.STRING::equals).orElse(true)
+            && !column.getTypeName().equalsIgnoreCase("TIMESTAMP_NTZ");
+      default:
+        return false;
+    }
+  }
+
+  // DECIMAL of a precision up to 18 read into a long, double or string column, which is decoded
+  // into a long of the unscaled value. Any wider DECIMAL is read as a BigDecimal.
+  private static boolean isNarrowDecimal(JdbcColumn column, JdbcColumnOption option) {
+    String valueType = option.getValueType();
+    if ((!valueType.equals("coalesce") && !valueType.equals("decimal"))
+        || (column.getSqlType() != Types.DECIMAL && column.getSqlType() != Types.NUMERIC)
+        || column.getPrecision() < 1
+        || column.getPrecision() > ScaledDecimal.MAX_PRECISION
+        || column.getScale() < 0
+        || column.getScale() > column.getPrecision()) {
+      return false;
+    }
+    Type type = option.getType().orElse(org.embulk.spi.type.Types.DOUBLE);
+    return type.equals(org.embulk.spi.type.Types.LONG)
+        || type.equals(org.embulk.spi.type.Types.DOUBLE)
+        || type.equals(org.embulk.spi.type.Types.STRING);
+  }
+
+  // The formatter the inherited getters format a string value with. These getters set the value as
+  // a timestamp, so it is only for the inherited methods.
+  private TimestampFormatter newFormatter(JdbcColumnOption option, String defaultFormat) {
+    return TimestampFormatter.builderWithRuby(option.getTimestampFormat().orElse(defaultFormat))
+        .setDefaultZoneId(option.getTimeZone().orElse(defaultTimeZone))
+        .build();
+  }
+
+  static class PrimitiveLongColumnGetter extends LongColumnGetter {
+    PrimitiveLongColumnGetter(PageBuilder to) {
+      super(to, org.embulk.spi.type.Types.LONG);
+    }
+
+    @Override
+    public void getAndSet(ResultSet from, int fromIndex, Column toColumn) throws SQLException {
+      value = from.getLong(fromIndex);
+      if (from.wasNull()) {
+        to.setNull(toColumn);
+      } else {
+        to.setLong(toColumn, value);
+      }
+    }
+  }
+
+  static class PrimitiveDoubleColumnGetter extends DoubleColumnGetter {
+    PrimitiveDoubleColumnGetter(PageBuilder to) {
+      super(to, org.embulk.spi.type.Types.DOUBLE);
+    }
+
+    @Override
+    public void getAndSet(ResultSet from, int fromIndex, Column toColumn) throws SQLException {
+      value = from.getDouble(fromIndex);
+      if (from.wasNull()) {
+        to.setNull(toColumn);
+      } else {
+        to.setDouble(toColumn, value);
+      }
+    }
+  }
+
+  static class PrimitiveFloatColumnGetter extends FloatColumnGetter {
+    PrimitiveFloatColumnGetter(PageBuilder to) {
+      super(to, org.embulk.spi.type.Types.DOUBLE);
+    }
+
+    @Override
+    public void getAndSet(ResultSet from, int fromIndex, Column toColumn) throws SQLException {
+      value = from.getFloat(fromIndex);
+      if (from.wasNull()) {
+        to.setNull(toColumn);
+      } else {
+        to.setDouble(toColumn, value);
+      }
+    }
+  }
+
+  static class PrimitiveBooleanColumnGetter extends BooleanColumnGetter {
+    PrimitiveBooleanColumnGetter(PageBuilder to) {
+      super(to, org.embulk.spi.type.Types.BOOLEAN);
+    }
+
+    @Override
+    public void getAndSet(ResultSet from, int fromIndex, Column toColumn) throws SQLException {
+      value = from.getBoolean(fromIndex);
+      if (from.wasNull()) {
+        to.setNull(toColumn);
+      } else {
+        to.setBoolean(toColumn, value);
+      }
+    }
+  }
+
+  // Reads TIMESTAMP with a Calendar of the JVM time zone made once, instead of the one the driver
+  // makes for every cell when the inherited getter passes none, and makes the Instant from the
+  // epoch seconds and nanos of the Timestamp.
+  static class CalendarTimestampColumnGetter extends TimestampColumnGetter {
+    private final Calendar calendar = Calendar.getInstance();
+
+    CalendarTimestampColumnGetter(PageBuilder to, TimestampFormatter formatter) {
+      super(to, org.embulk.spi.type.Types.TIMESTAMP, formatter);
+    }
+
+    @Override
+    public void getAndSet(ResultSet from, int fromIndex, Column toColumn) throws SQLException {
+      Timestamp timestamp = from.getTimestamp(fromIndex, calendar);
+      if (timestamp == null) {
+        to.setNull(toColumn);
+        return;
+      }
+      value =
+          Instant.ofEpochSecond(Math.floorDiv(timestamp.getTime(), 1000L), timestamp.getNanos());
+      to.setTimestamp(toColumn, value);
+    }
+  }
+
+  // Reads DATE from its text form, 2020-03-04, as midnight of the JVM time zone like the
+  // java.sql.Date of the inherited getter.
+  static class TextDateColumnGetter extends DateColumnGetter {
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    TextDateColumnGetter(PageBuilder to, TimestampFormatter formatter) {
+      super(to, org.embulk.spi.type.Types.TIMESTAMP, formatter);
+    }
+
+    @Override
+    public void getAndSet(ResultSet from, int fromIndex, Column toColumn) throws SQLException {
+      String text = from.getString(fromIndex);
+      if (text == null) {
+        to.setNull(toColumn);
+        return;
+      }
+      value = parse(text, zone, toColumn);
+      to.setTimestamp(toColumn, value);
+    }
+  }
+
+  // Reads TIMESTAMP_NTZ from its text form, 2020-03-04 12:00:00.123456, in the JVM time zone as
+  // ResultSet#getTimestamp reads a timestamp without a time zone.
+  static class TextTimestampColumnGetter extends TimestampColumnGetter {
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    TextTimestampColumnGetter(PageBuilder to, TimestampFormatter formatter) {
+      super(to, org.embulk.spi.type.Types.TIMESTAMP, formatter);
+    }
+
+    @Override
+    public void getAndSet(ResultSet from, int fromIndex, Column toColumn) throws SQLException {
+      String text = from.getString(fromIndex);
+      if (text == null) {
+        to.setNull(toColumn);
+        return;
+      }
+      value = parse(text, zone, toColumn);
+      to.setTimestamp(toColumn, value);
+    }
+  }
+
+  // A large value is skipped rather than truncated by the policy, because a truncated document is
+  // not JSON.
+  static class JsonTextColumnGetter extends AbstractColumnGetter {
+    private final JsonValueReader reader;
+    private final LargeValuePolicy policy;
+    private final String columnName;
+    private String value;
+
+    // policy may be null.
+    JsonTextColumnGetter(
+        PageBuilder to, JsonValueReader reader, LargeValuePolicy policy, String columnName) {
+      super(to, org.embulk.spi.type.Types.JSON);
+      this.reader = reader;
+      this.policy = policy;
+      this.columnName = columnName;
+    }
+
+    // A value skipped by the policy is set as null as well as a NULL.
+    @Override
+    public void getAndSet(ResultSet from, int fromIndex, Column toColumn) throws SQLException {
+      fetch(from, fromIndex);
+      if (value == null) {
+        to.setNull(toColumn);
+      } else {
+        toColumn.visit(this);
+      }
+    }
+
+    @Override
+    protected void fetch(ResultSet from, int fromIndex) throws SQLException {
+      value = from.getString(fromIndex);
+      if (policy != null) {
+        value = policy.apply(value, columnName, false);
+      }
+    }
+
+    @Override
+    protected Type getDefaultToType() {
+      return org.embulk.spi.type.Types.JSON;
+    }
+
+    @Override
+    public void jsonColumn(Column column) {
+      to.setJson(column, reader.read(value));
+    }
+
+    @Override
+    public void stringColumn(Column column) {
+      to.setString(column, value);
+    }
+
+    @Override
+    public JsonNode encodeToJson() {
+      return jsonNodeFactory.textNode(value);
+    }
+
+    @Override
+    public void decodeFromJsonTo(PreparedStatement toStatement, int toIndex, JsonNode fromValue)
+        throws SQLException {
+      toStatement.setString(toIndex, fromValue.asText());
+    }
+  }
+
+  // Reads STRING by ResultSet#getString and applies the policy of large values to it. A value
+  // skipped by the policy is set as null.
+  static class LimitedStringColumnGetter extends AbstractColumnGetter {
+    private final LargeValuePolicy policy;
+    private final String columnName;
+    private String value;
+
+    LimitedStringColumnGetter(PageBuilder to, LargeValuePolicy policy, String columnName) {
+      super(to, org.embulk.spi.type.Types.STRING);
+      this.policy = policy;
+      this.columnName = columnName;
+    }
+
+    @Override
+    public void getAndSet(ResultSet from, int fromIndex, Column toColumn) throws SQLException {
+      fetch(from, fromIndex);
+      if (value == null) {
+        to.setNull(toColumn);
+      } else {
+        to.setString(toColumn, value);
+      }
+    }
+
+    @Override
+    protected void fetch(ResultSet from, int fromIndex) throws SQLException {
+      value = policy.apply(from.getString(fromIndex), columnName, true);
+    }
+
+    @Override
+    protected Type getDefaultToType() {
+      return org.embulk.spi.type.Types.STRING;
+    }
+
+    @Override
+    public void stringColumn(Column column) {
+      to.setString(column, value);
+    }
+
+    @Override
+    public JsonNode encodeToJson() {
+      return jsonNodeFactory.textNode(value);
+    }
+
+    @Override
+    public void decodeFromJsonTo(PreparedStatement toStatement, int toIndex, JsonNode fromValue)
+        throws SQLException {
+      toStatement.setString(toIndex, fromValue.asText());
+    }
+  }
+
+  static class BinaryColumnGetter extends AbstractColumnGetter {
+    private final BinaryEncoder encoder;
+    private String value;
+
+    BinaryColumnGetter(PageBuilder to, BinaryEncoder encoder) {
+      super(to, org.embulk.spi.type.Types.STRING);
+      this.encoder = encoder;
+    }
+
+    @Override
+    protected void fetch(ResultSet from, int fromIndex) throws SQLException {
+      value = null;
+      try (InputStream in = from.getBinaryStream(fromIndex)) {
+        if (in != null) {
+          value = encoder.encode(in);
+        }
+      } catch (IOException e) {
+        throw new SQLException(e);
+      }
+    }
+
+    @Override
+    protected Type getDefaultToType() {
+      return org.embulk.spi.type.Types.STRING;
+    }
+
+    @Override
+    public void stringColumn(Column column) {
+      to.setString(column, value);
+    }
+
+    @Override
+    public JsonNode encodeToJson() {
+      return jsonNodeFactory.textNode(value);
+    }
+  }
+
+  // Reads the value as a long if the scale is 0, or parses its text otherwise. A value the text of
+  // which is not plain, or does not fit the scale, is kept as a BigDecimal.
+  static class ScaledDecimalColumnGetter extends AbstractColumnGetter {
+    private final int scale;
+    private long unscaled;
+    private BigDecimal decimal;
+
+    ScaledDecimalColumnGetter(PageBuilder to, Type toType, int scale) {
+      super(to, toType);
+      this.scale = scale;
+    }
+
+    @Override
+    protected void fetch(ResultSet from, int fromIndex) throws SQLException {
+      decimal = null;
+      if (scale == 0) {
+        unscaled = from.getLong(fromIndex);
+        return;
+      }
+      String text = from.getString(fromIndex);
+      if (text == null) {
+        return;
+      }
+      try {
+        unscaled = ScaledDecimal.parseUnscaled(text, scale);
+      } catch (NumberFormatException e) {
+        decimal = new BigDecimal(text);
+      }
+    }
+
+    @Override
+    protected Type getDefaultToType() {
+      return org.embulk.spi.type.Types.DOUBLE;
+    }
+
+    @Override
+    public void longColumn(Column column) {
+      to.setLong(
+          column, decimal != null ? decimal.longValue() : ScaledDecimal.toLong(unscaled, scale));
+    }
+
+    @Override
+    public void doubleColumn(Column column) {
+      to.setDouble(
+          column,
+          decimal != null ? decimal.doubleValue() : ScaledDecimal.toDouble(unscaled, scale));
+    }
+
+    @Override
+    public void stringColumn(Column column) {
+      to.setString(
+          column,
+          decimal != null
+              ? decimal.toPlainString()
+              : ScaledDecimal.toPlainString(unscaled, scale));
+    }
+
+    @Override
+    public JsonNode encodeToJson() {
+      return jsonNodeFactory.numberNode(
+          decimal != null ? decimal : BigDecimal.valueOf(unscaled, scale));
+    }
+
+    @Override
+    public void decodeFromJsonTo(PreparedStatement toStatement, int toIndex, JsonNode fromValue)
+        throws SQLException {
+      toStatement.setBigDecimal(toIndex, fromValue.decimalValue());
+    }
+  }
+
+  private static Instant parse(String text, ZoneId zone, Column column) {
+    try {
+      return DateTimeText.parse(text, zone);
+    } catch (DateTimeParseException e) {
+      throw new DataException(
+          String.format("Invalid value '%s' of column '%s'.", text, column.getName()), e);
+    }
+  }
+}
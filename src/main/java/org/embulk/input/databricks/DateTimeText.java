@@ -0,0 +1,141 @@
+package org.embulk.input.databricks;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.time.zone.ZoneRules;
+
+// Parses the text form of DATE, TIMESTAMP and TIMESTAMP_NTZ values into an Instant.
+//
+// Values without an offset are read as the wall clock time of a time zone, UTC unless given. The
+// forms Databricks writes, 2020-03-04 and
+// 2020-03-04 12:00:00.123456, are parsed by hand, because a DateTimeFormatter allocates a parsed
+// map and its fields for every value. Any other form, such as one with an offset, goes through
+// DateTimeFormatter.ISO_DATE_TIME.
+public class DateTimeText {
+  private static final long SECONDS_PER_DAY = 86_400L;
+
+  private DateTimeText() {}
+
+  // 2020-03-04, 2020-03-04T12:00:00.123Z or 2020-03-04 12:00:00.123
+  public static Instant parse(String value) {
+    return parse(value, ZoneOffset.UTC);
+  }
+
+  public static Instant parse(String value, ZoneId zone) {
+    Instant instant = parseLocal(value);
+    if (instant != null) {
+      return atZone(instant, zone);
+    }
+    if (value.length() == 10) {
+      return LocalDate.parse(value).atStartOfDay(zone).toInstant();
+    }
+    TemporalAccessor parsed =
+        DateTimeFormatter.ISO_DATE_TIME.parseBest(
+            value.replace(' ', 'T'), OffsetDateTime::from, LocalDateTime::from);
+    if (parsed instanceof OffsetDateTime) {
+      return ((OffsetDateTime) parsed).toInstant();
+    }
+    return ((LocalDateTime) parsed).atZone(zone).toInstant();
+  }
+
+  // Moves the wall clock time read as UTC into zone. A zone of a fixed offset, such as UTC, needs
+  // no LocalDateTime.
+  private static Instant atZone(Instant utc, ZoneId zone) {
+    ZoneRules rules = zone.getRules();
+    if (rules.isFixedOffset()) {
+      return utc.minusSeconds(rules.getOffset(utc).getTotalSeconds());
+    }
+    return LocalDateTime.ofEpochSecond(utc.getEpochSecond(), utc.getNano(), ZoneOffset.UTC)
+        .atZone(zone)
+        .toInstant();
+  }
+
+  // Returns null unless value is yyyy-MM-dd or yyyy-MM-dd HH:mm:ss with up to 9 fractional digits.
+  static Instant parseLocal(String value) {
+    int length = value.length();
+    if (length < 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+      return null;
+    }
+    int year = digits(value, 0, 4);
+    int month = digits(value, 5, 7);
+    int day = digits(value, 8, 10);
+    if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+      return null;
+    }
+    long seconds = epochDay(year, month, day) * SECONDS_PER_DAY;
+    if (length == 10) {
+      return Instant.ofEpochSecond(seconds);
+    }
+    if (length < 19
+        || (value.charAt(10) != ' ' && value.charAt(10) != 'T')
+        || value.charAt(13) != ':'
+        || value.charAt(16) != ':') {
+      return null;
+    }
+    int hour = digits(value, 11, 13);
+    int minute = digits(value, 14, 16);
+    int second = digits(value, 17, 19);
+    if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+      return null;
+    }
+    int nanos = 0;
+    if (length > 19) {
+      if (value.charAt(19) != '.' || length == 20 || length > 29) {
+        return null;
+      }
+      int fraction = digits(value, 20, length);
+      if (fraction < 0) {
+        return null;
+      }
+      nanos = fraction;
+      for (int i = length; i < 29; i++) {
+        nanos *= 10;
+      }
+    }
+    return Instant.ofEpochSecond(seconds + hour * 3600L + minute * 60L + second, nanos);
+  }
+
+  // The decimal number of value[start, end), or -1 if it has a non-digit.
+  private static int digits(String value, int start, int end) {
+    int n = 0;
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      n = n * 10 + (c - '0');
+    }
+    return n;
+  }
+
+  private static int lengthOfMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  // Days since 1970-01-01 of a date in the proleptic Gregorian calendar, as LocalDate counts them.
+  // http://howardhinnant.github.io/date_algorithms.html#days_from_civil
+  private static long epochDay(int year, int month, int day) {
+    int y = month <= 2 ? year - 1 : year;
+    int era = Math.floorDiv(y, 400);
+    int yearOfEra = y - era * 400;
+    int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146_097L + dayOfEra - 719_468L;
+  }
+}
@@ -0,0 +1,24 @@
+package org.embulk.input.databricks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+// A directory the warehouse exports the result into, and the plugin reads the files back from.
+public interface ExportLocation {
+  // The path of the directory as the warehouse sees it.
+  String getUri();
+
+  // Returns the data files in the directory. Files of the commit protocol, such as _SUCCESS,
+  // and empty files are left out.
+  List<String> listFiles() throws IOException;
+
+  InputStream open(String file) throws IOException;
+
+  // Deletes the directory and the files in it.
+  void delete() throws IOException;
+
+  static boolean isDataFile(String name, long size) {
+    return size > 0 && !name.startsWith("_") && !name.startsWith(".");
+  }
+}
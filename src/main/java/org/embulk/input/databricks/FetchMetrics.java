@@ -0,0 +1,310 @@
+package org.embulk.input.databricks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.embulk.config.TaskReport;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageOutput;
+
+// Where the time of the fetch of a task goes: connecting, waiting for the first row of the query,
+// ResultSet#next, the ColumnGetters and the PageBuilder, with the rows, the bytes of the pages,
+// the bytes the fetch thread allocated and the fetch sizes.
+//
+// The fetch thread adds up the times of the rows locally and publishes them every few rows, so
+// that the counters cost a few System#nanoTime calls a row. Without rowTimes, the rows are not
+// timed at all, and next_ms, getter_ms and page_builder_ms are left out. The published values
+// can be read from another thread, through JMX while the task runs, and are put into the task
+// report at the end, from which toOpenMetrics writes the metrics of all the tasks.
+public class FetchMetrics implements FetchMetricsMXBean {
+  // Times are in milliseconds in the task report and in seconds in OpenMetrics.
+  private static final List<Metric> METRICS =
+      Arrays.asList(
+          new Metric("connect_ms", "connect_seconds", "gauge", "Time to open the connection."),
+          new Metric(
+              "first_row_ms",
+              "first_row_seconds",
+              "gauge",
+              "Time from the query to its first row."),
+          new Metric("rows", "rows", "counter", "Rows fetched."),
+          new Metric("page_bytes", "page_bytes", "counter", "Bytes of the pages built."),
+          new Metric("next_ms", "next_seconds", "counter", "Time blocked in ResultSet#next."),
+          new Metric(
+              "getter_ms", "getter_seconds", "counter", "Time reading and converting the values."),
+          new Metric(
+              "page_builder_ms",
+              "page_builder_seconds",
+              "counter",
+              "Time adding the records to pages and handing the pages to the output."),
+          new Metric(
+              "allocated_bytes",
+              "allocated_bytes",
+              "counter",
+              "Bytes allocated by the fetch thread."),
+          new Metric("fetch_size", "fetch_size", "gauge", "Rows of the last fetch."),
+          new Metric("fetch_size_min", "fetch_size_min", "gauge", "Rows of the smallest fetch."),
+          new Metric("fetch_size_max", "fetch_size_max", "gauge", "Rows of the largest fetch."));
+  private static final String PREFIX = "embulk_input_databricks_";
+  private static final AtomicLong INSTANCES = new AtomicLong();
+
+  private volatile long connectNanos = -1;
+  private volatile long firstRowNanos = -1;
+  private volatile long rows;
+  private volatile long pageBytes;
+  private volatile long nextNanos;
+  private volatile long getterNanos;
+  private volatile long pageBuilderNanos;
+  private volatile long allocatedBytes = -1;
+  private volatile int fetchSize = -1;
+  private volatile int minFetchSize = -1;
+  private volatile int maxFetchSize = -1;
+
+  private final boolean rowTimes;
+
+  // Only on the fetch thread.
+  private long queryStartNanos;
+  private long allocationThreadId = -1;
+  private long allocationStart;
+
+  public FetchMetrics() {
+    this(true);
+  }
+
+  public FetchMetrics(boolean rowTimes) {
+    this.rowTimes = rowTimes;
+  }
+
+  // Whether the fetch splits the time of each row into next, the getters and the PageBuilder.
+  public boolean hasRowTimes() {
+    return rowTimes;
+  }
+
+  public void setConnectNanos(long nanos) {
+    connectNanos = nanos;
+  }
+
+  // Called right before the query is submitted and right after its first row, on the fetch
+  // thread.
+  public void querySubmitted() {
+    queryStartNanos = System.nanoTime();
+  }
+
+  public void firstRow() {
+    firstRowNanos = System.nanoTime() - queryStartNanos;
+  }
+
+  // Starts counting the bytes the current thread allocates, if the JVM can.
+  public void startAllocation() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled()) {
+      allocationThreadId = Thread.currentThread().getId();
+      allocationStart =
+          ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(allocationThreadId);
+      allocatedBytes = 0;
+    }
+  }
+
+  // Publishes the counts of the rows since the last call, on the fetch thread.
+  public void addRows(long rows, long nextNanos, long getterNanos, long pageBuilderNanos) {
+    // Only the fetch thread writes them, so the increments are not lost.
+    this.rows += rows;
+    this.nextNanos += nextNanos;
+    this.getterNanos += getterNanos;
+    this.pageBuilderNanos += pageBuilderNanos;
+    if (allocationThreadId >= 0) {
+      allocatedBytes =
+          ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                  .getThreadAllocatedBytes(allocationThreadId)
+              - allocationStart;
+    }
+  }
+
+  // Called with the fetch size of the query and every time it changes, on the fetch thread.
+  public void setFetchSize(int fetchSize) {
+    this.fetchSize = fetchSize;
+    minFetchSize = minFetchSize < 0 ? fetchSize : Math.min(minFetchSize, fetchSize);
+    maxFetchSize = Math.max(maxFetchSize, fetchSize);
+  }
+
+  // Counts the bytes of the pages written into the output.
+  public PageOutput countPageBytes(PageOutput output) {
+    return new PageOutput() {
+      @Override
+      public void add(Page page) {
+        pageBytes += PagePrefetcher.sizeOf(page);
+        output.add(page);
+      }
+
+      @Override
+      public void finish() {
+        output.finish();
+      }
+
+      @Override
+      public void close() {
+        output.close();
+      }
+    };
+  }
+
+  @Override
+  public long getConnectMillis() {
+    return toMillis(connectNanos);
+  }
+
+  @Override
+  public long getFirstRowMillis() {
+    return toMillis(firstRowNanos);
+  }
+
+  @Override
+  public long getRows() {
+    return rows;
+  }
+
+  @Override
+  public long getPageBytes() {
+    return pageBytes;
+  }
+
+  @Override
+  public long getNextMillis() {
+    return toMillis(nextNanos);
+  }
+
+  @Override
+  public long getGetterMillis() {
+    return toMillis(getterNanos);
+  }
+
+  @Override
+  public long getPageBuilderMillis() {
+    return toMillis(pageBuilderNanos);
+  }
+
+  @Override
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  @Override
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  @Override
+  public int getMinFetchSize() {
+    return minFetchSize;
+  }
+
+  @Override
+  public int getMaxFetchSize() {
+    return maxFetchSize;
+  }
+
+  // Registers the metrics to the platform MBeanServer as
+  // org.embulk.input.databricks:type=FetchMetrics,task=<taskIndex>,instance=<n>, where n tells the
+  // runs in the same JVM apart. Returns the name to unregister with.
+  public ObjectName register(int taskIndex) throws JMException {
+    ObjectName name =
+        new ObjectName(
+            String.format(
+                "org.embulk.input.databricks:type=FetchMetrics,task=%d,instance=%d",
+                taskIndex, INSTANCES.incrementAndGet()));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+    return name;
+  }
+
+  public static void unregister(ObjectName name) throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    if (server.isRegistered(name)) {
+      server.unregisterMBean(name);
+    }
+  }
+
+  // The metrics that were measured, except rows, which the plugin reports by itself. A metric
+  // the fetch mode does not measure is left out.
+  public void report(TaskReport report) {
+    reportIfMeasured(report, "connect_ms", getConnectMillis());
+    reportIfMeasured(report, "first_row_ms", getFirstRowMillis());
+    reportIfMeasured(report, "page_bytes", pageBytes);
+    if (rowTimes) {
+      reportIfMeasured(report, "next_ms", getNextMillis());
+      reportIfMeasured(report, "getter_ms", getGetterMillis());
+      reportIfMeasured(report, "page_builder_ms", getPageBuilderMillis());
+    }
+    reportIfMeasured(report, "allocated_bytes", allocatedBytes);
+    reportIfMeasured(report, "fetch_size", fetchSize);
+    reportIfMeasured(report, "fetch_size_min", minFetchSize);
+    reportIfMeasured(report, "fetch_size_max", maxFetchSize);
+  }
+
+  private static void reportIfMeasured(TaskReport report, String key, long value) {
+    if (value >= 0) {
+      report.set(key, value);
+    }
+  }
+
+  // The metrics in the task reports in the OpenMetrics text format, with a task label of the
+  // index of the report.
+  // https://github.com/OpenObservability/OpenMetrics/blob/main/specification/OpenMetrics.md
+  public static String toOpenMetrics(List<TaskReport> reports) {
+    StringBuilder sb = new StringBuilder();
+    for (Metric metric : METRICS) {
+      String name = PREFIX + metric.name;
+      boolean seconds = metric.key.endsWith("_ms");
+      sb.append("# TYPE ").append(name).append(' ').append(metric.type).append('\n');
+      if (seconds) {
+        sb.append("# UNIT ").append(name).append(" seconds\n");
+      } else if (name.endsWith("_bytes")) {
+        sb.append("# UNIT ").append(name).append(" bytes\n");
+      }
+      sb.append("# HELP ").append(name).append(' ').append(metric.help).append('\n');
+      for (int i = 0; i < reports.size(); i++) {
+        TaskReport report = reports.get(i);
+        if (!report.has(metric.key)) {
+          continue;
+        }
+        long value = report.get(Long.class, metric.key);
+        sb.append(name).append(metric.type.equals("counter") ? "_total" : "");
+        sb.append("{task=\"").append(i).append("\"} ");
+        if (seconds) {
+          sb.append(String.format(Locale.ROOT, "%.3f", value / 1000.0));
+        } else {
+          sb.append(value);
+        }
+        sb.append('\n');
+      }
+    }
+    sb.append("# EOF\n");
+    return sb.toString();
+  }
+
+  private static long toMillis(long nanos) {
+    return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  private static class Metric {
+    // The key of the task report.
+    final String key;
+    // The name of the metric without the prefix.
+    final String name;
+    final String type;
+    final String help;
+
+    Metric(String key, String name, String type, String help) {
+      this.key = key;
+      this.name = name;
+      this.type = type;
+      this.help = help;
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package org.embulk.input.databricks;
+
+// The FetchMetrics of a running task, as they are seen through JMX. A time or a size that has not
+// been measured is -1.
+public interface FetchMetricsMXBean {
+  long getConnectMillis();
+
+  long getFirstRowMillis();
+
+  long getRows();
+
+  long getPageBytes();
+
+  long getNextMillis();
+
+  long getGetterMillis();
+
+  long getPageBuilderMillis();
+
+  long getAllocatedBytes();
+
+  int getFetchSize();
+
+  int getMinFetchSize();
+
+  int getMaxFetchSize();
+}
@@ -0,0 +1,92 @@
+package org.embulk.input.databricks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Optional;
+
+// Sizes the fetches of a result to a memory budget, from the size of the rows seen so far.
+//
+// The first fetch is small, so that the first row comes soon whatever the rows are like. At the
+// end of each fetch, the bytes the fetch thread allocated per row are taken as the size of a row,
+// and the next fetch is as many rows as fit into the budget. The allocation covers the values the
+// driver decoded and the garbage of the getters as well, so it is more than the rows really take
+// and keeps the fetches inside the budget. The size is changed only if it is off by a quarter or
+// more, so that the fetches do not change with every small difference of the rows.
+//
+// The fetch thread calls next for every row. It needs the allocated bytes of a thread, which is
+// not available on every JVM.
+public class FetchSizer {
+  private final com.sun.management.ThreadMXBean threads;
+  private final long threadId;
+  private final long memoryBudget;
+  private final int minFetchRows;
+  private final int maxFetchRows;
+  private int fetchSize;
+  private long rowsInFetch;
+  private long fetchStartBytes;
+  private long rowBytes = -1;
+
+  private FetchSizer(
+      com.sun.management.ThreadMXBean threads,
+      long memoryBudget,
+      int firstFetchRows,
+      int minFetchRows,
+      int maxFetchRows) {
+    this.threads = threads;
+    this.threadId = Thread.currentThread().getId();
+    this.memoryBudget = memoryBudget;
+    this.minFetchRows = minFetchRows;
+    this.maxFetchRows = maxFetchRows;
+    this.fetchSize = firstFetchRows;
+    this.fetchStartBytes = threads.getThreadAllocatedBytes(threadId);
+  }
+
+  // Starts on the fetch thread. Empty if the JVM does not count the allocated bytes of a thread.
+  public static Optional<FetchSizer> start(
+      long memoryBudget, int firstFetchRows, int minFetchRows, int maxFetchRows) {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (!(threads instanceof com.sun.management.ThreadMXBean)
+        || !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled()) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        new FetchSizer(
+            (com.sun.management.ThreadMXBean) threads,
+            memoryBudget,
+            firstFetchRows,
+            minFetchRows,
+            maxFetchRows));
+  }
+
+  // Rows of the next fetch.
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  // Bytes of a row in the last fetch, or -1 before the end of the first fetch.
+  public long getRowBytes() {
+    return rowBytes;
+  }
+
+  // Counts a row. Returns true if the row ends a fetch and the size of the next fetch changed.
+  public boolean next() {
+    if (++rowsInFetch < fetchSize) {
+      return false;
+    }
+    long allocated = threads.getThreadAllocatedBytes(threadId);
+    rowBytes = Math.max((allocated - fetchStartBytes) / rowsInFetch, 1);
+    rowsInFetch = 0;
+    fetchStartBytes = allocated;
+    int size = fetchSizeOf(memoryBudget, rowBytes, minFetchRows, maxFetchRows);
+    if (Math.abs((long) size - fetchSize) * 4 < fetchSize) {
+      return false;
+    }
+    fetchSize = size;
+    return true;
+  }
+
+  static int fetchSizeOf(long memoryBudget, long rowBytes, int minFetchRows, int maxFetchRows) {
+    long rows = memoryBudget / Math.max(rowBytes, 1);
+    return (int) Math.max(minFetchRows, Math.min(rows, maxFetchRows));
+  }
+}
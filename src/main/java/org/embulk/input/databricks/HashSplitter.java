@@ -0,0 +1,28 @@
+package org.embulk.input.databricks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Splits the input into buckets by the hash of the given columns, one bucket per task.
+//
+// Unlike RangeSplitter this needs neither a monotonic column nor a round trip to the warehouse,
+// and the rows are spread evenly whatever the key distribution is. NULL columns are hashed too,
+// so every row belongs to exactly one bucket.
+// https://docs.databricks.com/en/sql/language-manual/functions/xxhash64.html
+// https://docs.databricks.com/en/sql/language-manual/functions/pmod.html
+public class HashSplitter {
+  private final List<String> quotedColumns;
+
+  public HashSplitter(List<String> quotedColumns) {
+    this.quotedColumns = quotedColumns;
+  }
+
+  public List<String> buildPredicates(int splitCount) {
+    String hash = "XXHASH64(" + String.join(", ", quotedColumns) + ")";
+    List<String> predicates = new ArrayList<>();
+    for (int i = 0; i < splitCount; i++) {
+      predicates.add(String.format("PMOD(%s, %d) = %d", hash, splitCount, i));
+    }
+    return predicates;
+  }
+}
@@ -0,0 +1,106 @@
+package org.embulk.input.databricks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.embulk.spi.DataException;
+import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
+
+// Reads the JSON text of ARRAY, MAP and STRUCT values into a msgpack Value in one pass.
+//
+// The values are built from the tokens of a streaming parser as they come, without a tree of
+// JsonNodes in between. A value nested deeper than maxDepth or longer than maxLength characters is
+// rejected with a DataException, so that one broken or huge cell does not exhaust the stack or the
+// heap of the task.
+public class JsonValueReader {
+  private static final JsonFactory FACTORY = new JsonFactory();
+  private static final Value[] EMPTY = new Value[0];
+
+  private final int maxDepth;
+  private final long maxLength;
+
+  // maxDepth and maxLength of 0 or less are unlimited.
+  public JsonValueReader(int maxDepth, long maxLength) {
+    this.maxDepth = maxDepth;
+    this.maxLength = maxLength;
+  }
+
+  public Value read(String text) {
+    checkLength(text.length());
+    try (JsonParser parser = FACTORY.createParser(text)) {
+      return parse(parser);
+    } catch (IOException e) {
+      throw new DataException("Invalid JSON value.", e);
+    }
+  }
+
+  private void checkLength(int length) {
+    if (maxLength > 0 && length > maxLength) {
+      throw new DataException(
+          String.format(
+              "JSON value of %d characters exceeds json_max_length %d.", length, maxLength));
+    }
+  }
+
+  private Value parse(JsonParser parser) throws IOException {
+    JsonToken token = parser.nextToken();
+    if (token == null) {
+      throw new DataException("Empty JSON value.");
+    }
+    Value value = readValue(parser, token, 0);
+    if (parser.nextToken() != null) {
+      throw new DataException(
+          String.format("Unexpected token after the JSON value at %s.", parser.getTokenLocation()));
+    }
+    return value;
+  }
+
+  private Value readValue(JsonParser parser, JsonToken token, int depth) throws IOException {
+    switch (token) {
+      case START_ARRAY:
+        checkDepth(depth + 1);
+        List<Value> elements = new ArrayList<>();
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+          elements.add(readValue(parser, token, depth + 1));
+        }
+        return ValueFactory.newArray(elements.toArray(EMPTY), true);
+      case START_OBJECT:
+        checkDepth(depth + 1);
+        List<Value> keyValues = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          keyValues.add(ValueFactory.newString(parser.getCurrentName()));
+          keyValues.add(readValue(parser, parser.nextToken(), depth + 1));
+        }
+        return ValueFactory.newMap(keyValues.toArray(EMPTY), true);
+      case VALUE_STRING:
+        return ValueFactory.newString(parser.getText());
+      case VALUE_NUMBER_INT:
+        if (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+          return ValueFactory.newInteger(parser.getBigIntegerValue());
+        }
+        return ValueFactory.newInteger(parser.getLongValue());
+      case VALUE_NUMBER_FLOAT:
+        return ValueFactory.newFloat(parser.getDoubleValue());
+      case VALUE_TRUE:
+        return ValueFactory.newBoolean(true);
+      case VALUE_FALSE:
+        return ValueFactory.newBoolean(false);
+      case VALUE_NULL:
+        return ValueFactory.newNil();
+      default:
+        throw new DataException(
+            String.format("Unexpected JSON token %s at %s.", token, parser.getTokenLocation()));
+    }
+  }
+
+  private void checkDepth(int depth) {
+    if (maxDepth > 0 && depth > maxDepth) {
+      throw new DataException(
+          String.format("JSON value nested deeper than json_max_depth %d.", maxDepth));
+    }
+  }
+}
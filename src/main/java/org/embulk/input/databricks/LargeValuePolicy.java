@@ -0,0 +1,60 @@
+package org.embulk.input.databricks;
+
+import org.embulk.spi.DataException;
+
+// Applies large_value_policy to the text of STRING and JSON cells longer than
+// large_value_max_chars.
+//
+// A longer value is failed with a DataException, truncated to maxChars or skipped as null, by the
+// policy. The driver has made the String of the value already, so this keeps a huge value out of
+// the page and the output, not out of the memory of the fetch. A policy is used by the getters of
+// one task, on one thread.
+public class LargeValuePolicy {
+  public static final String FAIL = "fail";
+  public static final String TRUNCATE = "truncate";
+  public static final String SKIP = "skip";
+
+  private final long maxChars;
+  private final String policy;
+  private long truncatedValues;
+  private long skippedValues;
+
+  // policy is FAIL, TRUNCATE or SKIP.
+  public LargeValuePolicy(long maxChars, String policy) {
+    if (maxChars <= 0) {
+      throw new IllegalArgumentException(Long.toString(maxChars));
+    }
+    if (!policy.equals(FAIL) && !policy.equals(TRUNCATE) && !policy.equals(SKIP)) {
+      throw new IllegalArgumentException(policy);
+    }
+    this.maxChars = maxChars;
+    this.policy = policy;
+  }
+
+  // Returns the value to set, which is null if the value is null or skipped. truncatable is false
+  // for a value that is no use truncated, such as JSON, which is skipped instead.
+  public String apply(String value, String columnName, boolean truncatable) {
+    if (value == null || value.length() <= maxChars) {
+      return value;
+    }
+    if (policy.equals(TRUNCATE) && truncatable) {
+      truncatedValues++;
+      return value.substring(0, (int) maxChars);
+    }
+    if (policy.equals(FAIL)) {
+      throw new DataException(
+          String.format(
+              "Value of column '%s' exceeds large_value_max_chars %d.", columnName, maxChars));
+    }
+    skippedValues++;
+    return null;
+  }
+
+  public long getTruncatedValues() {
+    return truncatedValues;
+  }
+
+  public long getSkippedValues() {
+    return skippedValues;
+  }
+}
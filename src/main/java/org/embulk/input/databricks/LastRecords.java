@@ -0,0 +1,70 @@
+package org.embulk.input.databricks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.List;
+import java.util.Optional;
+import org.embulk.config.TaskReport;
+
+// Helpers for the last_record values reported by tasks.
+//
+// A last_record is a JSON array holding one value per incremental column. The values are the
+// ones ColumnGetter#encodeToJson returns: numbers for integer columns and strings for string and
+// timestamp columns. Timestamps are formatted with a fixed width, so comparing them as strings
+// keeps their order.
+public class LastRecords {
+  private static final String LAST_RECORD = "last_record";
+
+  private LastRecords() {}
+
+  // Keeps the greatest of the records of the rows as they are fetched, for
+  // incremental_mode: last_record_unordered, in which the last row is not the greatest one.
+  public static class Max {
+    private JsonNode max;
+
+    public void offer(JsonNode record) {
+      if (max == null || compare(record, max) > 0) {
+        max = record;
+      }
+    }
+
+    public Optional<JsonNode> get() {
+      return Optional.ofNullable(max);
+    }
+  }
+
+  // Returns the greatest last_record among the task reports.
+  public static Optional<JsonNode> max(List<TaskReport> reports) {
+    JsonNode max = null;
+    for (TaskReport report : reports) {
+      if (!report.has(LAST_RECORD)) {
+        continue;
+      }
+      JsonNode lastRecord = report.get(JsonNode.class, LAST_RECORD);
+      if (max == null || compare(lastRecord, max) > 0) {
+        max = lastRecord;
+      }
+    }
+    return Optional.ofNullable(max);
+  }
+
+  public static int compare(JsonNode a, JsonNode b) {
+    int size = Math.min(a.size(), b.size());
+    for (int i = 0; i < size; i++) {
+      int c = compareValue(a.get(i), b.get(i));
+      if (c != 0) {
+        return c;
+      }
+    }
+    return Integer.compare(a.size(), b.size());
+  }
+
+  static int compareValue(JsonNode a, JsonNode b) {
+    if (a.isNull() || b.isNull()) {
+      return Boolean.compare(!a.isNull(), !b.isNull());
+    }
+    if (a.isNumber() && b.isNumber()) {
+      return a.decimalValue().compareTo(b.decimalValue());
+    }
+    return a.asText().compareTo(b.asText());
+  }
+}
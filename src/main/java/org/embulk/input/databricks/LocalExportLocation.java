@@ -0,0 +1,60 @@
+package org.embulk.input.databricks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// An export directory on a file system the plugin can read, given as a file: URI.
+//
+// This is for warehouses that share a file system with Embulk, and for reading exported files
+// without a cloud storage in tests.
+public class LocalExportLocation implements ExportLocation {
+  private final Path directory;
+
+  public LocalExportLocation(Path directory) {
+    this.directory = directory;
+  }
+
+  @Override
+  public String getUri() {
+    return directory.toUri().toString();
+  }
+
+  @Override
+  public List<String> listFiles() throws IOException {
+    List<String> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path path : stream) {
+        String name = path.getFileName().toString();
+        if (Files.isRegularFile(path) && ExportLocation.isDataFile(name, Files.size(path))) {
+          files.add(name);
+        }
+      }
+    }
+    Collections.sort(files);
+    return files;
+  }
+
+  @Override
+  public InputStream open(String file) throws IOException {
+    return Files.newInputStream(directory.resolve(file));
+  }
+
+  @Override
+  public void delete() throws IOException {
+    if (!Files.exists(directory)) {
+      return;
+    }
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path path : stream) {
+        Files.delete(path);
+      }
+    }
+    Files.delete(directory);
+  }
+}
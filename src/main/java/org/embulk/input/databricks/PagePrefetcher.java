@@ -0,0 +1,217 @@
+package org.embulk.input.databricks;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageOutput;
+
+// Runs the fetch of a task on its own thread, so that waiting for the result set and building
+// pages overlap with the plugins downstream.
+//
+// The fetch thread fills a PageBuilder whose output is getProducerOutput(), and the pages are
+// queued up to maxQueueBytes. The task thread takes them from the queue and hands them to the
+// real output, so the downstream plugins still run on the task thread. The time each side waits
+// for the other is counted: a long fetch stall means the downstream is the bottleneck, and a long
+// output stall means the fetch is.
+public class PagePrefetcher implements AutoCloseable {
+  public interface Producer {
+    long produce() throws SQLException, IOException;
+  }
+
+  private final PageOutput output;
+  private final long maxQueueBytes;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private final ArrayDeque<Page> queue = new ArrayDeque<>();
+  private long queuedBytes;
+  private long peakQueuedBytes;
+  private boolean finished;
+  private boolean cancelled;
+
+  private long fetchStallNanos;
+  private long outputStallNanos;
+
+  public PagePrefetcher(PageOutput output, long maxQueueBytes) {
+    this.output = output;
+    this.maxQueueBytes = maxQueueBytes;
+  }
+
+  // The output for the PageBuilder of the fetch thread.
+  public PageOutput getProducerOutput() {
+    return new PageOutput() {
+      @Override
+      public void add(Page page) {
+        enqueue(page);
+      }
+
+      @Override
+      public void finish() {
+        lock.lock();
+        try {
+          finished = true;
+          notEmpty.signalAll();
+        } finally {
+          lock.unlock();
+        }
+      }
+
+      @Override
+      public void close() {}
+    };
+  }
+
+  // Runs the producer on a fetch thread and passes its pages to the output until it finishes.
+  // Returns what the producer returns.
+  public long run(Producer producer) throws SQLException, IOException {
+    long[] result = new long[1];
+    Throwable[] failure = new Throwable[1];
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                result[0] = producer.produce();
+              } catch (Throwable e) {
+                failure[0] = e;
+              } finally {
+                // Wakes up the task thread even if the producer failed before finishing.
+                getProducerOutput().finish();
+              }
+            },
+            Thread.currentThread().getName() + "-prefetch");
+    thread.setDaemon(true);
+    thread.start();
+    try {
+      drain();
+    } catch (RuntimeException | Error e) {
+      cancel();
+      throw e;
+    } finally {
+      joinUninterruptibly(thread);
+    }
+    if (failure[0] != null) {
+      rethrow(failure[0]);
+    }
+    output.finish();
+    return result[0];
+  }
+
+  public long getFetchStallMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(fetchStallNanos);
+  }
+
+  public long getOutputStallMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(outputStallNanos);
+  }
+
+  public long getPeakQueuedBytes() {
+    return peakQueuedBytes;
+  }
+
+  @Override
+  public void close() {
+    cancel();
+    output.close();
+  }
+
+  private void enqueue(Page page) {
+    long size = sizeOf(page);
+    lock.lock();
+    try {
+      // A page larger than the limit is still queued once the queue is empty.
+      while (!cancelled && !queue.isEmpty() && queuedBytes + size > maxQueueBytes) {
+        long start = System.nanoTime();
+        notFull.awaitUninterruptibly();
+        fetchStallNanos += System.nanoTime() - start;
+      }
+      if (cancelled) {
+        page.release();
+        throw new IllegalStateException("Prefetch is cancelled because the output failed.");
+      }
+      queue.add(page);
+      queuedBytes += size;
+      peakQueuedBytes = Math.max(peakQueuedBytes, queuedBytes);
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void drain() {
+    while (true) {
+      Page page;
+      lock.lock();
+      try {
+        while (queue.isEmpty() && !finished) {
+          long start = System.nanoTime();
+          notEmpty.awaitUninterruptibly();
+          outputStallNanos += System.nanoTime() - start;
+        }
+        page = queue.poll();
+        if (page == null) {
+          return;
+        }
+        queuedBytes -= sizeOf(page);
+        notFull.signalAll();
+      } finally {
+        lock.unlock();
+      }
+      output.add(page);
+    }
+  }
+
+  // Stops the producer at its next page and releases the queued pages.
+  private void cancel() {
+    lock.lock();
+    try {
+      cancelled = true;
+      for (Page page : queue) {
+        page.release();
+      }
+      queue.clear();
+      queuedBytes = 0;
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Also the size of the pages FetchMetrics counts.
+  @SuppressWarnings("deprecation") // Page#buffer is the only way to know the size of a page.
+  static long sizeOf(Page page) {
+    return page.buffer().limit();
+  }
+
+  private static void joinUninterruptibly(Thread thread) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        thread.join();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void rethrow(Throwable e) throws SQLException, IOException {
+    if (e instanceof SQLException) {
+      throw (SQLException) e;
+    } else if (e instanceof IOException) {
+      throw (IOException) e;
+    } else if (e instanceof RuntimeException) {
+      throw (RuntimeException) e;
+    } else if (e instanceof Error) {
+      throw (Error) e;
+    }
+    throw new RuntimeException(e);
+  }
+}
@@ -0,0 +1,107 @@
+package org.embulk.input.databricks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+// Reads the execution metrics of a query from the query history of the warehouse, so that the
+// task report of a slow run tells where the time went on the warehouse side.
+//
+// A query shows up in the history a few seconds after it finishes, so the history is polled until
+// the query is there with its final metrics, a few times at most.
+// https://docs.databricks.com/api/workspace/queryhistory/list
+public class QueryHistoryClient {
+  private static final String HISTORY_PATH = "/api/2.0/sql/history/queries";
+
+  private final DatabricksApiClient api;
+  private final long pollIntervalMillis;
+  private final int maxAttempts;
+
+  public QueryHistoryClient(DatabricksApiClient api, long pollIntervalMillis, int maxAttempts) {
+    this.api = api;
+    this.pollIntervalMillis = pollIntervalMillis;
+    this.maxAttempts = maxAttempts;
+  }
+
+  // The metrics of the query as the keys and values of a task report, or empty if the query did
+  // not show up in the history in time.
+  public Optional<Map<String, Long>> fetchMetrics(String queryId) throws IOException {
+    String path =
+        String.format(
+            "%s?filter_by.statement_ids=%s&include_metrics=true",
+            HISTORY_PATH, URLEncoder.encode(queryId, StandardCharsets.UTF_8.name()));
+    for (int attempt = 1; ; attempt++) {
+      Optional<JsonNode> query = findFinished(api.get(path), queryId);
+      if (query.isPresent()) {
+        return Optional.of(metricsOf(query.get().path("metrics")));
+      }
+      if (attempt >= maxAttempts) {
+        return Optional.empty();
+      }
+      try {
+        Thread.sleep(pollIntervalMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for query " + queryId);
+      }
+    }
+  }
+
+  private static Optional<JsonNode> findFinished(JsonNode response, String queryId) {
+    for (JsonNode query : response.path("res")) {
+      if (!query.path("query_id").asText().equals(queryId)) {
+        continue;
+      }
+      switch (query.path("status").asText()) {
+        case "FINISHED":
+        case "FAILED":
+        case "CANCELED":
+          if (query.has("metrics")) {
+            return Optional.of(query);
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    return Optional.empty();
+  }
+
+  static Map<String, Long> metricsOf(JsonNode metrics) {
+    Map<String, Long> values = new LinkedHashMap<>();
+    putIfPresent(values, "server_rows_produced", metrics.path("rows_produced_count"));
+    putIfPresent(values, "server_read_bytes", metrics.path("read_bytes"));
+    putIfPresent(values, "server_compilation_ms", metrics.path("compilation_time_ms"));
+    putIfPresent(values, "server_execution_ms", metrics.path("execution_time_ms"));
+    putIfPresent(values, "server_total_ms", metrics.path("total_time_ms"));
+    // The query waits in the queues of the warehouse from the earlier of the queue timestamps
+    // until the compilation starts. The timestamps are absent if it did not wait.
+    long compilationStart = metrics.path("query_compilation_start_timestamp").asLong(-1);
+    long queueStart =
+        earlierOf(
+            metrics.path("provisioning_queue_start_timestamp").asLong(-1),
+            metrics.path("overloading_queue_start_timestamp").asLong(-1));
+    if (compilationStart >= 0) {
+      values.put("server_queue_ms", queueStart >= 0 ? compilationStart - queueStart : 0L);
+    }
+    return values;
+  }
+
+  private static void putIfPresent(Map<String, Long> values, String key, JsonNode value) {
+    if (value.isNumber()) {
+      values.put(key, value.asLong());
+    }
+  }
+
+  private static long earlierOf(long a, long b) {
+    if (a < 0) {
+      return b;
+    }
+    return b < 0 ? a : Math.min(a, b);
+  }
+}
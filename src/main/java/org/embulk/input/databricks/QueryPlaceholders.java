@@ -0,0 +1,111 @@
+package org.embulk.input.databricks;
+
+import java.util.Collections;
+import java.util.List;
+
+// Finds the parameters of a query: '?' markers and the :name placeholders of
+// use_raw_query_with_incremental.
+//
+// The Databricks driver returns no columns in the metadata of a statement with parameters, so the
+// schema of such a query is read from the query with NULL in place of its parameters. A marker in
+// a string literal, a quoted identifier or a comment is not a parameter, and neither is a :name
+// that is a part of a cast (::) or a path into a semi-structured column (c:name).
+public class QueryPlaceholders {
+  private final List<String> names;
+
+  // names are the names of the :name placeholders.
+  public QueryPlaceholders(List<String> names) {
+    this.names = names;
+  }
+
+  public QueryPlaceholders() {
+    this(Collections.<String>emptyList());
+  }
+
+  public int countParameters(String sql) {
+    int[] count = {0};
+    scan(sql, new StringBuilder(), "?", count);
+    return count[0];
+  }
+
+  public String replaceParameters(String sql, String replacement) {
+    StringBuilder sb = new StringBuilder(sql.length());
+    scan(sql, sb, replacement, new int[1]);
+    return sb.toString();
+  }
+
+  private void scan(String sql, StringBuilder out, String replacement, int[] count) {
+    int i = 0;
+    int length = sql.length();
+    while (i < length) {
+      char c = sql.charAt(i);
+      int end;
+      if (c == '\'' || c == '"' || c == '`') {
+        end = endOfQuoted(sql, i, c);
+      } else if (sql.startsWith("--", i)) {
+        end = sql.indexOf('\n', i);
+        end = end < 0 ? length : end;
+      } else if (sql.startsWith("/*", i)) {
+        end = sql.indexOf("*/", i + 2);
+        end = end < 0 ? length : end + 2;
+      } else if (c == '?') {
+        out.append(replacement);
+        count[0]++;
+        i++;
+        continue;
+      } else if (c == ':' && (end = endOfPlaceholder(sql, i)) > 0) {
+        out.append(replacement);
+        count[0]++;
+        i = end;
+        continue;
+      } else {
+        end = i + 1;
+      }
+      out.append(sql, i, end);
+      i = end;
+    }
+  }
+
+  // Returns the end of the :name placeholder at start, or 0 if it is not one.
+  private int endOfPlaceholder(String sql, int start) {
+    if (start > 0) {
+      char before = sql.charAt(start - 1);
+      if (before == ':' || Character.isLetterOrDigit(before) || before == '_') {
+        return 0;
+      }
+    }
+    for (String name : names) {
+      int end = start + 1 + name.length();
+      if (sql.startsWith(name, start + 1)
+          && (end == sql.length() || !isIdentifierPart(sql.charAt(end)))) {
+        return end;
+      }
+    }
+    return 0;
+  }
+
+  private static boolean isIdentifierPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+
+  // String literals escape with a backslash, and every quote also by doubling it.
+  // https://docs.databricks.com/en/sql/language-manual/data-types/string-type.html
+  private static int endOfQuoted(String sql, int start, char quote) {
+    int i = start + 1;
+    while (i < sql.length()) {
+      char c = sql.charAt(i);
+      if (c == '\\' && quote != '`') {
+        i += 2;
+      } else if (c == quote) {
+        if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+          i += 2;
+        } else {
+          return i + 1;
+        }
+      } else {
+        i++;
+      }
+    }
+    return sql.length();
+  }
+}
@@ -0,0 +1,40 @@
+package org.embulk.input.databricks;
+
+import java.time.Instant;
+
+// A comment appended to the queries of a task, so that a query in the query history of the
+// warehouse can be told to which run and task it belongs, like
+// "/* embulk-input-databricks job=2024-01-02T03:04:05Z task=0 tag=daily_orders */".
+//
+// The job is the transaction time of the run, which all its tasks share. The comment goes at the
+// end, where it does not hide the statement in the query history and does not get in the way of
+// anything that looks at the beginning of the query.
+public class QueryTag {
+  private final String comment;
+
+  public QueryTag(Instant transactionTime, int taskIndex, String tag) {
+    StringBuilder sb = new StringBuilder("/* embulk-input-databricks");
+    sb.append(" job=").append(transactionTime);
+    sb.append(" task=").append(taskIndex);
+    if (tag != null) {
+      sb.append(" tag=").append(sanitize(tag));
+    }
+    this.comment = sb.append(" */").toString();
+  }
+
+  public String getComment() {
+    return comment;
+  }
+
+  // The comment is on a line of its own, so that it is not swallowed by a -- comment at the end of
+  // the query. A trailing semicolon is dropped because the comment would come after the end of
+  // the statement.
+  public String append(String query) {
+    return RangeSplitter.stripTrailingSemicolon(query) + "\n" + comment;
+  }
+
+  // The tag must not end the comment nor start a nested one.
+  private static String sanitize(String tag) {
+    return tag.replace("*/", "* /").replace("/*", "/ *").replaceAll("[\\r\\n]+", " ");
+  }
+}
@@ -0,0 +1,136 @@
+package org.embulk.input.databricks;
+
+import java.math.BigInteger;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.embulk.input.jdbc.JdbcColumn;
+
+// Cuts the value range of split_column into contiguous predicates, one per task.
+//
+// Every kind of column is handled as a long so that the boundaries can be computed with plain
+// arithmetic: integers as is, DATE as days since epoch and TIMESTAMP as microseconds since epoch.
+// The first and the last range are open-ended, so rows inserted after MIN/MAX were fetched are
+// still read by some task, and NULLs are read by the first task.
+public class RangeSplitter {
+  public enum Kind {
+    INTEGER,
+    DATE,
+    TIMESTAMP
+  }
+
+  private final String quotedColumn;
+  private final Kind kind;
+
+  public RangeSplitter(String quotedColumn, Kind kind) {
+    this.quotedColumn = quotedColumn;
+    this.kind = kind;
+  }
+
+  public static Optional<Kind> kindOf(JdbcColumn column) {
+    switch (column.getSqlType()) {
+      case Types.TINYINT:
+      case Types.SMALLINT:
+      case Types.INTEGER:
+      case Types.BIGINT:
+        return Optional.of(Kind.INTEGER);
+      case Types.DATE:
+        return Optional.of(Kind.DATE);
+      case Types.TIMESTAMP:
+        return Optional.of(Kind.TIMESTAMP);
+      default:
+        return Optional.empty();
+    }
+  }
+
+  // https://docs.databricks.com/en/sql/language-manual/functions/unix_date.html
+  // https://docs.databricks.com/en/sql/language-manual/functions/unix_micros.html
+  public String buildRangeQuery(String rawQuery) {
+    String min = "MIN(" + quotedColumn + ")";
+    String max = "MAX(" + quotedColumn + ")";
+    switch (kind) {
+      case DATE:
+        min = "UNIX_DATE(" + min + ")";
+        max = "UNIX_DATE(" + max + ")";
+        break;
+      case TIMESTAMP:
+        min = "UNIX_MICROS(" + min + ")";
+        max = "UNIX_MICROS(" + max + ")";
+        break;
+      default:
+        break;
+    }
+    return String.format(
+        "SELECT %s, %s FROM (%s) embulk_split_range_", min, max, stripTrailingSemicolon(rawQuery));
+  }
+
+  public List<String> buildPredicates(long min, long max, int splitCount) {
+    List<Long> boundaries = buildBoundaries(min, max, splitCount);
+    List<String> predicates = new ArrayList<>();
+    if (boundaries.isEmpty()) {
+      return predicates;
+    }
+    predicates.add(
+        String.format(
+            "(%s < %s OR %s IS NULL)",
+            quotedColumn, toLiteral(boundaries.get(0)), quotedColumn));
+    for (int i = 1; i < boundaries.size(); i++) {
+      predicates.add(
+          String.format(
+              "%s >= %s AND %s < %s",
+              quotedColumn,
+              toLiteral(boundaries.get(i - 1)),
+              quotedColumn,
+              toLiteral(boundaries.get(i))));
+    }
+    predicates.add(
+        String.format(
+            "%s >= %s", quotedColumn, toLiteral(boundaries.get(boundaries.size() - 1))));
+    return predicates;
+  }
+
+  // Returns the splitCount - 1 inner boundaries of [min, max]. There are fewer boundaries if the
+  // range holds fewer distinct values than splitCount, and none at all if it cannot be split.
+  static List<Long> buildBoundaries(long min, long max, int splitCount) {
+    List<Long> boundaries = new ArrayList<>();
+    if (splitCount <= 1 || max <= min) {
+      return boundaries;
+    }
+    // max - min + 1 may overflow a long
+    BigInteger lower = BigInteger.valueOf(min);
+    BigInteger width = BigInteger.valueOf(max).subtract(lower).add(BigInteger.ONE);
+    BigInteger count = BigInteger.valueOf(splitCount);
+    long previous = min;
+    for (int i = 1; i < splitCount; i++) {
+      long boundary =
+          lower.add(width.multiply(BigInteger.valueOf(i)).divide(count)).longValueExact();
+      if (boundary > previous) {
+        boundaries.add(boundary);
+        previous = boundary;
+      }
+    }
+    return boundaries;
+  }
+
+  // https://docs.databricks.com/en/sql/language-manual/functions/date_from_unix_date.html
+  // https://docs.databricks.com/en/sql/language-manual/functions/timestamp_micros.html
+  private String toLiteral(long value) {
+    switch (kind) {
+      case DATE:
+        return "DATE_FROM_UNIX_DATE(" + value + ")";
+      case TIMESTAMP:
+        return "TIMESTAMP_MICROS(" + value + ")";
+      default:
+        return Long.toString(value);
+    }
+  }
+
+  public static String stripTrailingSemicolon(String query) {
+    String trimmed = query.trim();
+    while (trimmed.endsWith(";")) {
+      trimmed = trimmed.substring(0, trimmed.length() - 1).trim();
+    }
+    return trimmed;
+  }
+}
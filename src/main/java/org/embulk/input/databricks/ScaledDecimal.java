@@ -0,0 +1,101 @@
+package org.embulk.input.databricks;
+
+// Arithmetic on DECIMAL values of a precision up to 18 as a long of the unscaled value, which is
+// the value times 10^scale.
+//
+// The conversions return what BigDecimal.valueOf(unscaled, scale) would: longValue() truncates
+// toward zero, doubleValue() is the nearest double and toPlainString() has scale fractional digits.
+public class ScaledDecimal {
+  public static final int MAX_PRECISION = 18;
+
+  private static final long[] POWERS_OF_TEN = new long[MAX_PRECISION + 1];
+  private static final double[] DOUBLE_POWERS_OF_TEN = new double[MAX_PRECISION + 1];
+
+  static {
+    long power = 1;
+    for (int i = 0; i <= MAX_PRECISION; i++) {
+      POWERS_OF_TEN[i] = power;
+      DOUBLE_POWERS_OF_TEN[i] = power;
+      power *= 10;
+    }
+  }
+
+  private ScaledDecimal() {}
+
+  // Parses the plain text of a decimal, such as -12.5, into the unscaled value of the scale. Throws
+  // NumberFormatException for any other form, more fractional digits than scale or more than 18
+  // digits in total.
+  public static long parseUnscaled(String text, int scale) {
+    int length = text.length();
+    int i = 0;
+    boolean negative = false;
+    if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+      negative = text.charAt(0) == '-';
+      i++;
+    }
+    long unscaled = 0;
+    boolean hasDigit = false;
+    // Digits from the first non-zero one.
+    int digits = 0;
+    int fractionDigits = -1;
+    for (; i < length; i++) {
+      char c = text.charAt(i);
+      if (c == '.' && fractionDigits < 0) {
+        fractionDigits = 0;
+        continue;
+      }
+      if (c < '0' || c > '9') {
+        throw new NumberFormatException(text);
+      }
+      hasDigit = true;
+      if ((unscaled != 0 || c != '0') && ++digits > MAX_PRECISION) {
+        throw new NumberFormatException(text);
+      }
+      unscaled = unscaled * 10 + (c - '0');
+      if (fractionDigits >= 0) {
+        fractionDigits++;
+      }
+    }
+    fractionDigits = Math.max(fractionDigits, 0);
+    if (!hasDigit || fractionDigits > scale || digits + scale - fractionDigits > MAX_PRECISION) {
+      throw new NumberFormatException(text);
+    }
+    unscaled *= POWERS_OF_TEN[scale - fractionDigits];
+    return negative ? -unscaled : unscaled;
+  }
+
+  public static long toLong(long unscaled, int scale) {
+    return unscaled / POWERS_OF_TEN[scale];
+  }
+
+  public static double toDouble(long unscaled, int scale) {
+    // Both are exact as doubles below 2^53, so the division rounds to the nearest double once.
+    if (Math.abs(unscaled) < 1L << 53) {
+      return unscaled / DOUBLE_POWERS_OF_TEN[scale];
+    }
+    return Double.parseDouble(toPlainString(unscaled, scale));
+  }
+
+  public static String toPlainString(long unscaled, int scale) {
+    String digits = Long.toString(Math.abs(unscaled));
+    if (scale == 0) {
+      return unscaled < 0 ? "-" + digits : digits;
+    }
+    StringBuilder sb = new StringBuilder(digits.length() + scale + 3);
+    if (unscaled < 0) {
+      sb.append('-');
+    }
+    int integerDigits = digits.length() - scale;
+    if (integerDigits > 0) {
+      sb.append(digits, 0, integerDigits).append('.');
+      sb.append(digits, integerDigits, digits.length());
+    } else {
+      sb.append("0.");
+      for (int i = integerDigits; i < 0; i++) {
+        sb.append('0');
+      }
+      sb.append(digits);
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,116 @@
+package org.embulk.input.databricks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.embulk.input.jdbc.JdbcColumn;
+import org.embulk.input.jdbc.JdbcSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Keeps the schema of queries on a local directory, so that a run does not ask the warehouse for
+// the result set metadata of the same query again.
+//
+// An entry is keyed by the identity of the table and the query, and holds the Delta version of
+// the table it was read at. A lookup with another version misses, and the entry is overwritten.
+// The cache is only an optimization, so a broken or unwritable file is logged and ignored.
+public class SchemaCache {
+  private static final Logger logger = LoggerFactory.getLogger(SchemaCache.class);
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final Path directory;
+
+  public SchemaCache(Path directory) {
+    this.directory = directory;
+  }
+
+  public Optional<JdbcSchema> get(String key, long version) {
+    Path path = pathOf(key);
+    JsonNode entry;
+    try {
+      entry = MAPPER.readTree(Files.readAllBytes(path));
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (IOException e) {
+      logger.warn("Ignoring the unreadable schema cache {}.", path, e);
+      return Optional.empty();
+    }
+    if (entry == null
+        || !key.equals(entry.path("key").asText())
+        || entry.path("version").asLong(-1) != version) {
+      return Optional.empty();
+    }
+    List<JdbcColumn> columns = new ArrayList<>();
+    for (JsonNode column : entry.path("columns")) {
+      columns.add(
+          new JdbcColumn(
+              column.path("name").asText(),
+              column.path("type_name").asText(),
+              column.path("sql_type").asInt(),
+              column.path("precision").asInt(),
+              column.path("scale").asInt()));
+    }
+    return Optional.of(new JdbcSchema(columns));
+  }
+
+  public void put(String key, long version, JdbcSchema schema) {
+    ObjectNode entry = MAPPER.createObjectNode();
+    entry.put("key", key);
+    entry.put("version", version);
+    ArrayNode columns = entry.putArray("columns");
+    for (JdbcColumn column : schema.getColumns()) {
+      columns
+          .addObject()
+          .put("name", column.getName())
+          .put("type_name", column.getTypeName())
+          .put("sql_type", column.getSqlType())
+          .put("precision", column.getPrecision())
+          .put("scale", column.getScale());
+    }
+    Path path = pathOf(key);
+    try {
+      Files.createDirectories(directory);
+      // Written to a temporary file and moved, so that a concurrent run never reads half of it.
+      Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+      try {
+        Files.write(temp, MAPPER.writeValueAsBytes(entry));
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      logger.warn("Failed to write the schema cache {}.", path, e);
+    }
+  }
+
+  private Path pathOf(String key) {
+    return directory.resolve(sha256(key) + ".json");
+  }
+
+  private static String sha256(String value) {
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+      StringBuilder sb = new StringBuilder();
+      for (byte b : digest) {
+        sb.append(String.format("%02x", b));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,231 @@
+package org.embulk.input.databricks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.embulk.config.ConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Runs statements through the SQL Statement Execution API.
+//
+// Results are requested with the EXTERNAL_LINKS disposition, so the rows are not sent through
+// the API itself but are put on cloud storage as chunks, each of which can be downloaded with its
+// own presigned URL. That is what lets a large result be downloaded in parallel.
+// https://docs.databricks.com/en/dev-tools/sql-execution-tutorial.html
+public class StatementExecutionClient {
+  private static final Logger logger = LoggerFactory.getLogger(StatementExecutionClient.class);
+
+  private static final String STATEMENTS_PATH = "/api/2.0/sql/statements";
+  private static final Pattern WAREHOUSE_HTTP_PATH =
+      Pattern.compile("^/?sql/(?:1\\.0|protocolv1)/warehouses/([^/?]+)");
+
+  // The longest wait the API accepts. The statement keeps running after that and is polled.
+  private static final String WAIT_TIMEOUT = "50s";
+  private static final long MAX_POLL_INTERVAL_MILLIS = 5000L;
+
+  private final DatabricksApiClient api;
+  private final String warehouseId;
+  private final String catalog;
+  private final String schema;
+  private final long pollIntervalMillis;
+
+  public StatementExecutionClient(
+      DatabricksApiClient api,
+      String warehouseId,
+      String catalog,
+      String schema,
+      long pollIntervalMillis) {
+    this.api = api;
+    this.warehouseId = warehouseId;
+    this.catalog = catalog;
+    this.schema = schema;
+    this.pollIntervalMillis = pollIntervalMillis;
+  }
+
+  // The Statement Execution API runs on SQL warehouses only, whose http_path is like
+  // /sql/1.0/warehouses/<warehouse id>.
+  public static String warehouseIdOf(String httpPath) {
+    Matcher matcher = WAREHOUSE_HTTP_PATH.matcher(httpPath);
+    if (!matcher.find()) {
+      throw new ConfigException(
+          String.format(
+              "warehouse_id cannot be derived from http_path '%s'. Set warehouse_id.", httpPath));
+    }
+    return matcher.group(1);
+  }
+
+  // Runs the statement and waits for the result. format is ARROW_STREAM or CSV.
+  public StatementResult executeQuery(String statement, String format) throws IOException {
+    return execute(statement, "EXTERNAL_LINKS", format);
+  }
+
+  // Runs a statement whose result is not read, such as before_select.
+  public void executeUpdate(String statement) throws IOException {
+    execute(statement, "INLINE", "JSON_ARRAY");
+  }
+
+  // Returns the presigned URL of a chunk. URLs expire in a short while, so they are asked for
+  // right before the download rather than all at once.
+  public String getChunkLink(String statementId, int chunkIndex) throws IOException {
+    JsonNode response =
+        api.get(String.format("%s/%s/result/chunks/%d", STATEMENTS_PATH, statementId, chunkIndex));
+    for (JsonNode link : response.path("external_links")) {
+      if (link.path("chunk_index").asInt(-1) == chunkIndex) {
+        return link.path("external_link").asText();
+      }
+    }
+    throw new IOException(
+        String.format("Statement %s returned no link of chunk %d.", statementId, chunkIndex));
+  }
+
+  public byte[] downloadChunk(String statementId, int chunkIndex) throws IOException {
+    return api.downloadExternal(getChunkLink(statementId, chunkIndex));
+  }
+
+  private StatementResult execute(String statement, String disposition, String format)
+      throws IOException {
+    ObjectNode request = DatabricksApiClient.getObjectMapper().createObjectNode();
+    request.put("statement", statement);
+    request.put("warehouse_id", warehouseId);
+    if (catalog != null) {
+      request.put("catalog", catalog);
+    }
+    if (schema != null) {
+      request.put("schema", schema);
+    }
+    request.put("disposition", disposition);
+    request.put("format", format);
+    request.put("wait_timeout", WAIT_TIMEOUT);
+    request.put("on_wait_timeout", "CONTINUE");
+    logger.info("SQL: " + statement);
+
+    JsonNode response = api.post(STATEMENTS_PATH, request);
+    String statementId = response.path("statement_id").asText();
+    try {
+      response = waitForCompletion(statementId, response);
+    } catch (InterruptedIOException e) {
+      cancel(statementId);
+      throw e;
+    }
+    return StatementResult.of(statementId, response);
+  }
+
+  private JsonNode waitForCompletion(String statementId, JsonNode response) throws IOException {
+    long interval = pollIntervalMillis;
+    while (true) {
+      String state = response.path("status").path("state").asText();
+      switch (state) {
+        case "SUCCEEDED":
+          return response;
+        case "PENDING":
+        case "RUNNING":
+          break;
+        default:
+          throw new IOException(
+              String.format(
+                  "Statement %s is %s: %s",
+                  statementId,
+                  state,
+                  response.path("status").path("error").path("message").asText()));
+      }
+      try {
+        Thread.sleep(interval);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for statement " + statementId);
+      }
+      interval = Math.min(interval * 2, MAX_POLL_INTERVAL_MILLIS);
+      response = api.get(STATEMENTS_PATH + "/" + statementId);
+    }
+  }
+
+  private void cancel(String statementId) {
+    try {
+      api.post(
+          STATEMENTS_PATH + "/" + statementId + "/cancel",
+          DatabricksApiClient.getObjectMapper().createObjectNode());
+    } catch (IOException e) {
+      logger.warn("Failed to cancel statement {}.", statementId, e);
+    }
+  }
+
+  public static class StatementResult {
+    private final String statementId;
+    private final List<String> columnNames;
+    private final List<Chunk> chunks;
+    private final long totalRowCount;
+
+    public StatementResult(
+        String statementId, List<String> columnNames, List<Chunk> chunks, long totalRowCount) {
+      this.statementId = statementId;
+      this.columnNames = Collections.unmodifiableList(columnNames);
+      this.chunks = Collections.unmodifiableList(chunks);
+      this.totalRowCount = totalRowCount;
+    }
+
+    static StatementResult of(String statementId, JsonNode response) {
+      JsonNode manifest = response.path("manifest");
+      List<String> columnNames = new ArrayList<>();
+      for (JsonNode column : manifest.path("schema").path("columns")) {
+        columnNames.add(column.path("name").asText());
+      }
+      List<Chunk> chunks = new ArrayList<>();
+      for (JsonNode chunk : manifest.path("chunks")) {
+        chunks.add(
+            new Chunk(
+                chunk.path("chunk_index").asInt(),
+                chunk.path("row_count").asLong(),
+                chunk.path("byte_count").asLong()));
+      }
+      return new StatementResult(
+          statementId, columnNames, chunks, manifest.path("total_row_count").asLong());
+    }
+
+    public String getStatementId() {
+      return statementId;
+    }
+
+    public List<String> getColumnNames() {
+      return columnNames;
+    }
+
+    public List<Chunk> getChunks() {
+      return chunks;
+    }
+
+    public long getTotalRowCount() {
+      return totalRowCount;
+    }
+  }
+
+  public static class Chunk {
+    private final int index;
+    private final long rowCount;
+    private final long byteCount;
+
+    public Chunk(int index, long rowCount, long byteCount) {
+      this.index = index;
+      this.rowCount = rowCount;
+      this.byteCount = byteCount;
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    public long getRowCount() {
+      return rowCount;
+    }
+
+    public long getByteCount() {
+      return byteCount;
+    }
+  }
+}
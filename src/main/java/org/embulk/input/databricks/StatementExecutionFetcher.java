@@ -0,0 +1,99 @@
+package org.embulk.input.databricks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.embulk.input.databricks.StatementExecutionClient.StatementResult;
+import org.embulk.spi.DataException;
+import org.embulk.spi.PageBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Fetches the result of a query through the Statement Execution API into a PageBuilder.
+//
+// The chunks are downloaded in parallel by ChunkDownloader and decoded one by one in chunk order,
+// so the rows are written in the order of the result.
+public class StatementExecutionFetcher {
+  private static final Logger logger = LoggerFactory.getLogger(StatementExecutionFetcher.class);
+
+  public static final String FORMAT_ARROW_STREAM = "ARROW_STREAM";
+  public static final String FORMAT_CSV = "CSV";
+
+  private final StatementExecutionClient client;
+  private final String format;
+  private final int downloadThreads;
+  private final long downloadMemoryLimit;
+  private String statementId;
+
+  public StatementExecutionFetcher(
+      StatementExecutionClient client,
+      String format,
+      int downloadThreads,
+      long downloadMemoryLimit) {
+    this.client = client;
+    this.format = format;
+    this.downloadThreads = downloadThreads;
+    this.downloadMemoryLimit = downloadMemoryLimit;
+  }
+
+  // The ID of the statement of the last fetch, which is also its ID in the query history.
+  public String getStatementId() {
+    return statementId;
+  }
+
+  // Returns the number of rows.
+  public long fetch(String query, PageBuilder pageBuilder) throws IOException {
+    StatementResult result = client.executeQuery(query, format);
+    statementId = result.getStatementId();
+    logger.info(
+        "Statement {} returned {} rows in {} chunks.",
+        result.getStatementId(),
+        result.getTotalRowCount(),
+        result.getChunks().size());
+    long[] rows = {0};
+    try (ChunkDownloader downloader = new ChunkDownloader(downloadThreads, downloadMemoryLimit)) {
+      if (format.equals(FORMAT_ARROW_STREAM)) {
+        try (BufferAllocator allocator = new RootAllocator()) {
+          ArrowPageWriter writer =
+              new ArrowPageWriter(pageBuilder, pageBuilder.getSchema().getColumns());
+          downloader.download(
+              result.getChunks(),
+              chunk -> client.downloadChunk(result.getStatementId(), chunk.getIndex()),
+              (chunk, data) -> rows[0] += writeArrowChunk(writer, allocator, data));
+        }
+      } else {
+        CsvPageWriter writer =
+            new CsvPageWriter(
+                pageBuilder, pageBuilder.getSchema().getColumns(), result.getColumnNames());
+        downloader.download(
+            result.getChunks(),
+            chunk -> client.downloadChunk(result.getStatementId(), chunk.getIndex()),
+            (chunk, data) ->
+                rows[0] +=
+                    writer.write(
+                        new CsvChunkReader(
+                            new InputStreamReader(
+                                new ByteArrayInputStream(data), StandardCharsets.UTF_8)),
+                        chunk.getIndex() == 0));
+      }
+    }
+    return rows[0];
+  }
+
+  private static long writeArrowChunk(
+      ArrowPageWriter writer, BufferAllocator allocator, byte[] data) throws IOException {
+    try (ArrowStreamReader reader =
+        new ArrowStreamReader(new ByteArrayInputStream(data), allocator)) {
+      if (!writer.canWrite(reader.getVectorSchemaRoot())) {
+        throw new DataException(
+            "The Arrow result cannot be written into the input schema. Set statement_format: csv. "
+                + reader.getVectorSchemaRoot().getSchema());
+      }
+      return writer.write(reader);
+    }
+  }
+}
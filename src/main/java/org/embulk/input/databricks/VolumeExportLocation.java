@@ -0,0 +1,86 @@
+package org.embulk.input.databricks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// An export directory in a Unity Catalog volume, such as /Volumes/main/default/staging/xxx. The
+// files are listed, read and deleted through the Files API.
+// https://docs.databricks.com/api/workspace/files
+public class VolumeExportLocation implements ExportLocation {
+  private final DatabricksApiClient api;
+  private final String directory;
+
+  public VolumeExportLocation(DatabricksApiClient api, String directory) {
+    this.api = api;
+    this.directory =
+        directory.endsWith("/") ? directory.substring(0, directory.length() - 1) : directory;
+  }
+
+  @Override
+  public String getUri() {
+    return directory;
+  }
+
+  @Override
+  public List<String> listFiles() throws IOException {
+    List<String> files = new ArrayList<>();
+    for (JsonNode entry : listEntries()) {
+      String name = entry.path("name").asText();
+      if (!entry.path("is_directory").asBoolean()
+          && ExportLocation.isDataFile(name, entry.path("file_size").asLong())) {
+        files.add(name);
+      }
+    }
+    Collections.sort(files);
+    return files;
+  }
+
+  @Override
+  public InputStream open(String file) throws IOException {
+    return api.openStream("/api/2.0/fs/files" + encodePath(directory + "/" + file));
+  }
+
+  @Override
+  public void delete() throws IOException {
+    // A directory must be empty to be deleted, and _SUCCESS and the like are not in listFiles.
+    for (JsonNode entry : listEntries()) {
+      api.delete("/api/2.0/fs/files" + encodePath(entry.path("path").asText()));
+    }
+    api.delete("/api/2.0/fs/directories" + encodePath(directory));
+  }
+
+  private List<JsonNode> listEntries() throws IOException {
+    List<JsonNode> entries = new ArrayList<>();
+    String pageToken = "";
+    do {
+      String path = "/api/2.0/fs/directories" + encodePath(directory);
+      if (!pageToken.isEmpty()) {
+        path += "?page_token=" + URLEncoder.encode(pageToken, "UTF-8");
+      }
+      JsonNode response = api.get(path);
+      for (JsonNode entry : response.path("contents")) {
+        entries.add(entry);
+      }
+      pageToken = response.path("next_page_token").asText();
+    } while (!pageToken.isEmpty());
+    return entries;
+  }
+
+  // Encodes each segment of the path, leaving the slashes.
+  static String encodePath(String path) throws UnsupportedEncodingException {
+    StringBuilder encoded = new StringBuilder();
+    for (String segment : path.split("/")) {
+      if (segment.isEmpty()) {
+        continue;
+      }
+      encoded.append('/').append(URLEncoder.encode(segment, "UTF-8").replace("+", "%20"));
+    }
+    return encoded.toString();
+  }
+}
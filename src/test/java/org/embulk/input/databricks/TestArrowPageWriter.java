@@ -0,0 +1,125 @@
+package org.embulk.input.databricks;
+
+import static org.embulk.input.databricks.util.TestingEmbulkUtil.assertNameEquals;
+import static org.embulk.input.databricks.util.TestingEmbulkUtil.assertTypeEquals;
+import static org.embulk.test.EmbulkTests.readFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.TimeZone;
+import org.embulk.EmbulkSystemProperties;
+import org.embulk.config.ConfigSource;
+import org.embulk.formatter.csv.CsvFormatterPlugin;
+import org.embulk.input.databricks.util.ArrowFixtureInputPlugin;
+import org.embulk.input.databricks.util.ArrowFixtures;
+import org.embulk.output.file.LocalFileOutputPlugin;
+import org.embulk.spi.FileOutputPlugin;
+import org.embulk.spi.FormatterPlugin;
+import org.embulk.spi.InputPlugin;
+import org.embulk.test.TestingEmbulk;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestArrowPageWriter {
+  private static final EmbulkSystemProperties EMBULK_SYSTEM_PROPERTIES =
+      EmbulkSystemProperties.of(new Properties());
+
+  @Rule
+  public TestingEmbulk embulk =
+      TestingEmbulk.builder()
+          .setEmbulkSystemProperties(EMBULK_SYSTEM_PROPERTIES)
+          .registerPlugin(FormatterPlugin.class, "csv", CsvFormatterPlugin.class)
+          .registerPlugin(FileOutputPlugin.class, "file", LocalFileOutputPlugin.class)
+          .registerPlugin(InputPlugin.class, "arrow_fixture", ArrowFixtureInputPlugin.class)
+          .build();
+
+  @Test
+  public void testDefaultTypes() throws IOException {
+    Path fixture = embulk.createTempFile("arrow");
+    ArrowFixtures.writeAllTypes(fixture);
+    Path out = embulk.createTempFile("csv");
+    TestingEmbulk.RunResult runResult =
+        embulk.runInput(
+            embulk.newConfig().set("type", "arrow_fixture").set("path", fixture.toString()), out);
+    Assert.assertEquals(
+        "1,10,0.1,true,TEST0,12.34,2020-03-04 00:00:00.000000 +0000,2020-03-04 12:00:00.123456 +0000\n"
+            + "-9007199254740993,-10,-1.5,false,TEST1,-0.5,1969-12-31 00:00:00.000000 +0000,1969-12-31 23:59:59.999999 +0000\n"
+            + ",,,,,,,\n",
+        readFile(out));
+    assertNameEquals(
+        runResult.getInputSchema(),
+        "c_bigint",
+        "c_int",
+        "c_double",
+        "c_boolean",
+        "c_string",
+        "c_decimal",
+        "c_date",
+        "c_timestamp");
+    assertTypeEquals(
+        runResult.getInputSchema(),
+        "long",
+        "long",
+        "double",
+        "boolean",
+        "string",
+        "double",
+        "timestamp",
+        "timestamp");
+  }
+
+  @Test
+  public void testConvertedTypes() throws IOException {
+    Path fixture = embulk.createTempFile("arrow");
+    ArrowFixtures.writeAllTypes(fixture);
+    Path out = embulk.createTempFile("csv");
+    ConfigSource columnTypes =
+        embulk
+            .newConfig()
+            .set("c_bigint", "string")
+            .set("c_int", "double")
+            .set("c_double", "long")
+            .set("c_boolean", "string")
+            .set("c_decimal", "string");
+    embulk.runInput(
+        embulk
+            .newConfig()
+            .set("type", "arrow_fixture")
+            .set("path", fixture.toString())
+            .set("column_types", columnTypes),
+        out);
+    Assert.assertEquals(
+        "1,10.0,0,true,TEST0,12.34,2020-03-04 00:00:00.000000 +0000,2020-03-04 12:00:00.123456 +0000\n"
+            + "-9007199254740993,-10.0,-1,false,TEST1,-0.50,1969-12-31 00:00:00.000000 +0000,1969-12-31 23:59:59.999999 +0000\n"
+            + ",,,,,,,\n",
+        readFile(out));
+  }
+
+  // DATE and TIMESTAMP without a time zone are in the JVM time zone, and FLOAT is formatted as a
+  // float, as the default ColumnGetters do.
+  @Test
+  public void testLocalTypes() throws IOException {
+    Path fixture = embulk.createTempFile("arrow");
+    ArrowFixtures.writeLocalTypes(fixture);
+    Path out = embulk.createTempFile("csv");
+    TimeZone defaultTimeZone = TimeZone.getDefault();
+    TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+    try {
+      embulk.runInput(
+          embulk
+              .newConfig()
+              .set("type", "arrow_fixture")
+              .set("path", fixture.toString())
+              .set("column_types", embulk.newConfig().set("c_float", "string")),
+          out);
+    } finally {
+      TimeZone.setDefault(defaultTimeZone);
+    }
+    Assert.assertEquals(
+        "0.1,2020-03-03 15:00:00.000000 +0000,2020-03-04 03:00:00.123456 +0000,"
+            + "2020-03-04 12:00:00.123456 +0000\n",
+        readFile(out));
+  }
+}
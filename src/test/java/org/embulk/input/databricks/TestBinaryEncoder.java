@@ -0,0 +1,53 @@
+package org.embulk.input.databricks;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.Random;
+import org.embulk.spi.DataException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestBinaryEncoder {
+  @Test
+  public void testBase64() throws IOException {
+    BinaryEncoder encoder = new BinaryEncoder(BinaryEncoder.BASE64, 0);
+    Random random = new Random(0);
+    // Shorter values after longer ones, which reuse the buffers.
+    for (int length : new int[] {0, 1, 2, 3, 4, 5, 100_000, 8193, 7, 0}) {
+      byte[] value = new byte[length];
+      random.nextBytes(value);
+      Assert.assertEquals(
+          Base64.getEncoder().encodeToString(value), encoder.encode(oneByteAtATime(value)));
+    }
+  }
+
+  @Test
+  public void testHex() throws IOException {
+    BinaryEncoder encoder = new BinaryEncoder(BinaryEncoder.HEX, 0);
+    Assert.assertEquals(
+        "00017f80ff", encoder.encode(new ByteArrayInputStream(new byte[] {0, 1, 127, -128, -1})));
+    Assert.assertEquals("", encoder.encode(new ByteArrayInputStream(new byte[0])));
+  }
+
+  @Test
+  public void testMaxBytes() throws IOException {
+    BinaryEncoder encoder = new BinaryEncoder(BinaryEncoder.HEX, 3);
+    Assert.assertEquals("010203", encoder.encode(new ByteArrayInputStream(new byte[] {1, 2, 3})));
+    Assert.assertThrows(
+        DataException.class,
+        () -> encoder.encode(new ByteArrayInputStream(new byte[] {1, 2, 3, 4})));
+    Assert.assertEquals("0102", encoder.encode(new ByteArrayInputStream(new byte[] {1, 2})));
+  }
+
+  private static InputStream oneByteAtATime(byte[] value) {
+    return new FilterInputStream(new ByteArrayInputStream(value)) {
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        return super.read(b, off, Math.min(len, 1));
+      }
+    };
+  }
+}
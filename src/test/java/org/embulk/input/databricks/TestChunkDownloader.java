@@ -0,0 +1,109 @@
+package org.embulk.input.databricks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.embulk.input.databricks.StatementExecutionClient.Chunk;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestChunkDownloader {
+  @Test
+  public void testInOrder() throws IOException {
+    List<Chunk> chunks = chunks(10, 100L);
+    List<Integer> consumed = new ArrayList<>();
+    try (ChunkDownloader downloader = new ChunkDownloader(4, 1000L)) {
+      downloader.download(
+          chunks,
+          chunk -> {
+            // later chunks finish first
+            sleep(10L * (10 - chunk.getIndex()));
+            return new byte[] {(byte) chunk.getIndex()};
+          },
+          (chunk, data) -> {
+            Assert.assertEquals(chunk.getIndex(), data[0]);
+            consumed.add(chunk.getIndex());
+          });
+    }
+    Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), consumed);
+  }
+
+  @Test
+  public void testParallel() throws IOException {
+    // Every download waits until three downloads have started.
+    CountDownLatch started = new CountDownLatch(3);
+    try (ChunkDownloader downloader = new ChunkDownloader(3, 1000L)) {
+      downloader.download(
+          chunks(3, 100L),
+          chunk -> {
+            started.countDown();
+            try {
+              Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+              throw new IOException(e);
+            }
+            return new byte[0];
+          },
+          (chunk, data) -> {});
+    }
+  }
+
+  @Test
+  public void testMemoryLimit() throws IOException {
+    try (ChunkDownloader downloader = new ChunkDownloader(4, 250L)) {
+      downloader.download(chunks(10, 100L), chunk -> new byte[0], (chunk, data) -> {});
+      Assert.assertEquals(200L, downloader.getPeakHeldBytes());
+    }
+  }
+
+  @Test
+  public void testChunkLargerThanMemoryLimit() throws IOException {
+    List<Integer> consumed = new ArrayList<>();
+    try (ChunkDownloader downloader = new ChunkDownloader(4, 50L)) {
+      downloader.download(
+          chunks(3, 100L), chunk -> new byte[0], (chunk, data) -> consumed.add(chunk.getIndex()));
+      Assert.assertEquals(100L, downloader.getPeakHeldBytes());
+    }
+    Assert.assertEquals(Arrays.asList(0, 1, 2), consumed);
+  }
+
+  @Test
+  public void testDownloadError() {
+    try (ChunkDownloader downloader = new ChunkDownloader(2, 1000L)) {
+      IOException e =
+          Assert.assertThrows(
+              IOException.class,
+              () ->
+                  downloader.download(
+                      chunks(3, 100L),
+                      chunk -> {
+                        if (chunk.getIndex() == 1) {
+                          throw new IOException("expired");
+                        }
+                        return new byte[0];
+                      },
+                      (chunk, data) -> {}));
+      Assert.assertEquals("expired", e.getMessage());
+    }
+  }
+
+  private static List<Chunk> chunks(int count, long byteCount) {
+    List<Chunk> chunks = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      chunks.add(new Chunk(i, 1L, byteCount));
+    }
+    return Collections.unmodifiableList(chunks);
+  }
+
+  private static void sleep(long millis) throws IOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+  }
+}
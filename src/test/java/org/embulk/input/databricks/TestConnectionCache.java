@@ -0,0 +1,115 @@
+package org.embulk.input.databricks;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestConnectionCache {
+  private final AtomicLong now = new AtomicLong();
+  private final ConnectionCache cache = new ConnectionCache(now::get);
+
+  @Test
+  public void testReuse() {
+    FakeConnection connection = new FakeConnection(true);
+    cache.release(key("cat", "sch"), connection.proxy, 60000);
+    Assert.assertEquals(connection.proxy, cache.acquire(key("cat", "sch")).get());
+    Assert.assertFalse(cache.acquire(key("cat", "sch")).isPresent());
+    Assert.assertFalse(connection.closed.get());
+  }
+
+  @Test
+  public void testDifferentKey() {
+    FakeConnection connection = new FakeConnection(true);
+    cache.release(key("cat", "sch"), connection.proxy, 60000);
+    Assert.assertFalse(cache.acquire(key("cat", "other")).isPresent());
+    Assert.assertFalse(cache.acquire(key(null, "sch")).isPresent());
+    Properties props = new Properties();
+    props.put("PWD", "other-token");
+    Assert.assertFalse(
+        cache.acquire(new ConnectionCache.Key("host", "/path", "cat", "sch", props)).isPresent());
+    Assert.assertTrue(cache.acquire(key("cat", "sch")).isPresent());
+  }
+
+  @Test
+  public void testInvalidConnection() {
+    FakeConnection connection = new FakeConnection(false);
+    cache.release(key("cat", "sch"), connection.proxy, 60000);
+    Assert.assertFalse(cache.acquire(key("cat", "sch")).isPresent());
+    Assert.assertTrue(connection.closed.get());
+  }
+
+  @Test
+  public void testIdleEviction() {
+    FakeConnection expired = new FakeConnection(true);
+    FakeConnection alive = new FakeConnection(true);
+    cache.release(key("cat", "sch"), expired.proxy, 1000);
+    now.set(500);
+    cache.release(key("cat", "sch"), alive.proxy, 1000);
+    now.set(1000);
+    cache.evictExpired();
+    Assert.assertTrue(expired.closed.get());
+    Assert.assertFalse(alive.closed.get());
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(alive.proxy, cache.acquire(key("cat", "sch")).get());
+  }
+
+  @Test
+  public void testNoIdleTimeout() {
+    FakeConnection connection = new FakeConnection(true);
+    cache.release(key("cat", "sch"), connection.proxy, 0);
+    Assert.assertTrue(connection.closed.get());
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testCloseAll() {
+    FakeConnection first = new FakeConnection(true);
+    FakeConnection second = new FakeConnection(true);
+    cache.release(key("cat", "sch"), first.proxy, 60000);
+    cache.release(key("cat", "other"), second.proxy, 60000);
+    cache.closeAll();
+    Assert.assertTrue(first.closed.get());
+    Assert.assertTrue(second.closed.get());
+    Assert.assertEquals(0, cache.size());
+  }
+
+  private static ConnectionCache.Key key(String catalog, String schema) {
+    Properties props = new Properties();
+    props.put("PWD", "token");
+    return new ConnectionCache.Key("host", "/path", catalog, schema, props);
+  }
+
+  private static class FakeConnection {
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Connection proxy;
+
+    private FakeConnection(boolean valid) {
+      proxy =
+          (Connection)
+              Proxy.newProxyInstance(
+                  Connection.class.getClassLoader(),
+                  new Class<?>[] {Connection.class},
+                  (p, method, args) -> {
+                    switch (method.getName()) {
+                      case "isValid":
+                        return valid;
+                      case "isClosed":
+                        return closed.get();
+                      case "close":
+                        closed.set(true);
+                        return null;
+                      case "equals":
+                        return p == args[0];
+                      case "hashCode":
+                        return System.identityHashCode(p);
+                      default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                  });
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package org.embulk.input.databricks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Instant;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCsvChunkReader {
+  @Test
+  public void testNullAndEmpty() throws IOException {
+    CsvChunkReader reader = new CsvChunkReader(new StringReader(",\"\",null,\"null\"\n"));
+    // null is left to CsvPageWriter, which knows the type of the column.
+    Assert.assertArrayEquals(new String[] {null, "", "null", "null"}, reader.nextRecord());
+    Assert.assertNull(reader.nextRecord());
+  }
+
+  @Test
+  public void testQuoted() throws IOException {
+    CsvChunkReader reader =
+        new CsvChunkReader(new StringReader("\"a,b\",\"c\"\"d\",\"e\r\nf\"\r\n1,2,3"));
+    Assert.assertArrayEquals(new String[] {"a,b", "c\"d", "e\r\nf"}, reader.nextRecord());
+    Assert.assertArrayEquals(new String[] {"1", "2", "3"}, reader.nextRecord());
+    Assert.assertNull(reader.nextRecord());
+  }
+
+  @Test
+  public void testUnterminatedQuote() {
+    CsvChunkReader reader = new CsvChunkReader(new StringReader("\"abc\n"));
+    Assert.assertThrows(IOException.class, reader::nextRecord);
+  }
+
+  @Test
+  public void testParseTimestamp() {
+    Assert.assertEquals(
+        Instant.parse("2020-03-04T00:00:00Z"), CsvPageWriter.parseTimestamp("2020-03-04"));
+    Assert.assertEquals(
+        Instant.parse("2020-03-04T03:00:00.123Z"),
+        CsvPageWriter.parseTimestamp("2020-03-04T12:00:00.123+09:00"));
+    Assert.assertEquals(
+        Instant.parse("2020-03-04T12:00:00.123456Z"),
+        CsvPageWriter.parseTimestamp("2020-03-04 12:00:00.123456"));
+  }
+}
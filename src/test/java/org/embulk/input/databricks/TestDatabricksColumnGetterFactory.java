@@ -0,0 +1,63 @@
+package org.embulk.input.databricks;
+
+import static org.embulk.test.EmbulkTests.readFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+import org.embulk.EmbulkSystemProperties;
+import org.embulk.config.ConfigSource;
+import org.embulk.formatter.csv.CsvFormatterPlugin;
+import org.embulk.input.databricks.util.ColumnGetterFixtureInputPlugin;
+import org.embulk.output.file.LocalFileOutputPlugin;
+import org.embulk.spi.FileOutputPlugin;
+import org.embulk.spi.FormatterPlugin;
+import org.embulk.spi.InputPlugin;
+import org.embulk.test.TestingEmbulk;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestDatabricksColumnGetterFactory {
+  private static final EmbulkSystemProperties EMBULK_SYSTEM_PROPERTIES =
+      EmbulkSystemProperties.of(new Properties());
+
+  @Rule
+  public TestingEmbulk embulk =
+      TestingEmbulk.builder()
+          .setEmbulkSystemProperties(EMBULK_SYSTEM_PROPERTIES)
+          .registerPlugin(FormatterPlugin.class, "csv", CsvFormatterPlugin.class)
+          .registerPlugin(FileOutputPlugin.class, "file", LocalFileOutputPlugin.class)
+          .registerPlugin(
+              InputPlugin.class, "column_getter_fixture", ColumnGetterFixtureInputPlugin.class)
+          .build();
+
+  @Test
+  public void testSameValuesAsDefaultGetters() throws IOException {
+    String expected = run("databricks", 20);
+    Assert.assertTrue(
+        expected.startsWith(
+            "0,0,0,0,0.0,0.0,true,1970-01-01 00:00:00.000000 +0000,"
+                + "1970-01-01 00:00:00.000000 +0000,0.05\n"
+                + "1000000007,1,1,1,0.5,0.25,false,1970-01-02 00:00:00.000000 +0000,"
+                + "1970-01-01 00:00:01.500001 +0000,12.39\n"
+                + "2000000014,2,2,2,1.0,0.5,true,1970-01-03 00:00:00.000000 +0000,"
+                + "1970-01-01 00:00:03.000002 +0000,24.73\n"));
+    Assert.assertTrue(expected.contains("\n,,,,,,,,,\n"));
+    Assert.assertEquals(expected, run("default", 20));
+  }
+
+  private String run(String factory, int rows) throws IOException {
+    Path out = embulk.createTempFile("csv");
+    embulk.runInput(config(factory, rows), out);
+    return readFile(out);
+  }
+
+  private ConfigSource config(String factory, int rows) {
+    return embulk
+        .newConfig()
+        .set("type", "column_getter_fixture")
+        .set("factory", factory)
+        .set("rows", rows);
+  }
+}
@@ -6,7 +6,6 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.sql.SQLException;
 import org.embulk.config.ConfigSource;
-import org.embulk.exec.PartialExecutionException;
 import org.embulk.input.databricks.util.ConfigUtil;
 import org.embulk.input.databricks.util.ConnectionUtil;
 import org.embulk.input.databricks.util.TestingEmbulkUtil;
@@ -15,19 +14,20 @@ import org.junit.Assert;
 import org.junit.Test;
 
 public class TestDatabricksInputPluginWithAbnormalType extends AbstractTestDatabricksInputPlugin {
-  // embulk-input-jdbc does not support binary type.
+  // BINARY is loaded into a string column, encoded as base64 by default.
   @Test
-  public void testBinary() {
-    ConfigSource configSource = ConfigUtil.createPluginConfigSourceByQuery("select X'1ABF'");
-    PartialExecutionException e =
-        Assert.assertThrows(
-            PartialExecutionException.class,
-            () -> embulk.runInput(configSource, embulk.createTempFile("csv")));
-    Assert.assertTrue(e.getCause() instanceof java.lang.UnsupportedOperationException);
+  public void testBinary() throws IOException {
+    ConfigSource configSource =
+        ConfigUtil.createPluginConfigSourceByQuery("select X'1ABF' as bin");
+    Path out = embulk.createTempFile("csv");
+    TestingEmbulk.RunResult runResult = embulk.runInput(configSource, out);
+    Assert.assertEquals("Gr8=\n", readFile(out));
+    TestingEmbulkUtil.assertNameEquals(runResult.getInputSchema(), "bin");
+    TestingEmbulkUtil.assertTypeEquals(runResult.getInputSchema(), "string");
   }
 
   @Test
-  public void testBinaryWithTable() {
+  public void testBinaryWithTable() throws IOException {
     String tableName = ConfigUtil.createRandomTableName();
     String quotedFullTableName = ConfigUtil.createQuotedFullTableName(tableName);
     ConnectionUtil.run(
@@ -35,12 +35,13 @@ public class TestDatabricksInputPluginWithAbnormalType extends AbstractTestDatab
         String.format("INSERT INTO %s VALUES (X'1ABF')", quotedFullTableName));
     ConfigSource configSource =
         ConfigUtil.createPluginConfigSourceByQuery(
-            String.format("select _c0 from %s", quotedFullTableName));
-    PartialExecutionException e =
-        Assert.assertThrows(
-            PartialExecutionException.class,
-            () -> embulk.runInput(configSource, embulk.createTempFile("csv")));
-    Assert.assertTrue(e.getCause() instanceof java.lang.UnsupportedOperationException);
+                String.format("select _c0 from %s", quotedFullTableName))
+            .set("binary_encoding", "hex");
+    Path out = embulk.createTempFile("csv");
+    TestingEmbulk.RunResult runResult = embulk.runInput(configSource, out);
+    Assert.assertEquals("1abf\n", readFile(out));
+    TestingEmbulkUtil.assertNameEquals(runResult.getInputSchema(), "_c0");
+    TestingEmbulkUtil.assertTypeEquals(runResult.getInputSchema(), "string");
   }
 
   // Delta Lake does not support the INTERVAL type.
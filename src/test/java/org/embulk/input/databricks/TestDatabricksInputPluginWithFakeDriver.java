@@ -0,0 +1,333 @@
+package org.embulk.input.databricks;
+
+import static org.embulk.input.databricks.util.TestingEmbulkUtil.assertNameEquals;
+import static org.embulk.input.databricks.util.TestingEmbulkUtil.assertTypeEquals;
+import static org.embulk.test.EmbulkTests.readFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
+import org.embulk.exec.PartialExecutionException;
+import org.embulk.input.databricks.util.FakeDatabricksDriver;
+import org.embulk.input.databricks.util.FakeStatementExecutionServer;
+import org.embulk.test.TestingEmbulk;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+// Runs the plugin against FakeDatabricksDriver, without a workspace.
+public class TestDatabricksInputPluginWithFakeDriver extends AbstractTestDatabricksInputPlugin {
+  @Before
+  public void setUpDriver() {
+    FakeDatabricksDriver.register();
+    FakeDatabricksDriver.clearStatements();
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    Path out = embulk.createTempFile("csv");
+    TestingEmbulk.RunResult runResult =
+        embulk.runInput(
+            config("BIGINT,STRING,TIMESTAMP", 20).set("table", "t").set("query_comment", true),
+            out);
+    String csv = readFile(out);
+    Assert.assertTrue(
+        csv.startsWith(
+            "0,abcd,1970-01-01 00:00:00.000000 +0000\n"
+                + "1000000007,bcde,1970-01-01 00:00:01.500001 +0000\n"));
+    Assert.assertEquals(20, csv.split("\n").length);
+    assertNameEquals(runResult.getInputSchema(), "c0", "c1", "c2");
+    assertTypeEquals(runResult.getInputSchema(), "long", "string", "timestamp");
+    assertRan("SELECT * FROM `t`\n/* embulk-input-databricks job=", " task=0 */");
+  }
+
+  @Test
+  public void testTypes() throws IOException {
+    Path out = embulk.createTempFile("csv");
+    TestingEmbulk.RunResult runResult =
+        embulk.runInput(
+            config("INT,DOUBLE,BOOLEAN,DATE,DECIMAL(18,2),BINARY", 2).set("table", "t"), out);
+    Assert.assertEquals(
+        "0,0.0,true,1970-01-01 00:00:00.000000 +0000,0.05,YWJjZA==\n"
+            + "1,0.5,false,1970-01-02 00:00:00.000000 +0000,12.39,YmNkZQ==\n",
+        readFile(out));
+    assertTypeEquals(
+        runResult.getInputSchema(), "long", "double", "boolean", "timestamp", "double", "string");
+  }
+
+  // TIMESTAMP_NTZ is a timestamp column, as the baseline read it, of the wall clock time in the
+  // time zone of the JVM, which is UTC in the tests.
+  @Test
+  public void testTimestampNtz() throws IOException {
+    Path out = embulk.createTempFile("csv");
+    TestingEmbulk.RunResult runResult =
+        embulk.runInput(config("BIGINT,TIMESTAMP_NTZ", 2).set("table", "t"), out);
+    Assert.assertEquals(
+        "0,1970-01-01 00:00:00.000000 +0000\n1000000007,1970-01-01 00:00:01.500001 +0000\n",
+        readFile(out));
+    assertTypeEquals(runResult.getInputSchema(), "long", "timestamp");
+  }
+
+  // The session is opened on ConnSchema of options, so USE SCHEMA moves it to schema_name.
+  @Test
+  public void testUseSchema() throws IOException {
+    Map<String, String> options = options("BIGINT", 1);
+    options.put("ConnSchema", "other");
+    ConfigSource config =
+        config("BIGINT", 1)
+            .set("options", options)
+            .set("catalog_name", "main")
+            .set("schema_name", "s1")
+            .set("connection_cache", false)
+            .set("query", "SELECT * FROM t");
+    embulk.runInput(config, embulk.createTempFile("csv"));
+    Assert.assertTrue(FakeDatabricksDriver.getStatements().contains("USE SCHEMA `main`.`s1`"));
+  }
+
+  @Test
+  public void testMillionRows() throws IOException {
+    TestingEmbulk.RunResult runResult =
+        embulk.runInput(
+            config("BIGINT", 1_000_000).set("table", "t"), embulk.createTempFile("csv"));
+    Assert.assertEquals(
+        1_000_000L, (long) runResult.getInputTaskReports().get(0).get(Long.class, "rows"));
+  }
+
+  @Test
+  public void testMetrics() throws IOException {
+    Path metrics = embulk.createTempFile("txt");
+    TestingEmbulk.RunResult runResult =
+        embulk.runInput(
+            config("BIGINT,STRING", 20).set("table", "t").set("metrics_file", metrics.toString()),
+            embulk.createTempFile("csv"));
+    TaskReport report = runResult.getInputTaskReports().get(0);
+    for (String key : new String[] {"connect_ms", "first_row_ms", "next_ms", "getter_ms"}) {
+      Assert.assertTrue(key, report.get(Long.class, key) >= 0);
+    }
+    Assert.assertTrue(report.get(Long.class, "page_bytes") > 0);
+    String text = readFile(metrics);
+    Assert.assertTrue(text.contains("embulk_input_databricks_rows_total{task=\"0\"} 20\n"));
+    Assert.assertTrue(text.endsWith("# EOF\n"));
+  }
+
+  @Test
+  public void testFetchMemoryBudget() throws IOException {
+    TestingEmbulk.RunResult runResult =
+        embulk.runInput(
+            config("BIGINT,STRING", 5000).set("table", "t").set("fetch_memory_budget", 1 << 20),
+            embulk.createTempFile("csv"));
+    TaskReport report = runResult.getInputTaskReports().get(0);
+    Assert.assertEquals(5000L, (long) report.get(Long.class, "rows"));
+    Assert.assertEquals(100L, (long) report.get(Long.class, "fetch_size_min"));
+  }
+
+  // The rows go through PagePrefetcher in the same order as without prefetch.
+  @Test
+  public void testPrefetch() throws IOException {
+    Path expected = embulk.createTempFile("csv");
+    embulk.runInput(config("BIGINT,STRING", 50_000).set("table", "t"), expected);
+    Path out = embulk.createTempFile("csv");
+    TestingEmbulk.RunResult runResult =
+        embulk.runInput(
+            config("BIGINT,STRING", 50_000)
+                .set("table", "t")
+                .set("prefetch", true)
+                // A single page at a time, so both sides wait for each other many times.
+                .set("prefetch_queue_bytes", 1),
+            out);
+    Assert.assertEquals(readFile(expected), readFile(out));
+    TaskReport report = runResult.getInputTaskReports().get(0);
+    Assert.assertEquals(50_000L, (long) report.get(Long.class, "rows"));
+    Assert.assertTrue(report.get(Long.class, "prefetch_fetch_stall_ms") >= 0);
+    Assert.assertTrue(report.get(Long.class, "prefetch_output_stall_ms") >= 0);
+  }
+
+  @Test
+  public void testPrefetchNoRows() throws IOException {
+    Path out = embulk.createTempFile("csv");
+    embulk.runInput(config("BIGINT,STRING", 0).set("table", "t").set("prefetch", true), out);
+    Assert.assertEquals("", readFile(out));
+  }
+
+  // The failure of the fetch thread fails the task.
+  @Test
+  public void testPrefetchFetchFailure() {
+    Map<String, String> options = options("BIGINT,STRING", 50_000);
+    options.put("FakeFailAtRow", "25000");
+    PartialExecutionException e =
+        Assert.assertThrows(
+            PartialExecutionException.class,
+            () ->
+                embulk.runInput(
+                    config("BIGINT,STRING", 50_000)
+                        .set("table", "t")
+                        .set("prefetch", true)
+                        .set("prefetch_queue_bytes", 1)
+                        .set("options", options),
+                    embulk.createTempFile("csv")));
+    Assert.assertTrue(e.getCause().getCause() instanceof SQLException);
+  }
+
+  @Test
+  public void testLargeValues() throws IOException {
+    Path out = embulk.createTempFile("csv");
+    TestingEmbulk.RunResult runResult =
+        embulk.runInput(
+            config("BIGINT,STRING", 20)
+                .set("table", "t")
+                .set("large_value_max_chars", 3)
+                .set("large_value_policy", "truncate"),
+            out);
+    Assert.assertTrue(readFile(out).startsWith("0,abc\n1000000007,bcd\n"));
+    TaskReport report = runResult.getInputTaskReports().get(0);
+    // Every tenth row is NULL.
+    Assert.assertEquals(18L, (long) report.get(Long.class, "truncated_values"));
+    Assert.assertEquals(0L, (long) report.get(Long.class, "skipped_values"));
+  }
+
+  @Test
+  public void testQueryHistory() throws IOException {
+    try (FakeStatementExecutionServer server =
+        new FakeStatementExecutionServer(
+            Collections.<byte[]>emptyList(), Collections.<String>emptyList())) {
+      TestingEmbulk.RunResult runResult =
+          embulk.runInput(
+              config("BIGINT", 20)
+                  .set("table", "t")
+                  .set("api_endpoint", server.getEndpoint())
+                  .set("query_comment", true)
+                  .set("query_tag", "daily_t")
+                  .set("query_history_metrics", true),
+              embulk.createTempFile("csv"));
+      TaskReport report = runResult.getInputTaskReports().get(0);
+      Assert.assertEquals(FakeDatabricksDriver.QUERY_ID, report.get(String.class, "query_id"));
+      Assert.assertEquals(20L, (long) report.get(Long.class, "server_rows_produced"));
+      Assert.assertEquals(100L, (long) report.get(Long.class, "server_queue_ms"));
+      Assert.assertEquals(600L, (long) report.get(Long.class, "server_total_ms"));
+    }
+    assertRan("SELECT * FROM `t`\n/* embulk-input-databricks job=", " task=0 tag=daily_t */");
+  }
+
+  // The version is given, so the history of the table is not read.
+  @Test
+  public void testSnapshotVersion() throws IOException {
+    embulk.runInput(
+        config("BIGINT", 1)
+            .set("table", "t")
+            .set("snapshot_version", 5)
+            .set("schema_cache", true)
+            .set("schema_cache_directory", embulk.createTempDir().toString()),
+        embulk.createTempFile("csv"));
+    assertRan("SELECT * FROM `t` VERSION AS OF 5", "");
+    for (String statement : FakeDatabricksDriver.getStatements()) {
+      Assert.assertFalse(statement, statement.startsWith("DESCRIBE HISTORY"));
+    }
+  }
+
+  @Test
+  public void testNoQueryComment() throws IOException {
+    embulk.runInput(config("BIGINT", 1).set("table", "t"), embulk.createTempFile("csv"));
+    Assert.assertTrue(FakeDatabricksDriver.getStatements().contains("SELECT * FROM `t`"));
+  }
+
+  @Test
+  public void testSplitWithRawQueryIncremental() {
+    ConfigSource config =
+        config("BIGINT", 20)
+            .set("query", "SELECT * FROM t WHERE c0 > :c0")
+            .set("incremental", true)
+            .set("incremental_columns", new String[] {"c0"})
+            .set("use_raw_query_with_incremental", true)
+            .set("last_record", new Long[] {1L})
+            .set("split_count", 2)
+            .set("split_mode", "hash")
+            .set("split_hash_columns", new String[] {"c0"});
+    PartialExecutionException e =
+        Assert.assertThrows(
+            PartialExecutionException.class,
+            () -> embulk.runInput(config, embulk.createTempFile("csv")));
+    Assert.assertTrue(e.getCause() instanceof ConfigException);
+    Assert.assertTrue(FakeDatabricksDriver.getStatements().isEmpty());
+  }
+
+  @Test
+  public void testHashSplitWithoutColumns() {
+    assertConfigError(
+        config("BIGINT,STRING", 20)
+            .set("table", "t")
+            .set("split_count", 2)
+            .set("split_mode", "hash"));
+  }
+
+  @Test
+  public void testHashSplitByMap() {
+    assertConfigError(
+        config("BIGINT,MAP<STRING,INT>", 20)
+            .set("table", "t")
+            .set("split_count", 2)
+            .set("split_mode", "hash")
+            .set("split_hash_columns", new String[] {"c0", "c1"}));
+  }
+
+  @Test
+  public void testExportComplexType() {
+    ConfigSource config =
+        config("BIGINT,ARRAY<INT>", 20)
+            .set("table", "t")
+            .set("fetch_mode", "export")
+            .set("export_location", "file:/tmp/embulk-export");
+    PartialExecutionException e =
+        Assert.assertThrows(
+            PartialExecutionException.class,
+            () -> embulk.runInput(config, embulk.createTempFile("csv")));
+    Assert.assertTrue(e.getCause() instanceof ConfigException);
+    for (String statement : FakeDatabricksDriver.getStatements()) {
+      Assert.assertFalse(statement, statement.startsWith("INSERT OVERWRITE DIRECTORY"));
+    }
+  }
+
+  private void assertConfigError(ConfigSource config) {
+    PartialExecutionException e =
+        Assert.assertThrows(
+            PartialExecutionException.class,
+            () -> embulk.runInput(config, embulk.createTempFile("csv")));
+    Assert.assertTrue(e.getCause() instanceof ConfigException);
+  }
+
+  private static void assertRan(String prefix, String suffix) {
+    for (String statement : FakeDatabricksDriver.getStatements()) {
+      if (statement.startsWith(prefix) && statement.endsWith(suffix)) {
+        return;
+      }
+    }
+    Assert.fail(
+        String.format(
+            "No statement like %s...%s in %s",
+            prefix, suffix, FakeDatabricksDriver.getStatements()));
+  }
+
+  private ConfigSource config(String types, long rows) {
+    return embulk
+        .newConfig()
+        .set("type", "databricks")
+        .set("url", FakeDatabricksDriver.URL_PREFIX + "//localhost")
+        .set("server_hostname", "localhost")
+        .set("http_path", "/sql/1.0/warehouses/fake")
+        .set("personal_access_token", "fake-token")
+        .set("options", options(types, rows));
+  }
+
+  private static Map<String, String> options(String types, long rows) {
+    Map<String, String> options = new HashMap<>();
+    options.put("FakeTypes", types);
+    options.put("FakeRows", Long.toString(rows));
+    options.put("FakeWidth", "4");
+    return options;
+  }
+}
@@ -5,8 +5,10 @@ import static org.embulk.input.databricks.util.TestingEmbulkUtil.assertTypeEqual
 import static org.embulk.test.EmbulkTests.readFile;
 import static org.junit.Assert.assertTrue;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Arrays;
 import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
 import org.embulk.exec.PartialExecutionException;
@@ -14,7 +16,6 @@ import org.embulk.input.databricks.util.ConfigUtil;
 import org.embulk.input.databricks.util.ConnectionUtil;
 import org.embulk.test.TestingEmbulk;
 import org.junit.Assert;
-import org.junit.Ignore;
 import org.junit.Test;
 
 public class TestDatabricksInputPluginWithIncremental extends AbstractTestDatabricksInputPlugin {
@@ -59,9 +60,33 @@ public class TestDatabricksInputPluginWithIncremental extends AbstractTestDatabr
     assertTypeEquals(runResult.getInputSchema(), "long", "string");
   }
 
-  // If use_raw_query_with_incremental option is supported, remove @Ignore.
   @Test
-  @Ignore
+  public void testLastRecordUnordered() throws IOException {
+    String tableName = ConfigUtil.createRandomTableName();
+    String quotedFullTableName = ConfigUtil.createQuotedFullTableName(tableName);
+    ConnectionUtil.run(
+        String.format("create table %s (_c0 LONG PRIMARY KEY, _c1 STRING)", quotedFullTableName),
+        String.format(
+            "INSERT INTO %s VALUES (1,'TEST0'), (3, 'TEST2'), (2, 'TEST0'), (2, 'TEST1')",
+            quotedFullTableName));
+    Path out = embulk.createTempFile("csv");
+    ConfigSource configSource =
+        ConfigUtil.createPluginConfigSourceByTable(tableName)
+            .set("incremental", true)
+            .set("incremental_mode", "last_record_unordered")
+            .set("incremental_columns", new String[] {"_c0", "_c1"})
+            .set("last_record", new String[] {"1", "TEST0"});
+    TestingEmbulk.RunResult runResult = embulk.runInput(configSource, out);
+    // The rows are not sorted.
+    String[] lines = readFile(out).split("\n");
+    Arrays.sort(lines);
+    Assert.assertArrayEquals(new String[] {"2,TEST0", "2,TEST1", "3,TEST2"}, lines);
+    Assert.assertEquals(
+        "[3,\"TEST2\"]",
+        runResult.getConfigDiff().getNested("in").get(JsonNode.class, "last_record").toString());
+  }
+
+  @Test
   public void testUseRawQueryWithIncremental() throws IOException {
     String quotedFullTableName = ConfigUtil.createRandomQuotedFullTableName();
     ConnectionUtil.run(
@@ -90,24 +115,16 @@ public class TestDatabricksInputPluginWithIncremental extends AbstractTestDatabr
   }
 
   @Test
-  public void testUseRawQueryWithIncrementalNotImplementation() throws IOException {
+  public void testUseRawQueryWithIncrementalNoLastRecord() {
     String quotedFullTableName = ConfigUtil.createRandomQuotedFullTableName();
     ConnectionUtil.run(
         String.format("create table %s (_c0 LONG PRIMARY KEY, _c1 STRING)", quotedFullTableName));
-    Path out = embulk.createTempFile("csv");
-
     ConfigSource configSource =
         ConfigUtil.createPluginConfigSourceByQuery(
-                String.format(
-                    "select %s._c0 as x from %s where %s._c0 > :x AND %s._c1 != 'T2'",
-                    quotedFullTableName,
-                    quotedFullTableName,
-                    quotedFullTableName,
-                    quotedFullTableName))
+                String.format("select _c0 as x from %s where _c0 > :x", quotedFullTableName))
             .set("incremental", true)
             .set("incremental_columns", new String[] {"x"})
-            .set("use_raw_query_with_incremental", true)
-            .set("last_record", new String[] {"1"});
+            .set("use_raw_query_with_incremental", true);
     PartialExecutionException e =
         Assert.assertThrows(
             PartialExecutionException.class,
@@ -198,4 +215,66 @@ public class TestDatabricksInputPluginWithIncremental extends AbstractTestDatabr
     assertNameEquals(runResult1.getInputSchema(), "_c1");
     assertTypeEquals(runResult1.getInputSchema(), "string");
   }
+
+  @Test
+  public void testChangeDataFeed() throws IOException {
+    String tableName = ConfigUtil.createRandomTableName();
+    String quotedFullTableName = ConfigUtil.createQuotedFullTableName(tableName);
+    ConnectionUtil.run(
+        String.format(
+            "create table %s (_c0 LONG, _c1 STRING) "
+                + "TBLPROPERTIES (delta.enableChangeDataFeed = true)",
+            quotedFullTableName),
+        String.format("INSERT INTO %s VALUES (1,'TEST0'), (2, 'TEST1')", quotedFullTableName));
+    ConfigSource configSource =
+        ConfigUtil.createPluginConfigSourceByTable(tableName)
+            .set("incremental_mode", "change_data_feed")
+            .set("select", "_c0, _c1, _change_type")
+            .set("order_by", "_c0, _change_type");
+
+    Path out0 = embulk.createTempFile("csv");
+    TestingEmbulk.RunResult runResult0 = embulk.runInput(configSource, out0);
+    Assert.assertEquals("1,TEST0,insert\n2,TEST1,insert\n", readFile(out0));
+    assertNameEquals(runResult0.getInputSchema(), "_c0", "_c1", "_change_type");
+    long version0 = lastCommitVersionOf(runResult0);
+
+    ConnectionUtil.run(
+        String.format("INSERT INTO %s VALUES (3, 'TEST2')", quotedFullTableName),
+        String.format("DELETE FROM %s WHERE _c0 = 1", quotedFullTableName));
+    Path out1 = embulk.createTempFile("csv");
+    TestingEmbulk.RunResult runResult1 =
+        embulk.runInput(configSource.deepCopy().set("last_commit_version", version0), out1);
+    Assert.assertEquals("1,TEST0,delete\n3,TEST2,insert\n", readFile(out1));
+    long version1 = lastCommitVersionOf(runResult1);
+    Assert.assertEquals(version0 + 2, version1);
+
+    // Nothing has been committed since.
+    Path out2 = embulk.createTempFile("csv");
+    TestingEmbulk.RunResult runResult2 =
+        embulk.runInput(configSource.deepCopy().set("last_commit_version", version1), out2);
+    Assert.assertEquals("", readFile(out2));
+    assertNameEquals(runResult2.getInputSchema(), "_c0", "_c1", "_change_type");
+    Assert.assertEquals(version1, lastCommitVersionOf(runResult2));
+  }
+
+  @Test
+  public void testChangeDataFeedWithIncremental() {
+    String tableName = ConfigUtil.createRandomTableName();
+    ConnectionUtil.run(
+        String.format(
+            "create table %s (_c0 LONG)", ConfigUtil.createQuotedFullTableName(tableName)));
+    ConfigSource configSource =
+        ConfigUtil.createPluginConfigSourceByTable(tableName)
+            .set("incremental_mode", "change_data_feed")
+            .set("incremental", true);
+    PartialExecutionException e =
+        Assert.assertThrows(
+            PartialExecutionException.class,
+            () -> embulk.runInput(configSource, embulk.createTempFile("csv")));
+    assertTrue(e.getCause() instanceof ConfigException);
+  }
+
+  private static long lastCommitVersionOf(TestingEmbulk.RunResult runResult) {
+    return runResult.getConfigDiff().getNested("in").get(Long.class, "last_commit_version");
+  }
 }
@@ -0,0 +1,140 @@
+package org.embulk.input.databricks;
+
+import static org.embulk.input.databricks.util.TestingEmbulkUtil.assertNameEquals;
+import static org.embulk.input.databricks.util.TestingEmbulkUtil.assertTypeEquals;
+import static org.embulk.test.EmbulkTests.readSortedFile;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
+import org.embulk.exec.PartialExecutionException;
+import org.embulk.input.databricks.util.ConfigUtil;
+import org.embulk.input.databricks.util.ConnectionUtil;
+import org.embulk.test.TestingEmbulk;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestDatabricksInputPluginWithSplit extends AbstractTestDatabricksInputPlugin {
+  @Test
+  public void testRangeSplit() throws IOException {
+    String tableName = ConfigUtil.createRandomTableName();
+    String quotedFullTableName = ConfigUtil.createQuotedFullTableName(tableName);
+    ConnectionUtil.run(
+        String.format("create table %s (_c0 LONG, _c1 STRING)", quotedFullTableName),
+        String.format(
+            "INSERT INTO %s VALUES (1,'T0'), (2, 'T1'), (3, 'T2'), (10, 'T3'), (NULL, 'T4')",
+            quotedFullTableName));
+    Path out = embulk.createTempFile("csv");
+    ConfigSource configSource =
+        ConfigUtil.createPluginConfigSourceByTable(tableName)
+            .set("split_column", "_c0")
+            .set("split_count", 3);
+    TestingEmbulk.RunResult runResult = embulk.runInput(configSource, out);
+    Assert.assertEquals(",T4\n1,T0\n10,T3\n2,T1\n3,T2\n", readSortedFile(out));
+    assertNameEquals(runResult.getInputSchema(), "_c0", "_c1");
+    assertTypeEquals(runResult.getInputSchema(), "long", "string");
+  }
+
+  @Test
+  public void testRangeSplitWithIncremental() throws IOException {
+    String tableName = ConfigUtil.createRandomTableName();
+    String quotedFullTableName = ConfigUtil.createQuotedFullTableName(tableName);
+    ConnectionUtil.run(
+        String.format("create table %s (_c0 LONG, _c1 TIMESTAMP)", quotedFullTableName),
+        String.format(
+            "INSERT INTO %s VALUES (1, '2024-01-01 00:00:00'), (2, '2024-01-02 00:00:00'),"
+                + " (3, '2024-01-03 00:00:00'), (4, '2024-01-04 00:00:00')",
+            quotedFullTableName));
+    Path out = embulk.createTempFile("csv");
+    ConfigSource configSource =
+        ConfigUtil.createPluginConfigSourceByTable(tableName)
+            .set("split_column", "_c1")
+            .set("split_count", 2)
+            .set("incremental", true)
+            .set("incremental_columns", new String[] {"_c0"})
+            .set("last_record", new String[] {"1"});
+    TestingEmbulk.RunResult runResult = embulk.runInput(configSource, out);
+    Assert.assertEquals(
+        "2,2024-01-02 00:00:00.000000 +0000\n"
+            + "3,2024-01-03 00:00:00.000000 +0000\n"
+            + "4,2024-01-04 00:00:00.000000 +0000\n",
+        readSortedFile(out));
+    Assert.assertEquals(
+        "[4]",
+        runResult.getConfigDiff().getNested("in").get(JsonNode.class, "last_record").toString());
+  }
+
+  @Test
+  public void testHashSplitByQuery() throws IOException {
+    String quotedFullTableName = ConfigUtil.createRandomQuotedFullTableName();
+    ConnectionUtil.run(
+        String.format("create table %s (_c0 STRING, _c1 DOUBLE)", quotedFullTableName),
+        String.format(
+            "INSERT INTO %s VALUES ('a', 0.1), ('b', 0.2), ('c', NULL), (NULL, 0.4)",
+            quotedFullTableName));
+    Path out = embulk.createTempFile("csv");
+    ConfigSource configSource =
+        ConfigUtil.createPluginConfigSourceByQuery(
+                String.format("select _c0, _c1 from %s", quotedFullTableName))
+            .set("split_mode", "hash")
+            .set("split_hash_columns", new String[] {"_c0", "_c1"})
+            .set("split_count", 3);
+    TestingEmbulk.RunResult runResult = embulk.runInput(configSource, out);
+    Assert.assertEquals(",0.4\na,0.1\nb,0.2\nc,\n", readSortedFile(out));
+    assertNameEquals(runResult.getInputSchema(), "_c0", "_c1");
+    assertTypeEquals(runResult.getInputSchema(), "string", "double");
+    long rows = 0;
+    for (TaskReport report : runResult.getInputTaskReports()) {
+      rows += report.get(Long.class, "rows");
+    }
+    Assert.assertEquals(4L, rows);
+  }
+
+  @Test
+  public void testPinVersion() throws IOException {
+    String tableName = ConfigUtil.createRandomTableName();
+    String quotedFullTableName = ConfigUtil.createQuotedFullTableName(tableName);
+    ConnectionUtil.run(
+        String.format("create table %s (_c0 LONG)", quotedFullTableName),
+        String.format("INSERT INTO %s VALUES (1), (2)", quotedFullTableName));
+    Path out0 = embulk.createTempFile("csv");
+    ConfigSource configSource =
+        ConfigUtil.createPluginConfigSourceByTable(tableName)
+            .set("pin_version", true)
+            .set("split_mode", "hash")
+            .set("split_hash_columns", new String[] {"_c0"})
+            .set("split_count", 2);
+    TestingEmbulk.RunResult runResult0 = embulk.runInput(configSource, out0);
+    Assert.assertEquals("1\n2\n", readSortedFile(out0));
+    long version =
+        runResult0.getConfigDiff().getNested("in").get(Long.class, "last_snapshot_version");
+    for (TaskReport report : runResult0.getInputTaskReports()) {
+      Assert.assertEquals(version, (long) report.get(Long.class, "snapshot_version"));
+    }
+
+    ConnectionUtil.run(String.format("INSERT INTO %s VALUES (3)", quotedFullTableName));
+    Path out1 = embulk.createTempFile("csv");
+    embulk.runInput(configSource.deepCopy().set("snapshot_version", version), out1);
+    Assert.assertEquals("1\n2\n", readSortedFile(out1));
+  }
+
+  @Test
+  public void testSplitColumnNotSupportedType() {
+    String tableName = ConfigUtil.createRandomTableName();
+    String quotedFullTableName = ConfigUtil.createQuotedFullTableName(tableName);
+    ConnectionUtil.run(String.format("create table %s (_c0 STRING)", quotedFullTableName));
+    ConfigSource configSource =
+        ConfigUtil.createPluginConfigSourceByTable(tableName)
+            .set("split_column", "_c0")
+            .set("split_count", 2);
+    PartialExecutionException e =
+        Assert.assertThrows(
+            PartialExecutionException.class,
+            () -> embulk.runInput(configSource, embulk.createTempFile("csv")));
+    assertTrue(e.getCause() instanceof ConfigException);
+  }
+}
@@ -34,6 +34,11 @@ public class TestDatabricksInputPluginWithType extends AbstractTestDatabricksInp
         new TestSet("STRING", "'test'", "string", "test"),
         new TestSet(
             "TIMESTAMP", "'2020-03-04 12:00:00Z'", "timestamp", "2020-03-04 12:00:00.000000 +0000"),
+        new TestSet(
+            "TIMESTAMP_NTZ",
+            "'2020-03-04 12:00:00'",
+            "timestamp",
+            "2020-03-04 12:00:00.000000 +0000"),
         new TestSet("TINYINT", "8", "long", "8"),
         new TestSet("ARRAY<INT>", "ARRAY(1, 2, 3)", "string", "\"[1,2,3]\""),
         new TestSet(
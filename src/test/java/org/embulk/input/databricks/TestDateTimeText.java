@@ -0,0 +1,75 @@
+package org.embulk.input.databricks;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestDateTimeText {
+  @Test
+  public void testDate() {
+    Assert.assertEquals(Instant.parse("2020-03-04T00:00:00Z"), DateTimeText.parse("2020-03-04"));
+    Assert.assertEquals(Instant.parse("1969-12-31T00:00:00Z"), DateTimeText.parse("1969-12-31"));
+  }
+
+  @Test
+  public void testSameDaysAsLocalDate() {
+    for (LocalDate date = LocalDate.of(1, 1, 1); date.getYear() < 2500; date = date.plusDays(1)) {
+      Assert.assertEquals(
+          date.atStartOfDay(ZoneOffset.UTC).toInstant(), DateTimeText.parseLocal(date.toString()));
+    }
+  }
+
+  @Test
+  public void testTimestampNtz() {
+    Assert.assertEquals(
+        Instant.parse("2020-03-04T12:00:00.123456Z"),
+        DateTimeText.parse("2020-03-04 12:00:00.123456"));
+    Assert.assertEquals(
+        Instant.parse("2020-03-04T12:00:00.1Z"), DateTimeText.parse("2020-03-04T12:00:00.1"));
+    Assert.assertEquals(
+        Instant.parse("1969-12-31T23:59:59.999999999Z"),
+        DateTimeText.parse("1969-12-31 23:59:59.999999999"));
+    Assert.assertEquals(
+        LocalDateTime.of(2020, 3, 4, 12, 0).toInstant(ZoneOffset.UTC),
+        DateTimeText.parseLocal("2020-03-04 12:00:00"));
+  }
+
+  @Test
+  public void testZone() {
+    ZoneId tokyo = ZoneId.of("Asia/Tokyo");
+    Assert.assertEquals(
+        Instant.parse("2020-03-03T15:00:00Z"), DateTimeText.parse("2020-03-04", tokyo));
+    Assert.assertEquals(
+        Instant.parse("2020-03-04T03:00:00.123456Z"),
+        DateTimeText.parse("2020-03-04 12:00:00.123456", tokyo));
+    Assert.assertEquals(
+        Instant.parse("2020-03-04T17:00:00Z"),
+        DateTimeText.parse("2020-03-04 12:00:00", ZoneOffset.ofHours(-5)));
+    // Summer time in New York.
+    Assert.assertEquals(
+        Instant.parse("2020-07-04T16:00:00Z"),
+        DateTimeText.parse("2020-07-04 12:00:00", ZoneId.of("America/New_York")));
+    // An offset of the value wins over the zone.
+    Assert.assertEquals(
+        Instant.parse("2020-03-04T03:00:00.123Z"),
+        DateTimeText.parse("2020-03-04T12:00:00.123+09:00", ZoneOffset.UTC));
+  }
+
+  @Test
+  public void testOtherForms() {
+    Assert.assertNull(DateTimeText.parseLocal("2020-03-04T12:00:00.123+09:00"));
+    Assert.assertEquals(
+        Instant.parse("2020-03-04T03:00:00.123Z"),
+        DateTimeText.parse("2020-03-04T12:00:00.123+09:00"));
+    Assert.assertNull(DateTimeText.parseLocal("2020-02-30"));
+    Assert.assertNull(DateTimeText.parseLocal("2020-03-04 24:00:00"));
+    Assert.assertNull(DateTimeText.parseLocal("2020-03-04 12:00:00."));
+    Assert.assertThrows(DateTimeParseException.class, () -> DateTimeText.parse("2020-02-30"));
+    Assert.assertThrows(DateTimeParseException.class, () -> DateTimeText.parse("TEST"));
+  }
+}
@@ -0,0 +1,80 @@
+package org.embulk.input.databricks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestExportLocation {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testListFiles() throws IOException {
+    Path directory = newExportDirectory();
+    LocalExportLocation location = new LocalExportLocation(directory);
+    Assert.assertEquals(
+        Arrays.asList("part-00000-c000.csv", "part-00001-c000.csv"), location.listFiles());
+  }
+
+  @Test
+  public void testReadFile() throws IOException {
+    LocalExportLocation location = new LocalExportLocation(newExportDirectory());
+    try (InputStream in = location.open("part-00000-c000.csv")) {
+      CsvChunkReader reader =
+          new CsvChunkReader(
+              new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+      Assert.assertArrayEquals(
+          new String[] {"1", "TEST0", "2020-03-04 12:00:00.123456Z"}, reader.nextRecord());
+      Assert.assertArrayEquals(new String[] {"2", "", null}, reader.nextRecord());
+      Assert.assertArrayEquals(new String[] {"3", "null", "a\"b"}, reader.nextRecord());
+      Assert.assertNull(reader.nextRecord());
+    }
+  }
+
+  @Test
+  public void testDelete() throws IOException {
+    Path directory = newExportDirectory();
+    new LocalExportLocation(directory).delete();
+    Assert.assertFalse(Files.exists(directory));
+  }
+
+  @Test
+  public void testUri() throws IOException {
+    Path directory = newExportDirectory();
+    Assert.assertEquals(
+        directory.toUri().toString(), new LocalExportLocation(directory).getUri());
+  }
+
+  @Test
+  public void testEncodePath() throws IOException {
+    Assert.assertEquals(
+        "/Volumes/main/default/my%20volume/embulk_export_1",
+        VolumeExportLocation.encodePath("/Volumes/main/default/my volume/embulk_export_1"));
+  }
+
+  // The files Spark leaves in a directory written by INSERT OVERWRITE DIRECTORY.
+  private Path newExportDirectory() throws IOException {
+    Path directory = folder.newFolder("embulk_export_1").toPath();
+    write(
+        directory.resolve("part-00000-c000.csv"),
+        "1,TEST0,2020-03-04 12:00:00.123456Z\n2,\"\",\n3,null,\"a\"\"b\"\n");
+    write(directory.resolve("part-00001-c000.csv"), "4,TEST1,\n");
+    write(directory.resolve("part-00002-c000.csv"), "");
+    write(directory.resolve("_SUCCESS"), "");
+    write(directory.resolve("_committed_1"), "{}");
+    write(directory.resolve(".part-00000-c000.csv.crc"), "crc");
+    return directory;
+  }
+
+  private static void write(Path path, String content) throws IOException {
+    Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,116 @@
+package org.embulk.input.databricks;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.embulk.config.TaskReport;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestFetchMetrics {
+  private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY =
+      ConfigMapperFactory.builder().addDefaultModules().build();
+
+  @Test
+  public void testReport() {
+    FetchMetrics metrics = new FetchMetrics();
+    metrics.setConnectNanos(5_000_000L);
+    metrics.addRows(1024, 3_000_000L, 2_000_000L, 1_000_000L);
+    metrics.addRows(10, 1_000_000L, 0, 0);
+    Assert.assertEquals(1034, metrics.getRows());
+    TaskReport report = CONFIG_MAPPER_FACTORY.newTaskReport();
+    metrics.report(report);
+    Assert.assertEquals(5L, (long) report.get(Long.class, "connect_ms"));
+    Assert.assertEquals(4L, (long) report.get(Long.class, "next_ms"));
+    Assert.assertEquals(2L, (long) report.get(Long.class, "getter_ms"));
+    Assert.assertEquals(1L, (long) report.get(Long.class, "page_builder_ms"));
+    Assert.assertEquals(0L, (long) report.get(Long.class, "page_bytes"));
+    // Not measured.
+    Assert.assertFalse(report.has("first_row_ms"));
+    Assert.assertFalse(report.has("allocated_bytes"));
+    Assert.assertFalse(report.has("rows"));
+  }
+
+  @Test
+  public void testNoRowTimes() {
+    FetchMetrics metrics = new FetchMetrics(false);
+    metrics.addRows(1024, 0, 0, 0);
+    TaskReport report = CONFIG_MAPPER_FACTORY.newTaskReport();
+    metrics.report(report);
+    Assert.assertEquals(1024, metrics.getRows());
+    Assert.assertFalse(report.has("next_ms"));
+    Assert.assertFalse(report.has("getter_ms"));
+    Assert.assertFalse(report.has("page_builder_ms"));
+  }
+
+  @Test
+  public void testFetchSize() {
+    FetchMetrics metrics = new FetchMetrics();
+    metrics.setFetchSize(100);
+    metrics.setFetchSize(50_000);
+    metrics.setFetchSize(20_000);
+    TaskReport report = CONFIG_MAPPER_FACTORY.newTaskReport();
+    metrics.report(report);
+    Assert.assertEquals(20_000L, (long) report.get(Long.class, "fetch_size"));
+    Assert.assertEquals(100L, (long) report.get(Long.class, "fetch_size_min"));
+    Assert.assertEquals(50_000L, (long) report.get(Long.class, "fetch_size_max"));
+  }
+
+  @Test
+  public void testAllocation() {
+    FetchMetrics metrics = new FetchMetrics();
+    metrics.startAllocation();
+    byte[][] garbage = new byte[16][];
+    for (int i = 0; i < garbage.length; i++) {
+      garbage[i] = new byte[1 << 16];
+    }
+    metrics.addRows(garbage.length, 0, 0, 0);
+    if (metrics.getAllocatedBytes() >= 0) {
+      Assert.assertTrue(metrics.getAllocatedBytes() >= 16 << 16);
+    }
+  }
+
+  @Test
+  public void testOpenMetrics() {
+    TaskReport first = CONFIG_MAPPER_FACTORY.newTaskReport();
+    first.set("rows", 100L);
+    first.set("connect_ms", 1500L);
+    first.set("next_ms", 20L);
+    TaskReport second = CONFIG_MAPPER_FACTORY.newTaskReport();
+    second.set("rows", 50L);
+    String text = FetchMetrics.toOpenMetrics(Arrays.asList(first, second));
+    Assert.assertTrue(
+        text.contains(
+            "# TYPE embulk_input_databricks_connect_seconds gauge\n"
+                + "# UNIT embulk_input_databricks_connect_seconds seconds\n"
+                + "# HELP embulk_input_databricks_connect_seconds Time to open the connection.\n"
+                + "embulk_input_databricks_connect_seconds{task=\"0\"} 1.500\n"
+                + "# TYPE"));
+    Assert.assertTrue(
+        text.contains(
+            "embulk_input_databricks_rows_total{task=\"0\"} 100\n"
+                + "embulk_input_databricks_rows_total{task=\"1\"} 50\n"));
+    Assert.assertTrue(
+        text.contains("embulk_input_databricks_next_seconds_total{task=\"0\"} 0.020\n"));
+    Assert.assertTrue(text.endsWith("# EOF\n"));
+  }
+
+  @Test
+  public void testJmx() throws JMException {
+    FetchMetrics metrics = new FetchMetrics();
+    metrics.addRows(7, 0, 0, 0);
+    ObjectName name = metrics.register(3);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      Assert.assertEquals("3", name.getKeyProperty("task"));
+      Assert.assertEquals(7L, server.getAttribute(name, "Rows"));
+      Assert.assertEquals(-1L, server.getAttribute(name, "FirstRowMillis"));
+    } finally {
+      FetchMetrics.unregister(name);
+    }
+    Assert.assertFalse(server.isRegistered(name));
+  }
+}
@@ -0,0 +1,41 @@
+package org.embulk.input.databricks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestFetchSizer {
+  @Test
+  public void testFetchSizeOf() {
+    Assert.assertEquals(1000, FetchSizer.fetchSizeOf(1_000_000, 1000, 1, 1_000_000));
+    // Rows larger than the budget are still fetched one by one.
+    Assert.assertEquals(1, FetchSizer.fetchSizeOf(1_000_000, 5_000_000, 1, 1_000_000));
+    Assert.assertEquals(500_000, FetchSizer.fetchSizeOf(1L << 40, 10, 1, 500_000));
+    Assert.assertEquals(1_000_000, FetchSizer.fetchSizeOf(1_000_000, 0, 1, 1_000_000));
+  }
+
+  @Test
+  public void testResize() {
+    Optional<FetchSizer> started = FetchSizer.start(1_000_000, 10, 1, 1_000_000);
+    if (!started.isPresent()) {
+      // The JVM does not measure the allocation.
+      return;
+    }
+    FetchSizer sizer = started.get();
+    Assert.assertEquals(10, sizer.getFetchSize());
+    Assert.assertEquals(-1, sizer.getRowBytes());
+    // Rows of 200 KB or more, of which 5 fit into the budget.
+    List<byte[]> rows = new ArrayList<>();
+    for (int i = 0; i < 9; i++) {
+      rows.add(new byte[200_000]);
+      Assert.assertFalse(sizer.next());
+    }
+    rows.add(new byte[200_000]);
+    Assert.assertTrue(sizer.next());
+    Assert.assertTrue(sizer.getRowBytes() >= 200_000);
+    Assert.assertTrue(sizer.getFetchSize() <= 5);
+    Assert.assertEquals(10, rows.size());
+  }
+}
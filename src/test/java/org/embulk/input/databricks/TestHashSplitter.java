@@ -0,0 +1,18 @@
+package org.embulk.input.databricks;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestHashSplitter {
+  @Test
+  public void testBuildPredicates() {
+    HashSplitter splitter = new HashSplitter(Arrays.asList("`a`", "`b`"));
+    Assert.assertEquals(
+        Arrays.asList(
+            "PMOD(XXHASH64(`a`, `b`), 3) = 0",
+            "PMOD(XXHASH64(`a`, `b`), 3) = 1",
+            "PMOD(XXHASH64(`a`, `b`), 3) = 2"),
+        splitter.buildPredicates(3));
+  }
+}
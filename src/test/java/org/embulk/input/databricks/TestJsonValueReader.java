@@ -0,0 +1,68 @@
+package org.embulk.input.databricks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import org.embulk.input.databricks.util.JsonFixtures;
+import org.embulk.spi.DataException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.msgpack.value.Value;
+
+public class TestJsonValueReader {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Test
+  public void testStruct() {
+    Value value =
+        new JsonValueReader(0, 0)
+            .read(
+                "{\"id\":1,\"name\":\"TEST0\",\"price\":12.5,\"ok\":true,\"none\":null,"
+                    + "\"tags\":[\"a\",\"b\"],\"big\":123456789012345678901234567890}");
+    Assert.assertEquals(
+        "{\"id\":1,\"name\":\"TEST0\",\"price\":12.5,\"ok\":true,\"none\":null,"
+            + "\"tags\":[\"a\",\"b\"],\"big\":123456789012345678901234567890}",
+        value.toJson());
+  }
+
+  @Test
+  public void testScalarAndEmpty() {
+    JsonValueReader reader = new JsonValueReader(0, 0);
+    Assert.assertEquals("[]", reader.read("[]").toJson());
+    Assert.assertEquals("{}", reader.read(" {} ").toJson());
+    Assert.assertEquals("\"TEST0\"", reader.read("\"TEST0\"").toJson());
+  }
+
+  @Test
+  public void testMaxDepth() {
+    JsonValueReader reader = new JsonValueReader(3, 0);
+    Assert.assertEquals("[[[1]]]", reader.read("[[[1]]]").toJson());
+    Assert.assertEquals("{\"a\":{\"b\":[1]}}", reader.read("{\"a\":{\"b\":[1]}}").toJson());
+    Assert.assertThrows(DataException.class, () -> reader.read("[[[[1]]]]"));
+    Assert.assertThrows(DataException.class, () -> reader.read("{\"a\":{\"b\":[{}]}}"));
+  }
+
+  @Test
+  public void testMaxLength() {
+    JsonValueReader reader = new JsonValueReader(0, 7);
+    Assert.assertEquals("[1,2,3]", reader.read("[1,2,3]").toJson());
+    Assert.assertThrows(DataException.class, () -> reader.read("[1,2,34]"));
+  }
+
+  @Test
+  public void testInvalid() {
+    JsonValueReader reader = new JsonValueReader(0, 0);
+    Assert.assertThrows(DataException.class, () -> reader.read(""));
+    Assert.assertThrows(DataException.class, () -> reader.read("[1,2"));
+    Assert.assertThrows(DataException.class, () -> reader.read("{\"a\":1}}"));
+    Assert.assertThrows(DataException.class, () -> reader.read("TEST0"));
+  }
+
+  // The reader makes the same Value as parsing into a tree of JsonNodes and converting it.
+  @Test
+  public void testNested() throws IOException {
+    String text = JsonFixtures.nestedStruct(4, 6);
+    Assert.assertEquals(
+        JsonFixtures.toValue(MAPPER.readTree(text)).toJson(),
+        new JsonValueReader(0, 0).read(text).toJson());
+  }
+}
@@ -0,0 +1,44 @@
+package org.embulk.input.databricks;
+
+import org.embulk.spi.DataException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLargeValuePolicy {
+  @Test
+  public void testApply() {
+    LargeValuePolicy policy = new LargeValuePolicy(4, LargeValuePolicy.FAIL);
+    String value = "abcd";
+    // Not copied.
+    Assert.assertSame(value, policy.apply(value, "c", true));
+    Assert.assertEquals("", policy.apply("", "c", true));
+    Assert.assertNull(policy.apply(null, "c", true));
+  }
+
+  @Test
+  public void testFail() {
+    LargeValuePolicy policy = new LargeValuePolicy(4, LargeValuePolicy.FAIL);
+    DataException e =
+        Assert.assertThrows(DataException.class, () -> policy.apply("abcde", "c", true));
+    Assert.assertEquals("Value of column 'c' exceeds large_value_max_chars 4.", e.getMessage());
+  }
+
+  @Test
+  public void testTruncate() {
+    LargeValuePolicy policy = new LargeValuePolicy(4, LargeValuePolicy.TRUNCATE);
+    Assert.assertEquals("abcd", policy.apply("abcdef", "c", true));
+    // Skipped instead.
+    Assert.assertNull(policy.apply("[1,2,3]", "c", false));
+    Assert.assertEquals(1, policy.getTruncatedValues());
+    Assert.assertEquals(1, policy.getSkippedValues());
+  }
+
+  @Test
+  public void testSkip() {
+    LargeValuePolicy policy = new LargeValuePolicy(4, LargeValuePolicy.SKIP);
+    Assert.assertNull(policy.apply("abcdef", "c", true));
+    Assert.assertEquals("abc", policy.apply("abc", "c", true));
+    Assert.assertEquals(0, policy.getTruncatedValues());
+    Assert.assertEquals(1, policy.getSkippedValues());
+  }
+}
@@ -0,0 +1,54 @@
+package org.embulk.input.databricks;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLastRecords {
+  private static final JsonNodeFactory factory = JsonNodeFactory.instance;
+
+  @Test
+  public void testCompareNumbers() {
+    Assert.assertTrue(LastRecords.compare(record(9L), record(10L)) < 0);
+    Assert.assertTrue(LastRecords.compare(record(10L), record(9L)) > 0);
+    Assert.assertEquals(0, LastRecords.compare(record(10L), record(10L)));
+  }
+
+  @Test
+  public void testCompareTimestamps() {
+    Assert.assertTrue(
+        LastRecords.compare(
+                record("2024-01-01T00:00:00.000000Z"), record("2024-01-02T00:00:00.000000Z"))
+            < 0);
+  }
+
+  @Test
+  public void testCompareMultipleColumns() {
+    Assert.assertTrue(LastRecords.compare(record(2L, "TEST0"), record(2L, "TEST1")) < 0);
+    Assert.assertTrue(LastRecords.compare(record(3L, "TEST0"), record(2L, "TEST1")) > 0);
+  }
+
+  @Test
+  public void testMax() {
+    LastRecords.Max max = new LastRecords.Max();
+    Assert.assertFalse(max.get().isPresent());
+    max.offer(record(2L, "TEST1"));
+    max.offer(record(3L, "TEST0"));
+    max.offer(record(1L, "TEST2"));
+    max.offer(record(3L, "TEST0"));
+    Assert.assertEquals(record(3L, "TEST0"), max.get().get());
+  }
+
+  private static ArrayNode record(Object... values) {
+    ArrayNode record = factory.arrayNode();
+    for (Object value : values) {
+      if (value instanceof Long) {
+        record.add((Long) value);
+      } else {
+        record.add((String) value);
+      }
+    }
+    return record;
+  }
+}
@@ -0,0 +1,54 @@
+package org.embulk.input.databricks;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.embulk.input.databricks.util.FakeStatementExecutionServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestQueryHistoryClient {
+  private FakeStatementExecutionServer server;
+  private DatabricksApiClient api;
+
+  @Before
+  public void setUp() throws IOException {
+    server =
+        new FakeStatementExecutionServer(
+            Collections.<byte[]>emptyList(), Collections.<String>emptyList());
+    api =
+        new DatabricksApiClient(
+            server.getEndpoint(), FakeStatementExecutionServer.TOKEN, 10000, 10000);
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  // The query is not in the history at the first lookup.
+  @Test
+  public void testFetchMetrics() throws IOException {
+    Optional<Map<String, Long>> metrics =
+        new QueryHistoryClient(api, 10, 5).fetchMetrics("01ef-query");
+    Map<String, Long> expected = new LinkedHashMap<>();
+    expected.put("server_rows_produced", 20L);
+    expected.put("server_read_bytes", 4096L);
+    expected.put("server_compilation_ms", 120L);
+    expected.put("server_execution_ms", 340L);
+    expected.put("server_total_ms", 600L);
+    expected.put("server_queue_ms", 100L);
+    Assert.assertEquals(Optional.of(expected), metrics);
+    Assert.assertEquals(2, server.getHistoryLookups());
+  }
+
+  @Test
+  public void testNotInHistory() throws IOException {
+    Assert.assertFalse(new QueryHistoryClient(api, 10, 1).fetchMetrics("01ef-query").isPresent());
+    Assert.assertEquals(1, server.getHistoryLookups());
+  }
+}
@@ -0,0 +1,37 @@
+package org.embulk.input.databricks;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestQueryPlaceholders {
+  @Test
+  public void testReplaceMarkers() {
+    QueryPlaceholders placeholders = new QueryPlaceholders();
+    String sql = "SELECT * FROM t WHERE a > ? AND b = '?' AND `c?` = ? -- ?\n/* ? */";
+    Assert.assertEquals(2, placeholders.countParameters(sql));
+    Assert.assertEquals(
+        "SELECT * FROM t WHERE a > NULL AND b = '?' AND `c?` = NULL -- ?\n/* ? */",
+        placeholders.replaceParameters(sql, "NULL"));
+  }
+
+  @Test
+  public void testReplaceNamedPlaceholders() {
+    QueryPlaceholders placeholders = new QueryPlaceholders(Arrays.asList("x", "y"));
+    String sql =
+        "SELECT v:x, v::x, :xy FROM t WHERE (x > :x OR y >= :y) AND s = ':x' AND s2 = 'it\\'s :x'";
+    Assert.assertEquals(
+        "SELECT v:x, v::x, :xy FROM t WHERE (x > NULL OR y >= NULL) AND s = ':x'"
+            + " AND s2 = 'it\\'s :x'",
+        placeholders.replaceParameters(sql, "NULL"));
+    Assert.assertEquals(2, placeholders.countParameters(sql));
+  }
+
+  @Test
+  public void testNoParameters() {
+    QueryPlaceholders placeholders = new QueryPlaceholders(Arrays.asList("x"));
+    String sql = "SELECT \"a ? b\" FROM t";
+    Assert.assertEquals(0, placeholders.countParameters(sql));
+    Assert.assertEquals(sql, placeholders.replaceParameters(sql, "NULL"));
+  }
+}
@@ -0,0 +1,32 @@
+package org.embulk.input.databricks;
+
+import java.time.Instant;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestQueryTag {
+  private static final Instant TRANSACTION_TIME = Instant.parse("2024-01-02T03:04:05Z");
+
+  @Test
+  public void testAppend() {
+    QueryTag tag = new QueryTag(TRANSACTION_TIME, 3, null);
+    Assert.assertEquals(
+        "SELECT * FROM t -- the end\n"
+            + "/* embulk-input-databricks job=2024-01-02T03:04:05Z task=3 */",
+        tag.append("SELECT * FROM t -- the end"));
+    Assert.assertEquals(
+        "SELECT 1\n/* embulk-input-databricks job=2024-01-02T03:04:05Z task=3 */",
+        tag.append(" SELECT 1 ; ;\n"));
+  }
+
+  @Test
+  public void testTag() {
+    Assert.assertEquals(
+        "/* embulk-input-databricks job=2024-01-02T03:04:05Z task=0 tag=daily orders */",
+        new QueryTag(TRANSACTION_TIME, 0, "daily orders").getComment());
+    // The tag cannot end the comment.
+    Assert.assertEquals(
+        "/* embulk-input-databricks job=2024-01-02T03:04:05Z task=0 tag=a* / DROP / *b c */",
+        new QueryTag(TRANSACTION_TIME, 0, "a*/ DROP /*b\nc").getComment());
+  }
+}
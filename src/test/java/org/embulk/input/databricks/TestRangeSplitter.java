@@ -0,0 +1,50 @@
+package org.embulk.input.databricks;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRangeSplitter {
+  @Test
+  public void testBuildBoundaries() {
+    Assert.assertEquals(Arrays.asList(3L, 6L, 8L), RangeSplitter.buildBoundaries(1, 10, 4));
+    Assert.assertEquals(Arrays.asList(1L, 2L), RangeSplitter.buildBoundaries(0, 2, 10));
+    Assert.assertEquals(Collections.emptyList(), RangeSplitter.buildBoundaries(5, 5, 4));
+    Assert.assertEquals(Collections.emptyList(), RangeSplitter.buildBoundaries(1, 10, 1));
+  }
+
+  @Test
+  public void testBuildBoundariesFullRange() {
+    Assert.assertEquals(
+        Arrays.asList(0L), RangeSplitter.buildBoundaries(Long.MIN_VALUE, Long.MAX_VALUE, 2));
+  }
+
+  @Test
+  public void testBuildPredicatesInteger() {
+    RangeSplitter splitter = new RangeSplitter("`id`", RangeSplitter.Kind.INTEGER);
+    Assert.assertEquals(
+        Arrays.asList("(`id` < 6 OR `id` IS NULL)", "`id` >= 6"),
+        splitter.buildPredicates(1, 10, 2));
+    Assert.assertEquals(
+        Arrays.asList("(`id` < 4 OR `id` IS NULL)", "`id` >= 4 AND `id` < 7", "`id` >= 7"),
+        splitter.buildPredicates(1, 9, 3));
+    Assert.assertEquals(Collections.emptyList(), splitter.buildPredicates(1, 1, 3));
+  }
+
+  @Test
+  public void testBuildPredicatesTimestamp() {
+    RangeSplitter splitter = new RangeSplitter("`t`", RangeSplitter.Kind.TIMESTAMP);
+    Assert.assertEquals(
+        Arrays.asList(
+            "(`t` < TIMESTAMP_MICROS(50) OR `t` IS NULL)", "`t` >= TIMESTAMP_MICROS(50)"),
+        splitter.buildPredicates(0, 99, 2));
+  }
+
+  @Test
+  public void testBuildRangeQuery() {
+    Assert.assertEquals(
+        "SELECT UNIX_DATE(MIN(`d`)), UNIX_DATE(MAX(`d`)) FROM (select * from t) embulk_split_range_",
+        new RangeSplitter("`d`", RangeSplitter.Kind.DATE).buildRangeQuery("select * from t;"));
+  }
+}
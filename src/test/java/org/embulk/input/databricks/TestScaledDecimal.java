@@ -0,0 +1,45 @@
+package org.embulk.input.databricks;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestScaledDecimal {
+  @Test
+  public void testParseUnscaled() {
+    Assert.assertEquals(1250L, ScaledDecimal.parseUnscaled("12.5", 2));
+    Assert.assertEquals(-5L, ScaledDecimal.parseUnscaled("-0.05", 2));
+    Assert.assertEquals(7000L, ScaledDecimal.parseUnscaled("+7", 3));
+    Assert.assertEquals(
+        -246979880425410455L, ScaledDecimal.parseUnscaled("-0.246979880425410455", 18));
+    Assert.assertEquals(999999999999999999L, ScaledDecimal.parseUnscaled("999999999999999999", 0));
+  }
+
+  @Test
+  public void testParseUnscaledOtherForms() {
+    String[] texts = {"1.234", "1E+3", "", "-", ".", "1.2.3", "1000000000000000000"};
+    for (String text : texts) {
+      Assert.assertThrows(NumberFormatException.class, () -> ScaledDecimal.parseUnscaled(text, 2));
+    }
+  }
+
+  @Test
+  public void testSameAsBigDecimal() {
+    Random random = new Random(0);
+    for (int i = 0; i < 100_000; i++) {
+      int precision = 1 + random.nextInt(ScaledDecimal.MAX_PRECISION);
+      int scale = random.nextInt(precision + 1);
+      long unscaled = random.nextLong() % BigDecimal.TEN.pow(precision).longValue();
+      BigDecimal expected = BigDecimal.valueOf(unscaled, scale);
+      String text = expected.toPlainString();
+      Assert.assertEquals(text, unscaled, ScaledDecimal.parseUnscaled(text, scale));
+      Assert.assertEquals(text, expected.longValue(), ScaledDecimal.toLong(unscaled, scale));
+      Assert.assertEquals(
+          text,
+          Double.doubleToLongBits(expected.doubleValue()),
+          Double.doubleToLongBits(ScaledDecimal.toDouble(unscaled, scale)));
+      Assert.assertEquals(text, ScaledDecimal.toPlainString(unscaled, scale));
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package org.embulk.input.databricks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Types;
+import java.util.Arrays;
+import org.embulk.input.jdbc.JdbcColumn;
+import org.embulk.input.jdbc.JdbcSchema;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestSchemaCache {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private static final JdbcSchema SCHEMA =
+      new JdbcSchema(
+          Arrays.asList(
+              new JdbcColumn("id", "BIGINT", Types.BIGINT, 19, 0),
+              new JdbcColumn("price", "DECIMAL", Types.DECIMAL, 10, 2)));
+
+  @Test
+  public void testHit() throws IOException {
+    Path directory = folder.getRoot().toPath().resolve("cache");
+    SchemaCache cache = new SchemaCache(directory);
+    Assert.assertFalse(cache.get("t\nSELECT 1", 3).isPresent());
+    cache.put("t\nSELECT 1", 3, SCHEMA);
+
+    JdbcSchema cached = new SchemaCache(directory).get("t\nSELECT 1", 3).get();
+    Assert.assertEquals(2, cached.getCount());
+    JdbcColumn price = cached.getColumn(1);
+    Assert.assertEquals("price", price.getName());
+    Assert.assertEquals("DECIMAL", price.getTypeName());
+    Assert.assertEquals(Types.DECIMAL, price.getSqlType());
+    Assert.assertEquals(10, price.getPrecision());
+    Assert.assertEquals(2, price.getScale());
+  }
+
+  @Test
+  public void testOtherVersionOrQuery() {
+    SchemaCache cache = new SchemaCache(folder.getRoot().toPath());
+    cache.put("t\nSELECT 1", 3, SCHEMA);
+    Assert.assertFalse(cache.get("t\nSELECT 1", 4).isPresent());
+    Assert.assertFalse(cache.get("t\nSELECT 2", 3).isPresent());
+
+    cache.put("t\nSELECT 1", 4, SCHEMA);
+    Assert.assertTrue(cache.get("t\nSELECT 1", 4).isPresent());
+    Assert.assertFalse(cache.get("t\nSELECT 1", 3).isPresent());
+  }
+
+  @Test
+  public void testBrokenFile() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    SchemaCache cache = new SchemaCache(directory);
+    cache.put("t\nSELECT 1", 3, SCHEMA);
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.write(file, "{\"key\":".getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    Assert.assertFalse(cache.get("t\nSELECT 1", 3).isPresent());
+  }
+}
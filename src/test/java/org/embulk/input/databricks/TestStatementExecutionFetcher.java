@@ -0,0 +1,156 @@
+package org.embulk.input.databricks;
+
+import static org.embulk.test.EmbulkTests.readFile;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.embulk.EmbulkSystemProperties;
+import org.embulk.config.ConfigSource;
+import org.embulk.exec.PartialExecutionException;
+import org.embulk.formatter.csv.CsvFormatterPlugin;
+import org.embulk.input.databricks.util.ArrowFixtures;
+import org.embulk.input.databricks.util.FakeStatementExecutionServer;
+import org.embulk.input.databricks.util.StatementExecutionFixtureInputPlugin;
+import org.embulk.output.file.LocalFileOutputPlugin;
+import org.embulk.spi.FileOutputPlugin;
+import org.embulk.spi.FormatterPlugin;
+import org.embulk.spi.InputPlugin;
+import org.embulk.test.TestingEmbulk;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestStatementExecutionFetcher {
+  private static final EmbulkSystemProperties EMBULK_SYSTEM_PROPERTIES =
+      EmbulkSystemProperties.of(new Properties());
+
+  @Rule
+  public TestingEmbulk embulk =
+      TestingEmbulk.builder()
+          .setEmbulkSystemProperties(EMBULK_SYSTEM_PROPERTIES)
+          .registerPlugin(FormatterPlugin.class, "csv", CsvFormatterPlugin.class)
+          .registerPlugin(FileOutputPlugin.class, "file", LocalFileOutputPlugin.class)
+          .registerPlugin(
+              InputPlugin.class,
+              "statement_execution_fixture",
+              StatementExecutionFixtureInputPlugin.class)
+          .build();
+
+  @Test
+  public void testArrowChunks() throws IOException {
+    Path fixture = embulk.createTempFile("arrow");
+    ArrowFixtures.writeAllTypes(fixture);
+    byte[] chunk = Files.readAllBytes(fixture);
+    List<byte[]> chunks = Arrays.asList(chunk, chunk, chunk, chunk);
+    try (FakeStatementExecutionServer server =
+        new FakeStatementExecutionServer(chunks, Arrays.asList("c_bigint"))) {
+      Path out = embulk.createTempFile("csv");
+      embulk.runInput(
+          newConfig(server)
+              .set("statement_format", "ARROW_STREAM")
+              .set("download_threads", 4)
+              // two chunks at once
+              .set("download_memory_limit", chunk.length * 2L)
+              .set(
+                  "columns",
+                  columns(
+                      "c_bigint:long",
+                      "c_int:long",
+                      "c_double:double",
+                      "c_boolean:boolean",
+                      "c_string:string",
+                      "c_decimal:double",
+                      "c_date:timestamp",
+                      "c_timestamp:timestamp")),
+          out);
+      String rows =
+          "1,10,0.1,true,TEST0,12.34,2020-03-04 00:00:00.000000 +0000,2020-03-04 12:00:00.123456 +0000\n"
+              + "-9007199254740993,-10,-1.5,false,TEST1,-0.5,1969-12-31 00:00:00.000000 +0000,1969-12-31 23:59:59.999999 +0000\n"
+              + ",,,,,,,\n";
+      Assert.assertEquals(rows + rows + rows + rows, readFile(out));
+      Assert.assertTrue(server.getMaxConcurrentDownloads() <= 2);
+      Assert.assertFalse(server.isAuthorizedDownload());
+      Assert.assertTrue(server.getPolls() > 0);
+
+      JsonNode request = server.getRequests().get(0);
+      Assert.assertEquals("SELECT * FROM t", request.get("statement").asText());
+      Assert.assertEquals("EXTERNAL_LINKS", request.get("disposition").asText());
+      Assert.assertEquals("ARROW_STREAM", request.get("format").asText());
+      Assert.assertEquals("fake-warehouse", request.get("warehouse_id").asText());
+    }
+  }
+
+  @Test
+  public void testCsvChunks() throws IOException {
+    List<byte[]> chunks =
+        Arrays.asList(
+            bytes("c_id,c_name,c_ts\n1,TEST0,2020-03-04T12:00:00.123Z\n"),
+            bytes("2,\"TEST,1\",2020-03-04\r\n3,\"TEST\"\"2\",2020-03-04T12:00:00\r\n"),
+            bytes(",,\nnull,null,null\n"));
+    try (FakeStatementExecutionServer server =
+        new FakeStatementExecutionServer(chunks, Arrays.asList("c_id", "c_name", "c_ts"))) {
+      Path out = embulk.createTempFile("csv");
+      embulk.runInput(
+          newConfig(server)
+              .set("statement_format", "CSV")
+              .set("download_threads", 2)
+              .set("columns", columns("c_id:long", "c_name:string", "c_ts:timestamp")),
+          out);
+      Assert.assertEquals(
+          "1,TEST0,2020-03-04 12:00:00.123000 +0000\n"
+              + "2,\"TEST,1\",2020-03-04 00:00:00.000000 +0000\n"
+              + "3,\"TEST\"\"2\",2020-03-04 12:00:00.000000 +0000\n"
+              + ",,\n"
+              // A string null is the text, not NULL.
+              + ",null,\n",
+          readFile(out));
+    }
+  }
+
+  @Test
+  public void testFailedStatement() throws IOException {
+    try (FakeStatementExecutionServer server =
+        new FakeStatementExecutionServer(new ArrayList<>(), Arrays.asList("c_id"))) {
+      server.setFailure("TABLE_OR_VIEW_NOT_FOUND");
+      ConfigSource config = newConfig(server).set("columns", columns("c_id:long"));
+      PartialExecutionException e =
+          Assert.assertThrows(
+              PartialExecutionException.class,
+              () -> embulk.runInput(config, embulk.createTempFile("csv")));
+      Assert.assertTrue(e.getCause().getCause() instanceof IOException);
+      Assert.assertTrue(e.getCause().getMessage().contains("TABLE_OR_VIEW_NOT_FOUND"));
+    }
+  }
+
+  private ConfigSource newConfig(FakeStatementExecutionServer server) {
+    return embulk
+        .newConfig()
+        .set("type", "statement_execution_fixture")
+        .set("api_endpoint", server.getEndpoint());
+  }
+
+  private static List<Map<String, String>> columns(String... columns) {
+    List<Map<String, String>> list = new ArrayList<>();
+    for (String column : columns) {
+      String[] nameAndType = column.split(":");
+      Map<String, String> map = new LinkedHashMap<>();
+      map.put("name", nameAndType[0]);
+      map.put("type", nameAndType[1]);
+      list.add(map);
+    }
+    return list;
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,110 @@
+package org.embulk.input.databricks.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.embulk.config.TaskReport;
+import org.embulk.input.databricks.ArrowPageWriter;
+import org.embulk.spi.Column;
+import org.embulk.spi.Exec;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.embulk.spi.type.Type;
+import org.embulk.spi.type.Types;
+import org.embulk.util.config.Config;
+import org.embulk.util.config.ConfigDefault;
+import org.embulk.util.config.Task;
+
+// Reads an Arrow IPC stream file through ArrowPageWriter, so that the Arrow path can be run by
+// TestingEmbulk without a Databricks workspace.
+public class ArrowFixtureInputPlugin extends FixtureInputPlugin<ArrowFixtureInputPlugin.PluginTask> {
+  public interface PluginTask extends Task {
+    @Config("path")
+    public String getPath();
+
+    // Embulk types by column name. The other columns get the type of the default ColumnGetter.
+    @Config("column_types")
+    @ConfigDefault("{}")
+    public Map<String, String> getColumnTypes();
+  }
+
+  public ArrowFixtureInputPlugin() {
+    super(PluginTask.class);
+  }
+
+  @Override
+  protected Schema schemaOf(PluginTask task) {
+    List<Column> columns = new ArrayList<>();
+    try (BufferAllocator allocator = new RootAllocator();
+        InputStream in = Files.newInputStream(Paths.get(task.getPath()));
+        ArrowStreamReader reader = new ArrowStreamReader(in, allocator)) {
+      for (Field field : reader.getVectorSchemaRoot().getSchema().getFields()) {
+        String typeName = task.getColumnTypes().get(field.getName());
+        Type type = typeName != null ? toType(typeName) : defaultType(field.getType());
+        columns.add(new Column(columns.size(), field.getName(), type));
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return new Schema(columns);
+  }
+
+  @Override
+  protected TaskReport read(PluginTask task, Schema schema, PageOutput output) {
+    try (BufferAllocator allocator = new RootAllocator();
+        InputStream in = Files.newInputStream(Paths.get(task.getPath()));
+        ArrowStreamReader reader = new ArrowStreamReader(in, allocator);
+        PageBuilder pageBuilder = Exec.getPageBuilder(Exec.getBufferAllocator(), schema, output)) {
+      ArrowPageWriter writer = new ArrowPageWriter(pageBuilder, schema.getColumns());
+      if (!writer.canWrite(reader.getVectorSchemaRoot())) {
+        throw new IllegalStateException("Arrow fixture cannot be written into " + schema);
+      }
+      writer.write(reader);
+      pageBuilder.finish();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return CONFIG_MAPPER_FACTORY.newTaskReport();
+  }
+
+  // The types the default ColumnGetters of embulk-input-jdbc output for the same columns.
+  private static Type defaultType(ArrowType type) {
+    if (type instanceof ArrowType.Int) {
+      return Types.LONG;
+    } else if (type instanceof ArrowType.FloatingPoint || type instanceof ArrowType.Decimal) {
+      return Types.DOUBLE;
+    } else if (type instanceof ArrowType.Bool) {
+      return Types.BOOLEAN;
+    } else if (type instanceof ArrowType.Date || type instanceof ArrowType.Timestamp) {
+      return Types.TIMESTAMP;
+    }
+    return Types.STRING;
+  }
+
+  private static Type toType(String name) {
+    switch (name) {
+      case "boolean":
+        return Types.BOOLEAN;
+      case "long":
+        return Types.LONG;
+      case "double":
+        return Types.DOUBLE;
+      case "timestamp":
+        return Types.TIMESTAMP;
+      case "json":
+        return Types.JSON;
+      default:
+        return Types.STRING;
+    }
+  }
+}
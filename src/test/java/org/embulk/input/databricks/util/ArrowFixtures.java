@@ -0,0 +1,110 @@
+package org.embulk.input.databricks.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.TimeStampMicroVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+// Arrow IPC stream files shaped like the results the Databricks warehouse sends.
+public class ArrowFixtures {
+  public static final Schema ALL_TYPES_SCHEMA =
+      new Schema(
+          Arrays.asList(
+              Field.nullable("c_bigint", new ArrowType.Int(64, true)),
+              Field.nullable("c_int", new ArrowType.Int(32, true)),
+              Field.nullable("c_double", new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+              Field.nullable("c_boolean", ArrowType.Bool.INSTANCE),
+              Field.nullable("c_string", ArrowType.Utf8.INSTANCE),
+              Field.nullable("c_decimal", new ArrowType.Decimal(10, 2, 128)),
+              Field.nullable("c_date", new ArrowType.Date(DateUnit.DAY)),
+              Field.nullable(
+                  "c_timestamp", new ArrowType.Timestamp(TimeUnit.MICROSECOND, "Etc/UTC"))));
+
+  // FLOAT and the types whose values depend on the time zone.
+  public static final Schema LOCAL_TYPES_SCHEMA =
+      new Schema(
+          Arrays.asList(
+              Field.nullable("c_float", new ArrowType.FloatingPoint(FloatingPointPrecision.SINGLE)),
+              Field.nullable("c_date", new ArrowType.Date(DateUnit.DAY)),
+              Field.nullable(
+                  "c_timestamp_ntz", new ArrowType.Timestamp(TimeUnit.MICROSECOND, null)),
+              Field.nullable(
+                  "c_timestamp", new ArrowType.Timestamp(TimeUnit.MICROSECOND, "Etc/UTC"))));
+
+  // Writes two batches: two rows of values and one row of NULLs.
+  public static void writeAllTypes(Path path) throws IOException {
+    try (BufferAllocator allocator = new RootAllocator();
+        VectorSchemaRoot root = VectorSchemaRoot.create(ALL_TYPES_SCHEMA, allocator);
+        OutputStream out = Files.newOutputStream(path);
+        ArrowStreamWriter writer = new ArrowStreamWriter(root, null, out)) {
+      writer.start();
+
+      root.allocateNew();
+      ((BigIntVector) root.getVector(0)).setSafe(0, 1L);
+      ((BigIntVector) root.getVector(0)).setSafe(1, -9_007_199_254_740_993L);
+      ((IntVector) root.getVector(1)).setSafe(0, 10);
+      ((IntVector) root.getVector(1)).setSafe(1, -10);
+      ((Float8Vector) root.getVector(2)).setSafe(0, 0.1);
+      ((Float8Vector) root.getVector(2)).setSafe(1, -1.5);
+      ((BitVector) root.getVector(3)).setSafe(0, 1);
+      ((BitVector) root.getVector(3)).setSafe(1, 0);
+      ((VarCharVector) root.getVector(4)).setSafe(0, "TEST0".getBytes(StandardCharsets.UTF_8));
+      ((VarCharVector) root.getVector(4)).setSafe(1, "TEST1".getBytes(StandardCharsets.UTF_8));
+      ((DecimalVector) root.getVector(5)).setSafe(0, new BigDecimal("12.34"));
+      ((DecimalVector) root.getVector(5)).setSafe(1, new BigDecimal("-0.50"));
+      ((DateDayVector) root.getVector(6)).setSafe(0, 18325); // 2020-03-04
+      ((DateDayVector) root.getVector(6)).setSafe(1, -1); // 1969-12-31
+      ((TimeStampMicroTZVector) root.getVector(7)).setSafe(0, 1_583_323_200_123_456L);
+      ((TimeStampMicroTZVector) root.getVector(7)).setSafe(1, -1L);
+      root.setRowCount(2);
+      writer.writeBatch();
+
+      root.allocateNew();
+      root.setRowCount(1);
+      writer.writeBatch();
+
+      writer.end();
+    }
+  }
+
+  // Writes one row of values.
+  public static void writeLocalTypes(Path path) throws IOException {
+    try (BufferAllocator allocator = new RootAllocator();
+        VectorSchemaRoot root = VectorSchemaRoot.create(LOCAL_TYPES_SCHEMA, allocator);
+        OutputStream out = Files.newOutputStream(path);
+        ArrowStreamWriter writer = new ArrowStreamWriter(root, null, out)) {
+      writer.start();
+      root.allocateNew();
+      ((Float4Vector) root.getVector(0)).setSafe(0, 0.1f);
+      ((DateDayVector) root.getVector(1)).setSafe(0, 18325); // 2020-03-04
+      ((TimeStampMicroVector) root.getVector(2)).setSafe(0, 1_583_323_200_123_456L);
+      ((TimeStampMicroTZVector) root.getVector(3)).setSafe(0, 1_583_323_200_123_456L);
+      root.setRowCount(1);
+      writer.writeBatch();
+      writer.end();
+    }
+  }
+}
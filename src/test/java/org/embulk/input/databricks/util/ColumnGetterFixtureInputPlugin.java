@@ -0,0 +1,169 @@
+package org.embulk.input.databricks.util;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.embulk.config.TaskReport;
+import org.embulk.input.jdbc.JdbcColumn;
+import org.embulk.input.jdbc.JdbcColumnOption;
+import org.embulk.input.jdbc.getter.ColumnGetter;
+import org.embulk.input.jdbc.getter.ColumnGetterFactory;
+import org.embulk.spi.Column;
+import org.embulk.spi.Exec;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.embulk.util.config.Config;
+import org.embulk.util.config.ConfigDefault;
+import org.embulk.util.config.Task;
+
+// Reads a synthetic ResultSet of the integer, floating point, boolean, DATE, TIMESTAMP and DECIMAL
+// types with the getters of the default ColumnGetterFactory or of DatabricksColumnGetterFactory,
+// so that both can be compared without a Databricks workspace. Every tenth row is NULL.
+public class ColumnGetterFixtureInputPlugin
+    extends FixtureInputPlugin<ColumnGetterFixtureInputPlugin.PluginTask> {
+  private static final List<JdbcColumn> COLUMNS =
+      Arrays.asList(
+          new JdbcColumn("c_bigint", "BIGINT", java.sql.Types.BIGINT, 19, 0),
+          new JdbcColumn("c_int", "INT", java.sql.Types.INTEGER, 10, 0),
+          new JdbcColumn("c_smallint", "SMALLINT", java.sql.Types.SMALLINT, 5, 0),
+          new JdbcColumn("c_tinyint", "TINYINT", java.sql.Types.TINYINT, 3, 0),
+          new JdbcColumn("c_double", "DOUBLE", java.sql.Types.DOUBLE, 15, 0),
+          new JdbcColumn("c_float", "FLOAT", java.sql.Types.REAL, 7, 0),
+          new JdbcColumn("c_boolean", "BOOLEAN", java.sql.Types.BOOLEAN, 1, 0),
+          new JdbcColumn("c_date", "DATE", java.sql.Types.DATE, 10, 0),
+          new JdbcColumn("c_timestamp", "TIMESTAMP", java.sql.Types.TIMESTAMP, 29, 6),
+          new JdbcColumn("c_decimal", "DECIMAL", java.sql.Types.DECIMAL, 18, 2));
+
+  public interface PluginTask extends Task {
+    @Config("rows")
+    public int getRows();
+
+    // "default" or "databricks".
+    @Config("factory")
+    @ConfigDefault("\"databricks\"")
+    public String getFactory();
+  }
+
+  public ColumnGetterFixtureInputPlugin() {
+    super(PluginTask.class);
+  }
+
+  @Override
+  protected Schema schemaOf(PluginTask task) {
+    return new Schema(
+        Arrays.asList(
+            new Column(0, "c_bigint", org.embulk.spi.type.Types.LONG),
+            new Column(1, "c_int", org.embulk.spi.type.Types.LONG),
+            new Column(2, "c_smallint", org.embulk.spi.type.Types.LONG),
+            new Column(3, "c_tinyint", org.embulk.spi.type.Types.LONG),
+            new Column(4, "c_double", org.embulk.spi.type.Types.DOUBLE),
+            new Column(5, "c_float", org.embulk.spi.type.Types.DOUBLE),
+            new Column(6, "c_boolean", org.embulk.spi.type.Types.BOOLEAN),
+            new Column(7, "c_date", org.embulk.spi.type.Types.TIMESTAMP),
+            new Column(8, "c_timestamp", org.embulk.spi.type.Types.TIMESTAMP),
+            new Column(9, "c_decimal", org.embulk.spi.type.Types.DOUBLE)));
+  }
+
+  @Override
+  protected TaskReport read(PluginTask task, Schema schema, PageOutput output) {
+    JdbcColumnOption option =
+        CONFIG_MAPPER_FACTORY
+            .createConfigMapper()
+            .map(CONFIG_MAPPER_FACTORY.newConfigSource(), JdbcColumnOption.class);
+    try (PageBuilder pageBuilder =
+        Exec.getPageBuilder(Exec.getBufferAllocator(), schema, output)) {
+      ColumnGetterFactory factory = newColumnGetterFactory(task.getFactory(), pageBuilder);
+      List<ColumnGetter> getters = new ArrayList<>();
+      for (JdbcColumn column : COLUMNS) {
+        getters.add(factory.newColumnGetter(null, null, column, option));
+      }
+      ResultSet result = newResultSet(task.getRows());
+      while (result.next()) {
+        for (int i = 0; i < getters.size(); i++) {
+          getters.get(i).getAndSet(result, i + 1, schema.getColumn(i));
+        }
+        pageBuilder.addRecord();
+      }
+      pageBuilder.finish();
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+    return CONFIG_MAPPER_FACTORY.newTaskReport();
+  }
+
+  // Returns the same values for the same row, so that both factories read the same data. The
+  // values are boxed by the Proxy either way.
+  private static ResultSet newResultSet(int rows) {
+    int[] row = {-1};
+    boolean[] wasNull = {false};
+    return (ResultSet)
+        Proxy.newProxyInstance(
+            ResultSet.class.getClassLoader(),
+            new Class<?>[] {ResultSet.class},
+            (p, method, args) -> {
+              switch (method.getName()) {
+                case "next":
+                  return ++row[0] < rows;
+                case "wasNull":
+                  return wasNull[0];
+                case "getLong":
+                case "getDouble":
+                case "getFloat":
+                case "getBoolean":
+                case "getString":
+                case "getDate":
+                case "getTimestamp":
+                case "getBigDecimal":
+                  wasNull[0] = row[0] % 10 == 9;
+                  return valueOf(method.getName(), row[0], (Integer) args[0], wasNull[0]);
+                default:
+                  throw new UnsupportedOperationException(method.getName());
+              }
+            });
+  }
+
+  private static Object valueOf(String getter, int row, int columnIndex, boolean isNull) {
+    switch (getter) {
+      case "getLong":
+        return isNull ? 0L : (long) row * (columnIndex == 1 ? 1_000_000_007L : 1L);
+      case "getDouble":
+        return isNull ? 0.0 : row * 0.5;
+      case "getFloat":
+        return isNull ? 0.0f : row * 0.25f;
+      case "getBoolean":
+        return !isNull && row % 2 == 0;
+      // DATE and DECIMAL are read as strings by DatabricksColumnGetterFactory, and as a Date and
+      // a BigDecimal by the default one.
+      case "getString":
+        if (isNull) {
+          return null;
+        }
+        return columnIndex == 8
+            ? LocalDate.ofEpochDay(row).toString()
+            : decimalOf(row).toPlainString();
+      case "getBigDecimal":
+        return isNull ? null : decimalOf(row);
+      case "getDate":
+        return isNull ? null : new Date(row * 86_400_000L);
+      default:
+        if (isNull) {
+          return null;
+        }
+        Timestamp timestamp = new Timestamp(row * 1500L);
+        timestamp.setNanos(row % 2 * 500_000_000 + row % 1000 * 1000);
+        return timestamp;
+    }
+  }
+
+  private static BigDecimal decimalOf(int row) {
+    return BigDecimal.valueOf(row * 1234L + 5, 2);
+  }
+}
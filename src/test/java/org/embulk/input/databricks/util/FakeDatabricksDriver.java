@@ -0,0 +1,422 @@
+package org.embulk.input.databricks.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.embulk.input.jdbc.JdbcColumn;
+
+// An offline stand-in of the Databricks JDBC driver, which the plugin connects to with
+// url: jdbc:fakedatabricks://<anything>.
+//
+// Every SELECT returns the rows of a SyntheticResultSet, whatever the table and the conditions
+// are, and the statements the plugin sets up the session with work as on a warehouse: USE CATALOG
+// and USE SCHEMA change CURRENT_CATALOG() and CURRENT_SCHEMA(), DESCRIBE HISTORY fails as on a
+// view, and the MIN and MAX query of split_mode: range covers all the rows. The result is set by
+// the connection properties, which the plugin takes from options:
+//
+// - FakeTypes: comma separated Databricks types of the columns (default: BIGINT,STRING,TIMESTAMP)
+// - FakeColumns: number of columns, repeating FakeTypes (default: the number of FakeTypes)
+// - FakeRows: number of rows (default: 1000)
+// - FakeWidth: characters of STRING and bytes of BINARY values (default: 32)
+// - FakeFetchLatencyMillis: wait before every fetch size rows (default: 0)
+// - FakeFailAtRow: fails the fetch at the row of this index (default: -1, which never fails)
+//
+// A statement tells QUERY_ID as its query ID once it is executed.
+public class FakeDatabricksDriver implements Driver {
+  public static final String URL_PREFIX = "jdbc:fakedatabricks:";
+  public static final String QUERY_ID = "01ef-fake-query";
+
+  // Splits at the commas out of the parentheses and angle brackets of the types.
+  private static final Pattern TYPE_SEPARATOR = Pattern.compile(",(?![^(<]*[)>])");
+  private static final Pattern USE =
+      Pattern.compile("^USE\\s+(CATALOG|SCHEMA)\\s+(.+)$", Pattern.CASE_INSENSITIVE);
+  private static final List<String> STATEMENTS = Collections.synchronizedList(new ArrayList<>());
+
+  static {
+    try {
+      DriverManager.registerDriver(new FakeDatabricksDriver());
+    } catch (SQLException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  // The method the plugin looks up for the query ID of a statement.
+  public interface QueryIdStatement {
+    String getQueryId();
+  }
+
+  // Makes sure that DriverManager knows the driver.
+  public static void register() {}
+
+  // The SQL of the statements run on the connections of the driver, in order.
+  public static List<String> getStatements() {
+    synchronized (STATEMENTS) {
+      return new ArrayList<>(STATEMENTS);
+    }
+  }
+
+  public static void clearStatements() {
+    STATEMENTS.clear();
+  }
+
+  @Override
+  public Connection connect(String url, Properties info) throws SQLException {
+    if (!acceptsURL(url)) {
+      return null;
+    }
+    return (Connection)
+        Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            new FakeConnection(info));
+  }
+
+  @Override
+  public boolean acceptsURL(String url) {
+    return url != null && url.startsWith(URL_PREFIX);
+  }
+
+  @Override
+  public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+    return new DriverPropertyInfo[0];
+  }
+
+  @Override
+  public int getMajorVersion() {
+    return 0;
+  }
+
+  @Override
+  public int getMinorVersion() {
+    return 0;
+  }
+
+  @Override
+  public boolean jdbcCompliant() {
+    return false;
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException();
+  }
+
+  // The value a method of the interfaces nobody cares about in the fake returns.
+  private static Object defaultOf(Method method) {
+    Class<?> type = method.getReturnType();
+    if (type == boolean.class) {
+      return false;
+    }
+    if (type == int.class) {
+      return 0;
+    }
+    if (type == long.class) {
+      return 0L;
+    }
+    return null;
+  }
+
+  private static class FakeConnection implements InvocationHandler {
+    private final List<JdbcColumn> columns;
+    private final long rows;
+    private final int width;
+    private final long fetchLatencyMillis;
+    private final long failAtRow;
+    private String catalog;
+    private String schema;
+    private boolean closed;
+
+    FakeConnection(Properties info) {
+      List<String> types =
+          Arrays.asList(
+              TYPE_SEPARATOR.split(info.getProperty("FakeTypes", "BIGINT,STRING,TIMESTAMP")));
+      int columnCount =
+          Integer.parseInt(info.getProperty("FakeColumns", Integer.toString(types.size())));
+      List<String> columnTypes = new ArrayList<>();
+      for (int i = 0; i < columnCount; i++) {
+        columnTypes.add(types.get(i % types.size()).trim());
+      }
+      this.columns = SyntheticResultSet.columnsOf(columnTypes);
+      this.rows = Long.parseLong(info.getProperty("FakeRows", "1000"));
+      this.width = Integer.parseInt(info.getProperty("FakeWidth", "32"));
+      this.fetchLatencyMillis = Long.parseLong(info.getProperty("FakeFetchLatencyMillis", "0"));
+      this.failAtRow = Long.parseLong(info.getProperty("FakeFailAtRow", "-1"));
+      this.catalog = info.getProperty("ConnCatalog", "hive_metastore");
+      this.schema = info.getProperty("ConnSchema", "default");
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+      switch (method.getName()) {
+        case "createStatement":
+          return newStatement(Statement.class, null);
+        case "prepareStatement":
+          return newStatement(PreparedStatement.class, (String) args[0]);
+        case "getMetaData":
+          return newDatabaseMetaData();
+        case "getCatalog":
+          return catalog;
+        case "getSchema":
+          return schema;
+        case "getAutoCommit":
+          return true;
+        case "isValid":
+          return !closed;
+        case "isClosed":
+          return closed;
+        case "close":
+          closed = true;
+          return null;
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "FakeConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+        default:
+          if (method.getReturnType() == void.class) {
+            return null;
+          }
+          throw new SQLFeatureNotSupportedException(method.getName());
+      }
+    }
+
+    private Object newStatement(Class<? extends Statement> type, String preparedSql) {
+      int[] fetchSize = {0};
+      boolean[] closedStatement = {false};
+      ResultSet[] current = {null};
+      String[] queryId = {null};
+      return Proxy.newProxyInstance(
+          FakeDatabricksDriver.class.getClassLoader(),
+          new Class<?>[] {type, QueryIdStatement.class},
+          (p, method, args) -> {
+            switch (method.getName()) {
+              case "executeQuery":
+                current[0] = execute(args == null ? preparedSql : (String) args[0], fetchSize[0]);
+                queryId[0] = QUERY_ID;
+                return current[0];
+              case "execute":
+                current[0] = execute(args == null ? preparedSql : (String) args[0], fetchSize[0]);
+                queryId[0] = QUERY_ID;
+                return current[0] != null;
+              case "executeUpdate":
+                execute(args == null ? preparedSql : (String) args[0], fetchSize[0]);
+                queryId[0] = QUERY_ID;
+                return 0;
+              case "getQueryId":
+                return queryId[0];
+              case "getResultSet":
+                return current[0];
+              case "getUpdateCount":
+                return -1;
+              case "getMetaData":
+                return SyntheticResultSet.metaDataOf(columnsOf(preparedSql));
+              case "setFetchSize":
+                fetchSize[0] = (Integer) args[0];
+                return null;
+              case "getFetchSize":
+                return fetchSize[0];
+              case "isClosed":
+                return closedStatement[0];
+              case "close":
+                closedStatement[0] = true;
+                return null;
+              default:
+                // The setters of the parameters, setQueryTimeout, cancel and so on.
+                if (method.getReturnType() == void.class) {
+                  return null;
+                }
+                throw new SQLFeatureNotSupportedException(method.getName());
+            }
+          });
+    }
+
+    // Returns the result of a query, or null for the other statements.
+    private ResultSet execute(String sql, int fetchSize) throws SQLException {
+      if (closed) {
+        throw new SQLException("Connection is closed.");
+      }
+      STATEMENTS.add(sql);
+      String trimmed = sql.trim();
+      String upper = trimmed.toUpperCase(Locale.ROOT);
+      Matcher use = USE.matcher(trimmed);
+      if (use.matches()) {
+        List<String> names = parseIdentifiers(use.group(2));
+        if (use.group(1).equalsIgnoreCase("CATALOG")) {
+          catalog = names.get(0);
+        } else if (names.size() > 1) {
+          catalog = names.get(0);
+          schema = names.get(1);
+        } else {
+          schema = names.get(0);
+        }
+        return null;
+      }
+      if (upper.startsWith("DESCRIBE HISTORY")) {
+        throw new SQLException("DESCRIBE HISTORY is only supported for Delta tables.");
+      }
+      if (upper.contains("CURRENT_CATALOG()")) {
+        return oneRow(stringColumn("current"), catalog + "." + schema);
+      }
+      if (upper.endsWith(" EMBULK_SPLIT_RANGE_")) {
+        return oneRow(
+            Arrays.asList(
+                new JdbcColumn("min", "BIGINT", Types.BIGINT, 19, 0),
+                new JdbcColumn("max", "BIGINT", Types.BIGINT, 19, 0)),
+            0L,
+            Math.max(rows - 1, 0));
+      }
+      if (upper.startsWith("SELECT") || upper.startsWith("WITH")) {
+        ResultSet result =
+            SyntheticResultSet.of(columns, rows, width, fetchSize, fetchLatencyMillis);
+        return failAtRow >= 0 ? failingAt(result, failAtRow) : result;
+      }
+      return null;
+    }
+
+    private List<JdbcColumn> columnsOf(String sql) {
+      if (sql != null && sql.toUpperCase(Locale.ROOT).contains("CURRENT_CATALOG()")) {
+        return stringColumn("current");
+      }
+      return columns;
+    }
+
+    private static List<JdbcColumn> stringColumn(String name) {
+      return Collections.singletonList(new JdbcColumn(name, "STRING", Types.VARCHAR, 255, 0));
+    }
+
+    private Object newDatabaseMetaData() {
+      return Proxy.newProxyInstance(
+          DatabaseMetaData.class.getClassLoader(),
+          new Class<?>[] {DatabaseMetaData.class},
+          (p, method, args) -> {
+            switch (method.getName()) {
+              case "getIdentifierQuoteString":
+                return "`";
+              case "getDriverName":
+                return "FakeDatabricksDriver";
+              case "getDriverVersion":
+              case "getDatabaseProductVersion":
+                return "0.0.0";
+              case "getDatabaseProductName":
+                return "SparkSQL";
+              case "getURL":
+                return URL_PREFIX;
+              default:
+                return defaultOf(method);
+            }
+          });
+    }
+  }
+
+  // `a`.`b` or a.b into a and b.
+  private static List<String> parseIdentifiers(String names) {
+    List<String> identifiers = new ArrayList<>();
+    StringBuilder sb = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < names.length(); i++) {
+      char c = names.charAt(i);
+      if (c == '`') {
+        if (quoted && i + 1 < names.length() && names.charAt(i + 1) == '`') {
+          sb.append('`');
+          i++;
+        } else {
+          quoted = !quoted;
+        }
+      } else if (c == '.' && !quoted) {
+        identifiers.add(sb.toString());
+        sb.setLength(0);
+      } else {
+        sb.append(c);
+      }
+    }
+    identifiers.add(sb.toString());
+    return identifiers;
+  }
+
+  // The result throws instead of moving to the row of the index.
+  private static ResultSet failingAt(ResultSet result, long failAtRow) {
+    long[] row = {-1};
+    return (ResultSet)
+        Proxy.newProxyInstance(
+            ResultSet.class.getClassLoader(),
+            new Class<?>[] {ResultSet.class},
+            (p, method, args) -> {
+              if (method.getName().equals("next") && ++row[0] == failAtRow) {
+                throw new SQLException("Fake failure at row " + failAtRow);
+              }
+              try {
+                return method.invoke(result, args);
+              } catch (InvocationTargetException e) {
+                throw e.getCause();
+              }
+            });
+  }
+
+  private static ResultSet oneRow(List<JdbcColumn> columns, Object... values) {
+    int[] row = {0};
+    boolean[] wasNull = {false};
+    return (ResultSet)
+        Proxy.newProxyInstance(
+            ResultSet.class.getClassLoader(),
+            new Class<?>[] {ResultSet.class},
+            (p, method, args) -> {
+              switch (method.getName()) {
+                case "next":
+                  return ++row[0] == 1;
+                case "wasNull":
+                  return wasNull[0];
+                case "getMetaData":
+                  return SyntheticResultSet.metaDataOf(columns);
+                case "getString":
+                case "getLong":
+                case "getObject":
+                  Object value = valueOf(columns, values, args[0]);
+                  wasNull[0] = value == null;
+                  if (method.getName().equals("getString")) {
+                    return value == null ? null : value.toString();
+                  }
+                  if (method.getName().equals("getLong")) {
+                    return value == null ? 0L : ((Number) value).longValue();
+                  }
+                  return value;
+                default:
+                  return defaultOf(method);
+              }
+            });
+  }
+
+  private static Object valueOf(List<JdbcColumn> columns, Object[] values, Object column)
+      throws SQLException {
+    if (column instanceof Integer) {
+      return values[(Integer) column - 1];
+    }
+    for (int i = 0; i < columns.size(); i++) {
+      if (columns.get(i).getName().equalsIgnoreCase((String) column)) {
+        return values[i];
+      }
+    }
+    throw new SQLException("No column " + column);
+  }
+}
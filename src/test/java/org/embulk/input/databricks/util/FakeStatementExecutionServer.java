@@ -0,0 +1,215 @@
+package org.embulk.input.databricks.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// An offline stand-in of the Statement Execution API and of the cloud storage holding the chunks,
+// and of the query history.
+//
+// Every statement returns the canned chunks. A statement is PENDING when it is submitted and
+// SUCCEEDED (or FAILED) when it is polled, so that the polling is exercised as well. Likewise, a
+// query is missing from the history when it is first looked up and FINISHED with HISTORY_METRICS
+// from the second time.
+public class FakeStatementExecutionServer implements AutoCloseable {
+  public static final String TOKEN = "fake-token";
+  public static final String STATEMENT_ID = "01ee-fake-statement";
+
+  public static final String HISTORY_METRICS =
+      "{\"rows_produced_count\":20,\"read_bytes\":4096,\"compilation_time_ms\":120,"
+          + "\"execution_time_ms\":340,\"total_time_ms\":600,"
+          + "\"provisioning_queue_start_timestamp\":1700000000000,"
+          + "\"query_compilation_start_timestamp\":1700000000100}";
+
+  private static final String STATEMENTS_PATH = "/api/2.0/sql/statements";
+  private static final String HISTORY_PATH = "/api/2.0/sql/history/queries";
+  private static final Pattern CHUNK_PATH =
+      Pattern.compile("^" + STATEMENTS_PATH + "/[^/]+/result/chunks/(\\d+)$");
+  private static final Pattern HISTORY_STATEMENT_ID =
+      Pattern.compile("(?:^|&)filter_by\\.statement_ids=([^&]+)");
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final List<byte[]> chunks;
+  private final List<String> columnNames;
+  private final List<JsonNode> requests = Collections.synchronizedList(new ArrayList<>());
+  private final AtomicInteger polls = new AtomicInteger();
+  private final AtomicInteger historyLookups = new AtomicInteger();
+  private final AtomicInteger downloading = new AtomicInteger();
+  private final AtomicInteger maxDownloading = new AtomicInteger();
+  private volatile boolean authorizedDownload;
+  private volatile String failure;
+
+  public FakeStatementExecutionServer(List<byte[]> chunks, List<String> columnNames)
+      throws IOException {
+    this.chunks = chunks;
+    this.columnNames = columnNames;
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    this.executor = Executors.newFixedThreadPool(8);
+    server.setExecutor(executor);
+    server.createContext(STATEMENTS_PATH, this::handleApi);
+    server.createContext(HISTORY_PATH, this::handleHistory);
+    server.createContext("/storage/", this::handleStorage);
+    server.start();
+  }
+
+  public String getEndpoint() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  // Makes the statements fail with the message.
+  public void setFailure(String message) {
+    this.failure = message;
+  }
+
+  public List<JsonNode> getRequests() {
+    return requests;
+  }
+
+  public int getPolls() {
+    return polls.get();
+  }
+
+  public int getHistoryLookups() {
+    return historyLookups.get();
+  }
+
+  public int getMaxConcurrentDownloads() {
+    return maxDownloading.get();
+  }
+
+  // Whether a chunk was downloaded with the Authorization header, which cloud storages reject.
+  public boolean isAuthorizedDownload() {
+    return authorizedDownload;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handleApi(HttpExchange exchange) throws IOException {
+    if (!("Bearer " + TOKEN).equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+      respond(exchange, 401, "{\"error_code\":\"UNAUTHENTICATED\"}");
+      return;
+    }
+    String path = exchange.getRequestURI().getPath();
+    Matcher chunk = CHUNK_PATH.matcher(path);
+    if (exchange.getRequestMethod().equals("POST") && path.equals(STATEMENTS_PATH)) {
+      requests.add(MAPPER.readTree(exchange.getRequestBody()));
+      respond(
+          exchange,
+          200,
+          String.format(
+              "{\"statement_id\":\"%s\",\"status\":{\"state\":\"PENDING\"}}", STATEMENT_ID));
+    } else if (exchange.getRequestMethod().equals("POST") && path.endsWith("/cancel")) {
+      respond(exchange, 200, "{}");
+    } else if (path.equals(STATEMENTS_PATH + "/" + STATEMENT_ID)) {
+      polls.incrementAndGet();
+      respond(exchange, 200, failure == null ? succeeded() : failed());
+    } else if (chunk.matches()) {
+      int index = Integer.parseInt(chunk.group(1));
+      respond(
+          exchange,
+          200,
+          String.format(
+              "{\"external_links\":[{\"chunk_index\":%d,\"external_link\":\"%s/storage/chunk-%d?sig=x\"}]}",
+              index, getEndpoint(), index));
+    } else {
+      respond(exchange, 404, "{\"error_code\":\"NOT_FOUND\"}");
+    }
+  }
+
+  private void handleHistory(HttpExchange exchange) throws IOException {
+    if (!("Bearer " + TOKEN).equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+      respond(exchange, 401, "{\"error_code\":\"UNAUTHENTICATED\"}");
+      return;
+    }
+    String query = exchange.getRequestURI().getQuery();
+    Matcher id = HISTORY_STATEMENT_ID.matcher(query == null ? "" : query);
+    if (!id.find() || !query.contains("include_metrics=true")) {
+      respond(exchange, 400, "{\"error_code\":\"INVALID_PARAMETER_VALUE\"}");
+    } else if (historyLookups.incrementAndGet() == 1) {
+      respond(exchange, 200, "{\"res\":[]}");
+    } else {
+      respond(
+          exchange,
+          200,
+          String.format(
+              "{\"res\":[{\"query_id\":\"%s\",\"status\":\"FINISHED\",\"metrics\":%s}]}",
+              id.group(1), HISTORY_METRICS));
+    }
+  }
+
+  private void handleStorage(HttpExchange exchange) throws IOException {
+    if (exchange.getRequestHeaders().containsKey("Authorization")) {
+      authorizedDownload = true;
+    }
+    int current = downloading.incrementAndGet();
+    maxDownloading.accumulateAndGet(current, Math::max);
+    try {
+      // Slow enough for the downloads to overlap.
+      Thread.sleep(50);
+      String path = exchange.getRequestURI().getPath();
+      int index = Integer.parseInt(path.substring(path.lastIndexOf('-') + 1));
+      respond(exchange, 200, chunks.get(index));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      downloading.decrementAndGet();
+    }
+  }
+
+  private String succeeded() {
+    StringBuilder columns = new StringBuilder();
+    for (int i = 0; i < columnNames.size(); i++) {
+      columns.append(i == 0 ? "" : ",");
+      columns.append(String.format("{\"name\":\"%s\",\"position\":%d}", columnNames.get(i), i));
+    }
+    StringBuilder manifestChunks = new StringBuilder();
+    for (int i = 0; i < chunks.size(); i++) {
+      manifestChunks.append(i == 0 ? "" : ",");
+      manifestChunks.append(
+          String.format(
+              "{\"chunk_index\":%d,\"row_offset\":0,\"row_count\":0,\"byte_count\":%d}",
+              i, chunks.get(i).length));
+    }
+    return String.format(
+        "{\"statement_id\":\"%s\",\"status\":{\"state\":\"SUCCEEDED\"},"
+            + "\"manifest\":{\"schema\":{\"columns\":[%s]},\"total_chunk_count\":%d,"
+            + "\"chunks\":[%s],\"total_row_count\":0}}",
+        STATEMENT_ID, columns, chunks.size(), manifestChunks);
+  }
+
+  private String failed() {
+    return String.format(
+        "{\"statement_id\":\"%s\",\"status\":{\"state\":\"FAILED\",\"error\":{\"message\":\"%s\"}}}",
+        STATEMENT_ID, failure);
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    respond(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+}
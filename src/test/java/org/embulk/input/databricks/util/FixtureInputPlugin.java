@@ -0,0 +1,72 @@
+package org.embulk.input.databricks.util;
+
+import java.time.ZoneOffset;
+import java.util.List;
+import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
+import org.embulk.config.TaskSource;
+import org.embulk.input.databricks.DatabricksColumnGetterFactory;
+import org.embulk.input.jdbc.getter.ColumnGetterFactory;
+import org.embulk.spi.InputPlugin;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.config.Task;
+
+// The transaction of the fixtures that run a part of the plugin by TestingEmbulk without a
+// Databricks workspace: a single task with the schema of schemaOf, which is resumable and has
+// nothing to clean up or guess. A fixture tells the schema and reads the task into the pages.
+public abstract class FixtureInputPlugin<T extends Task> implements InputPlugin {
+  protected static final ConfigMapperFactory CONFIG_MAPPER_FACTORY =
+      ConfigMapperFactory.builder().addDefaultModules().build();
+
+  private final Class<T> taskClass;
+
+  protected FixtureInputPlugin(Class<T> taskClass) {
+    this.taskClass = taskClass;
+  }
+
+  protected abstract Schema schemaOf(T task);
+
+  protected abstract TaskReport read(T task, Schema schema, PageOutput output);
+
+  @Override
+  public ConfigDiff transaction(ConfigSource config, InputPlugin.Control control) {
+    T task = CONFIG_MAPPER_FACTORY.createConfigMapper().map(config, taskClass);
+    control.run(task.toTaskSource(), schemaOf(task), 1);
+    return CONFIG_MAPPER_FACTORY.newConfigDiff();
+  }
+
+  @Override
+  public ConfigDiff resume(
+      TaskSource taskSource, Schema schema, int taskCount, InputPlugin.Control control) {
+    control.run(taskSource, schema, taskCount);
+    return CONFIG_MAPPER_FACTORY.newConfigDiff();
+  }
+
+  @Override
+  public void cleanup(
+      TaskSource taskSource, Schema schema, int taskCount, List<TaskReport> successTaskReports) {}
+
+  @Override
+  public TaskReport run(TaskSource taskSource, Schema schema, int taskIndex, PageOutput output) {
+    T task = CONFIG_MAPPER_FACTORY.createTaskMapper().map(taskSource, taskClass);
+    return read(task, schema, output);
+  }
+
+  @Override
+  public ConfigDiff guess(ConfigSource config) {
+    return CONFIG_MAPPER_FACTORY.newConfigDiff();
+  }
+
+  // The getters of embulk-input-jdbc for "default", or else those of the plugin. The getters
+  // without a PageBuilder only tell the column types.
+  protected static ColumnGetterFactory newColumnGetterFactory(
+      String factory, PageBuilder pageBuilder) {
+    return factory.equals("default")
+        ? new ColumnGetterFactory(pageBuilder, ZoneOffset.UTC)
+        : new DatabricksColumnGetterFactory(pageBuilder, ZoneOffset.UTC);
+  }
+}
@@ -0,0 +1,61 @@
+package org.embulk.input.databricks.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
+
+// JSON text of nested STRUCT values, shaped like the ones the driver returns for STRUCT columns.
+public class JsonFixtures {
+  private JsonFixtures() {}
+
+  // A STRUCT of depth levels of STRUCTs and ARRAYs, width fields in the outermost one.
+  public static String nestedStruct(int depth, int width) {
+    if (depth == 0) {
+      return "{\"id\":12345,\"name\":\"TEST0\",\"price\":12.5,\"ok\":true}";
+    }
+    StringBuilder sb = new StringBuilder("{");
+    for (int i = 0; i < width; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("\"f").append(i).append("\":");
+      sb.append(i % 2 == 0 ? nestedStruct(depth - 1, width / 2 + 1) : "[1,2,3,\"TEST1\"]");
+    }
+    return sb.append('}').toString();
+  }
+
+  // The conversion through a tree, which JsonValueReader replaces.
+  public static Value toValue(JsonNode node) {
+    if (node.isObject()) {
+      List<Value> keyValues = new ArrayList<>();
+      Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+      while (fields.hasNext()) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        keyValues.add(ValueFactory.newString(field.getKey()));
+        keyValues.add(toValue(field.getValue()));
+      }
+      return ValueFactory.newMap(keyValues.toArray(new Value[0]), true);
+    } else if (node.isArray()) {
+      List<Value> elements = new ArrayList<>();
+      for (JsonNode element : node) {
+        elements.add(toValue(element));
+      }
+      return ValueFactory.newArray(elements.toArray(new Value[0]), true);
+    } else if (node.isTextual()) {
+      return ValueFactory.newString(node.textValue());
+    } else if (node.isBigInteger()) {
+      return ValueFactory.newInteger(node.bigIntegerValue());
+    } else if (node.isIntegralNumber()) {
+      return ValueFactory.newInteger(node.longValue());
+    } else if (node.isNumber()) {
+      return ValueFactory.newFloat(node.doubleValue());
+    } else if (node.isBoolean()) {
+      return ValueFactory.newBoolean(node.booleanValue());
+    }
+    return ValueFactory.newNil();
+  }
+}
@@ -0,0 +1,78 @@
+package org.embulk.input.databricks.util;
+
+import java.io.IOException;
+import org.embulk.config.TaskReport;
+import org.embulk.input.databricks.DatabricksApiClient;
+import org.embulk.input.databricks.StatementExecutionClient;
+import org.embulk.input.databricks.StatementExecutionFetcher;
+import org.embulk.spi.Exec;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.embulk.util.config.Config;
+import org.embulk.util.config.ConfigDefault;
+import org.embulk.util.config.Task;
+import org.embulk.util.config.units.SchemaConfig;
+
+// Fetches a query through StatementExecutionFetcher with a fixed schema, so that the Statement
+// Execution path can be run by TestingEmbulk against FakeStatementExecutionServer.
+public class StatementExecutionFixtureInputPlugin
+    extends FixtureInputPlugin<StatementExecutionFixtureInputPlugin.PluginTask> {
+  public interface PluginTask extends Task {
+    @Config("api_endpoint")
+    public String getApiEndpoint();
+
+    @Config("query")
+    @ConfigDefault("\"SELECT * FROM t\"")
+    public String getQuery();
+
+    @Config("statement_format")
+    @ConfigDefault("\"ARROW_STREAM\"")
+    public String getStatementFormat();
+
+    @Config("download_threads")
+    @ConfigDefault("4")
+    public int getDownloadThreads();
+
+    @Config("download_memory_limit")
+    @ConfigDefault("268435456")
+    public long getDownloadMemoryLimit();
+
+    @Config("columns")
+    public SchemaConfig getColumns();
+  }
+
+  public StatementExecutionFixtureInputPlugin() {
+    super(PluginTask.class);
+  }
+
+  @Override
+  protected Schema schemaOf(PluginTask task) {
+    return task.getColumns().toSchema();
+  }
+
+  @Override
+  protected TaskReport read(PluginTask task, Schema schema, PageOutput output) {
+    DatabricksApiClient api =
+        new DatabricksApiClient(
+            task.getApiEndpoint(), FakeStatementExecutionServer.TOKEN, 10_000, 10_000);
+    StatementExecutionClient client =
+        new StatementExecutionClient(api, "fake-warehouse", "main", "default", 10L);
+    StatementExecutionFetcher fetcher =
+        new StatementExecutionFetcher(
+            client,
+            task.getStatementFormat(),
+            task.getDownloadThreads(),
+            task.getDownloadMemoryLimit());
+    long rows;
+    try (PageBuilder pageBuilder = Exec.getPageBuilder(Exec.getBufferAllocator(), schema, output)) {
+      rows = fetcher.fetch(task.getQuery(), pageBuilder);
+      pageBuilder.finish();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    TaskReport report = CONFIG_MAPPER_FACTORY.newTaskReport();
+    report.set("rows", rows);
+    return report;
+  }
+}
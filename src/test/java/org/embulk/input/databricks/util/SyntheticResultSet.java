@@ -0,0 +1,369 @@
+package org.embulk.input.databricks.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.embulk.input.jdbc.JdbcColumn;
+
+// A ResultSet of generated rows of Databricks types, for the tests and the benchmarks that read
+// many rows without a workspace.
+//
+// The columns are given by their Databricks type names, such as BIGINT or DECIMAL(18,2), and are
+// named c0, c1 and so on. A value is a function of its row and column, so that the same rows are
+// read whichever getters read them, and every tenth row is NULL. STRING, BINARY and the complex
+// types take their values from a few precomputed ones of width characters or bytes.
+//
+// With fetchLatencyMillis, next() sleeps before every fetch size rows, as a driver waits for the
+// next batch of the result.
+public class SyntheticResultSet implements InvocationHandler {
+  private static final Pattern DECIMAL = Pattern.compile("^DECIMAL\\((\\d+),\\s*(\\d+)\\)$");
+  private static final DateTimeFormatter TIMESTAMP_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS", Locale.ROOT);
+  private static final int POOL_SIZE = 16;
+  // Same as fetch_rows of the plugin.
+  private static final int DEFAULT_FETCH_SIZE = 10000;
+
+  private final List<JdbcColumn> columns;
+  private final long rows;
+  private final long fetchLatencyMillis;
+  private final String[] strings = new String[POOL_SIZE];
+  private final String[] jsons = new String[POOL_SIZE];
+  private final byte[][] binaries = new byte[POOL_SIZE][];
+  private long row = -1;
+  private boolean wasNull;
+  private boolean closed;
+  private int fetchSize;
+
+  private SyntheticResultSet(
+      List<JdbcColumn> columns, long rows, int width, int fetchSize, long fetchLatencyMillis) {
+    this.columns = columns;
+    this.rows = rows;
+    this.fetchSize = fetchSize;
+    this.fetchLatencyMillis = fetchLatencyMillis;
+    for (int i = 0; i < POOL_SIZE; i++) {
+      StringBuilder sb = new StringBuilder(width);
+      while (sb.length() < width) {
+        sb.append((char) ('a' + (sb.length() + i) % 26));
+      }
+      strings[i] = sb.toString();
+      binaries[i] = strings[i].getBytes(StandardCharsets.US_ASCII);
+      jsons[i] = String.format("{\"id\":%d,\"tags\":[\"%s\",null,true],\"score\":%d.5}", i, sb, i);
+    }
+  }
+
+  public static ResultSet of(List<JdbcColumn> columns, long rows, int width) {
+    return of(columns, rows, width, 0, 0);
+  }
+
+  // fetchSize of 0 is the default of the plugin.
+  public static ResultSet of(
+      List<JdbcColumn> columns, long rows, int width, int fetchSize, long fetchLatencyMillis) {
+    return (ResultSet)
+        Proxy.newProxyInstance(
+            ResultSet.class.getClassLoader(),
+            new Class<?>[] {ResultSet.class},
+            new SyntheticResultSet(columns, rows, width, fetchSize, fetchLatencyMillis));
+  }
+
+  public static List<JdbcColumn> columnsOf(List<String> types) {
+    List<JdbcColumn> columns = new ArrayList<>();
+    for (int i = 0; i < types.size(); i++) {
+      columns.add(columnOf("c" + i, types.get(i)));
+    }
+    return columns;
+  }
+
+  // The metadata the driver reports for a column of the Databricks type.
+  public static JdbcColumn columnOf(String name, String type) {
+    String typeName = type.toUpperCase(Locale.ROOT);
+    Matcher decimal = DECIMAL.matcher(typeName);
+    if (decimal.matches()) {
+      return new JdbcColumn(
+          name,
+          "DECIMAL",
+          Types.DECIMAL,
+          Integer.parseInt(decimal.group(1)),
+          Integer.parseInt(decimal.group(2)));
+    }
+    // The driver reads ARRAY, MAP and STRUCT values as their JSON text.
+    if (typeName.startsWith("ARRAY")
+        || typeName.startsWith("MAP")
+        || typeName.startsWith("STRUCT")) {
+      return new JdbcColumn(name, typeName, Types.VARCHAR, 255, 0);
+    }
+    switch (typeName) {
+      case "BIGINT":
+        return new JdbcColumn(name, typeName, Types.BIGINT, 19, 0);
+      case "INT":
+        return new JdbcColumn(name, typeName, Types.INTEGER, 10, 0);
+      case "SMALLINT":
+        return new JdbcColumn(name, typeName, Types.SMALLINT, 5, 0);
+      case "TINYINT":
+        return new JdbcColumn(name, typeName, Types.TINYINT, 3, 0);
+      case "DOUBLE":
+        return new JdbcColumn(name, typeName, Types.DOUBLE, 15, 0);
+      case "FLOAT":
+        return new JdbcColumn(name, typeName, Types.REAL, 7, 0);
+      case "BOOLEAN":
+        return new JdbcColumn(name, typeName, Types.BOOLEAN, 1, 0);
+      case "DATE":
+        return new JdbcColumn(name, typeName, Types.DATE, 10, 0);
+      case "TIMESTAMP":
+        return new JdbcColumn(name, typeName, Types.TIMESTAMP, 29, 6);
+      case "TIMESTAMP_NTZ":
+        return new JdbcColumn(name, typeName, Types.VARCHAR, 29, 6);
+      case "STRING":
+        return new JdbcColumn(name, typeName, Types.VARCHAR, 255, 0);
+      case "BINARY":
+        return new JdbcColumn(name, typeName, Types.BINARY, 1, 0);
+      default:
+        throw new IllegalArgumentException(type);
+    }
+  }
+
+  public static ResultSetMetaData metaDataOf(List<JdbcColumn> columns) {
+    return (ResultSetMetaData)
+        Proxy.newProxyInstance(
+            ResultSetMetaData.class.getClassLoader(),
+            new Class<?>[] {ResultSetMetaData.class},
+            (p, method, args) -> {
+              if (method.getName().equals("getColumnCount")) {
+                return columns.size();
+              }
+              JdbcColumn column = columns.get((Integer) args[0] - 1);
+              switch (method.getName()) {
+                case "getColumnName":
+                case "getColumnLabel":
+                  return column.getName();
+                case "getColumnType":
+                  return column.getSqlType();
+                case "getColumnTypeName":
+                  return column.getTypeName();
+                case "getPrecision":
+                  return column.getPrecision();
+                case "getScale":
+                  return column.getScale();
+                case "isNullable":
+                  return ResultSetMetaData.columnNullable;
+                default:
+                  throw new SQLFeatureNotSupportedException(method.getName());
+              }
+            });
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+    String name = method.getName();
+    switch (name) {
+      case "next":
+        checkOpen();
+        if (row + 1 >= rows) {
+          row = rows;
+          return false;
+        }
+        row++;
+        if (fetchLatencyMillis > 0 && row % (fetchSize > 0 ? fetchSize : DEFAULT_FETCH_SIZE) == 0) {
+          sleep(fetchLatencyMillis);
+        }
+        return true;
+      case "wasNull":
+        return wasNull;
+      case "close":
+        closed = true;
+        return null;
+      case "isClosed":
+        return closed;
+      case "getMetaData":
+        return metaDataOf(columns);
+      case "getFetchSize":
+        return fetchSize;
+      case "setFetchSize":
+        fetchSize = (Integer) args[0];
+        return null;
+      case "getRow":
+        return (int) Math.min(row + 1, Integer.MAX_VALUE);
+      default:
+        if (name.startsWith("get") && args != null && args[0] instanceof Integer) {
+          return valueOf(name, (Integer) args[0]);
+        }
+        throw new SQLFeatureNotSupportedException(name);
+    }
+  }
+
+  private void checkOpen() throws SQLException {
+    if (closed) {
+      throw new SQLException("ResultSet is closed.");
+    }
+  }
+
+  private static void sleep(long millis) throws SQLException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while fetching.", e);
+    }
+  }
+
+  private Object valueOf(String getter, int columnIndex) throws SQLException {
+    checkOpen();
+    if (row < 0 || row >= rows || columnIndex < 1 || columnIndex > columns.size()) {
+      throw new SQLException(String.format("No value at row %d column %d.", row, columnIndex));
+    }
+    JdbcColumn column = columns.get(columnIndex - 1);
+    wasNull = row % 10 == 9;
+    switch (getter) {
+      case "getLong":
+        return wasNull ? 0L : integerOf(column);
+      case "getInt":
+        return wasNull ? 0 : (int) integerOf(column);
+      case "getShort":
+        return wasNull ? (short) 0 : (short) integerOf(column);
+      case "getByte":
+        return wasNull ? (byte) 0 : (byte) integerOf(column);
+      case "getDouble":
+        return wasNull ? 0.0 : row * 0.5;
+      case "getFloat":
+        return wasNull ? 0.0f : row * 0.25f;
+      case "getBoolean":
+        return !wasNull && row % 2 == 0;
+      case "getBigDecimal":
+        return wasNull ? null : decimalOf(column);
+      case "getDate":
+        return wasNull ? null : new Date(epochDay() * 86_400_000L);
+      case "getTimestamp":
+        return wasNull ? null : timestamp();
+      case "getBytes":
+        return wasNull ? null : binaries[pool()];
+      case "getBinaryStream":
+        return wasNull ? null : new ByteArrayInputStream(binaries[pool()]);
+      case "getString":
+        return wasNull ? null : stringOf(column);
+      case "getCharacterStream":
+        return wasNull ? null : new StringReader(stringOf(column));
+      case "getObject":
+        return wasNull ? null : objectOf(column);
+      default:
+        throw new SQLFeatureNotSupportedException(getter);
+    }
+  }
+
+  private Object objectOf(JdbcColumn column) {
+    switch (column.getSqlType()) {
+      case Types.BIGINT:
+        return integerOf(column);
+      case Types.INTEGER:
+      case Types.SMALLINT:
+      case Types.TINYINT:
+        return (int) integerOf(column);
+      case Types.DOUBLE:
+        return row * 0.5;
+      case Types.REAL:
+        return row * 0.25f;
+      case Types.BOOLEAN:
+        return row % 2 == 0;
+      case Types.DECIMAL:
+        return decimalOf(column);
+      case Types.DATE:
+        return new Date(epochDay() * 86_400_000L);
+      case Types.TIMESTAMP:
+        return timestamp();
+      case Types.BINARY:
+        return binaries[pool()];
+      default:
+        return stringOf(column);
+    }
+  }
+
+  private String stringOf(JdbcColumn column) {
+    switch (column.getSqlType()) {
+      case Types.BIGINT:
+      case Types.INTEGER:
+      case Types.SMALLINT:
+      case Types.TINYINT:
+        return Long.toString(integerOf(column));
+      case Types.DOUBLE:
+        return Double.toString(row * 0.5);
+      case Types.REAL:
+        return Float.toString(row * 0.25f);
+      case Types.BOOLEAN:
+        return Boolean.toString(row % 2 == 0);
+      case Types.DECIMAL:
+        return decimalOf(column).toPlainString();
+      case Types.DATE:
+        return LocalDate.ofEpochDay(epochDay()).toString();
+      case Types.TIMESTAMP:
+        return timestampText();
+      case Types.BINARY:
+        return strings[pool()];
+      default:
+        if (column.getTypeName().equals("TIMESTAMP_NTZ")) {
+          return timestampText();
+        }
+        return column.getTypeName().equals("STRING") ? strings[pool()] : jsons[pool()];
+    }
+  }
+
+  private long integerOf(JdbcColumn column) {
+    switch (column.getSqlType()) {
+      case Types.TINYINT:
+        return row % Byte.MAX_VALUE;
+      case Types.SMALLINT:
+        return row % Short.MAX_VALUE;
+      case Types.INTEGER:
+        return row % Integer.MAX_VALUE;
+      default:
+        return row * 1_000_000_007L;
+    }
+  }
+
+  private BigDecimal decimalOf(JdbcColumn column) {
+    long unscaled = row * 1234L + 5;
+    if (column.getPrecision() < 18) {
+      unscaled %= (long) Math.pow(10, column.getPrecision());
+    }
+    return BigDecimal.valueOf(unscaled, column.getScale());
+  }
+
+  private long epochDay() {
+    return row % 100_000;
+  }
+
+  private Timestamp timestamp() {
+    Timestamp timestamp = new Timestamp(row * 1500L);
+    timestamp.setNanos((int) (row % 2 * 500_000_000 + row % 1000 * 1000));
+    return timestamp;
+  }
+
+  // The timestamp in UTC, whatever the default time zone is.
+  private String timestampText() {
+    Timestamp timestamp = timestamp();
+    return TIMESTAMP_FORMAT.format(
+        LocalDateTime.ofEpochSecond(
+            Math.floorDiv(timestamp.getTime(), 1000L), timestamp.getNanos(), ZoneOffset.UTC));
+  }
+
+  private int pool() {
+    return (int) (row % POOL_SIZE);
+  }
+}